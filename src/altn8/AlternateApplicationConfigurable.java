@@ -15,6 +15,7 @@
  */
 package altn8;
 
+import altn8.filematcher.AlternateRegexGuard;
 import altn8.ui.AlternateConfigurationPanel;
 import com.intellij.openapi.options.Configurable;
 import com.intellij.openapi.options.ConfigurationException;
@@ -48,6 +49,7 @@ public class AlternateApplicationConfigurable implements Configurable {
     public void apply() throws ConfigurationException {
         if (dataInterface != null) {
             dataInterface.pushDataTo(AlternateConfiguration.getInstance());
+            AlternateRegexGuard.enableAll(); // give disabled expressions another chance
         }
     }
 
@@ -21,6 +21,7 @@ import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
 import com.intellij.util.xmlb.XmlSerializerUtil;
 import com.intellij.util.xmlb.annotations.AbstractCollection;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
@@ -33,9 +34,14 @@ import java.util.List;
 public class AlternateConfiguration implements PersistentStateComponent<AlternateConfiguration> {
     // general
     public boolean onlyFromModule;
+    public boolean linearRegexEngine;
+    public boolean generateRuleSetCode;
     // freeRegex
     public boolean freeRegexActive;
     public List<AlternateFreeRegexItem> freeRegexItems;
+    // pathMirror
+    public boolean pathMirrorActive;
+    public List<AlternatePathMirrorItem> pathMirrorItems;
     // genericRegex
     public boolean genericRegexActive;
     public boolean caseInsensitiveBasename;
@@ -62,6 +68,11 @@ public class AlternateConfiguration implements PersistentStateComponent<Alternat
         freeRegexItems = new ArrayList<AlternateFreeRegexItem>();
         // -> fill defaults
         addDefaultFreeRegexItems();
+        // pathMirror
+        pathMirrorActive = true;
+        pathMirrorItems = new ArrayList<AlternatePathMirrorItem>();
+        // -> fill defaults
+        addDefaultPathMirrorItems();
     }
 
     @Nullable
@@ -73,6 +84,20 @@ public class AlternateConfiguration implements PersistentStateComponent<Alternat
         XmlSerializerUtil.copyBean(state, this);
     }
 
+    /**
+     * @return fingerprint of all settings which affect the result of a lookup
+     */
+    @NotNull
+    public String computeFingerprint() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(onlyFromModule).append('|').append(linearRegexEngine).append('|').append(generateRuleSetCode).append('|');
+        sb.append(freeRegexActive).append('|').append(freeRegexItems).append('|');
+        sb.append(genericRegexActive).append('|').append(caseInsensitiveBasename).append('|');
+        sb.append(genericPrefixRegexItems).append('|').append(genericPostfixRegexItems).append('|');
+        sb.append(pathMirrorActive).append('|').append(pathMirrorItems);
+        return sb.toString();
+    }
+
     /**
      *
      */
@@ -83,6 +108,14 @@ public class AlternateConfiguration implements PersistentStateComponent<Alternat
         freeRegexItems.add(AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"));
     }
 
+    /**
+     * Maven layout: classes and their tests
+     */
+    private void addDefaultPathMirrorItems() {
+        pathMirrorItems.add(AlternatePathMirrorItem.of("src/main/java", "src/test/java", "^(.*?)\\.java$", "$1Test.java"));
+        pathMirrorItems.add(AlternatePathMirrorItem.of("src/test/java", "src/main/java", "^(.*?)Test\\.java$", "$1.java"));
+    }
+
     /**
      *
      */
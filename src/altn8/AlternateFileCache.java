@@ -0,0 +1,446 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import com.intellij.ProjectTopics;
+import com.intellij.openapi.application.ApplicationAdapter;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.fileTypes.FileTypeEvent;
+import com.intellij.openapi.fileTypes.FileTypeListener;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.util.Consumer;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * LRU cache of lookup results per file and configuration, including "nothing found". An entry becomes stale by
+ * VFS events which may change its result: a file with a matching name appears, or the current file or one of the
+ * found files is deleted, renamed or moved. Changes of modules or file types (generic items match their extensions)
+ * make all entries stale, as do VFS events with too many new names to check them on EDT. A stale entry is not returned by {@link #findFiles(VirtualFile)}, but
+ * may be shown while it is revalidated (see {@link #getStaleFiles(VirtualFile)}).
+ */
+public class AlternateFileCache {
+    private static final int MAX_ENTRIES = 100;
+    /**
+     * if created or moved files (or directories) bring more names at once, we don't check them (on EDT, in write
+     * action) but mark all entries stale
+     */
+    private static final int MAX_NAMES = 200;
+    /**
+     * a revalidation cancelled by write actions is given up after this number of attempts
+     */
+    private static final int MAX_REVALIDATE_ATTEMPTS = 10;
+
+    private final Project project;
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    /**
+     * running lookups (single flight: concurrent lookups of same key wait for the running one, except on EDT)
+     */
+    private final Map<Key, Lookup> runningTasks = new HashMap<Key, Lookup>();
+    /**
+     * incremented on each VFS change, so results found while files changed are not cached
+     */
+    private long modificationCount;
+
+    public AlternateFileCache(@NotNull Project project) {
+        this.project = project;
+        MessageBusConnection connection = project.getMessageBus().connect(project);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                invalidate(events);
+            }
+        });
+        connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+            public void beforeRootsChange(ModuleRootEvent event) {
+            }
+
+            public void rootsChanged(ModuleRootEvent event) {
+                markAllStale(); // modules of files may have changed
+            }
+        });
+        connection.subscribe(FileTypeManager.TOPIC, new FileTypeListener() {
+            public void beforeFileTypesChanged(FileTypeEvent event) {
+            }
+
+            public void fileTypesChanged(FileTypeEvent event) {
+                markAllStale(); // extensions of generic items may have changed
+            }
+        });
+    }
+
+    public static AlternateFileCache getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, AlternateFileCache.class);
+    }
+
+    /**
+     * @return cached groups or find them (and cache them). If the same lookup is already running (ex: a prefetch),
+     * we wait for its result instead of starting another one. On EDT we never wait for another thread: its lookup is
+     * cancelled (if it can be) and we look up ourselves.
+     */
+    @NotNull
+    public List<AlternateFileGroup> findFiles(@NotNull final VirtualFile currentFile) {
+        Key key = new Key(currentFile, AlternateConfiguration.getInstance().computeFingerprint());
+        while (true) {
+            Lookup task;
+            boolean owner = false;
+            long startModificationCount;
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && !entry.stale && entry.isValid()) {
+                    return entry.result.getFileGroups();
+                }
+                task = runningTasks.get(key);
+                if (task != null && ApplicationManager.getApplication().isDispatchThread()) {
+                    ProgressIndicator indicator = task.indicator;
+                    if (indicator != null) {
+                        indicator.cancel();
+                    }
+                    task = null;
+                }
+                if (task == null) {
+                    task = new Lookup(new Callable<AlternateFileFinder.Result>() {
+                        public AlternateFileFinder.Result call() throws Exception {
+                            return AlternateFileFinder.findFiles(currentFile, project);
+                        }
+                    });
+                    runningTasks.put(key, task);
+                    owner = true;
+                }
+                startModificationCount = modificationCount;
+            }
+            if (owner) {
+                task.indicator = ProgressManager.getInstance().getProgressIndicator();
+                try {
+                    task.run();
+                } finally {
+                    synchronized (this) {
+                        // EDT may have replaced our lookup meanwhile
+                        if (runningTasks.get(key) == task) {
+                            runningTasks.remove(key);
+                        }
+                    }
+                }
+            }
+            AlternateFileFinder.Result result;
+            try {
+                result = task.get();
+            } catch (InterruptedException e) {
+                throw new ProcessCanceledException(e);
+            } catch (ExecutionException e) {
+                if (!owner && e.getCause() instanceof ProcessCanceledException) {
+                    continue; // the lookup we waited for was cancelled, but we are not -> try again
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException(e.getCause());
+            }
+            if (owner) {
+                synchronized (this) {
+                    // only cache if nothing changed while we were searching
+                    if (startModificationCount == modificationCount) {
+                        entries.put(key, new Entry(currentFile, result));
+                    }
+                }
+            }
+            return result.getFileGroups();
+        }
+    }
+
+    /**
+     * @return groups of a stale entry (only files which are still valid) or null if there is no stale entry
+     */
+    @Nullable
+    public synchronized List<AlternateFileGroup> getStaleFiles(@NotNull VirtualFile currentFile) {
+        Entry entry = entries.get(new Key(currentFile, AlternateConfiguration.getInstance().computeFingerprint()));
+        if (entry == null || !currentFile.isValid() || (!entry.stale && entry.isValid())) {
+            return null;
+        }
+        List<AlternateFileGroup> result = new ArrayList<AlternateFileGroup>();
+        for (AlternateFileGroup fileGroup : entry.result.getFileGroups()) {
+            AlternateFileGroup validFileGroup = fileGroup.copyValidFiles();
+            if (validFileGroup != null) {
+                result.add(validFileGroup);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find files in background and pass them to consumer (in EDT). Like a prefetch, the lookup is cancelled if a write
+     * action starts (we never block the user) and then started again, at most MAX_REVALIDATE_ATTEMPTS times.
+     */
+    public void revalidate(@NotNull final VirtualFile currentFile, @NotNull final Consumer<List<AlternateFileGroup>> consumer) {
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            public void run() {
+                final List<List<AlternateFileGroup>> result = new ArrayList<List<AlternateFileGroup>>(1);
+                for (int attempt = 0; attempt < MAX_REVALIDATE_ATTEMPTS && result.isEmpty(); attempt++) {
+                    if (project.isDisposed()) {
+                        return;
+                    }
+                    final ProgressIndicator indicator = new ProgressIndicatorBase();
+                    ApplicationAdapter writeActionListener = new ApplicationAdapter() {
+                        @Override
+                        public void beforeWriteActionStart(Object action) {
+                            indicator.cancel();
+                        }
+                    };
+                    ApplicationManager.getApplication().addApplicationListener(writeActionListener);
+                    try {
+                        ProgressManager.getInstance().runProcess(new Runnable() {
+                            public void run() {
+                                ApplicationManager.getApplication().runReadAction(new Runnable() {
+                                    public void run() {
+                                        if (!indicator.isCanceled() && !project.isDisposed() && currentFile.isValid()) {
+                                            result.add(findFiles(currentFile));
+                                        }
+                                    }
+                                });
+                            }
+                        }, indicator);
+                        if (result.isEmpty() && !indicator.isCanceled()) {
+                            return; // project closed or file deleted
+                        }
+                    } catch (ProcessCanceledException e) {
+                        // write action: try again after it
+                    } finally {
+                        ApplicationManager.getApplication().removeApplicationListener(writeActionListener);
+                    }
+                }
+                if (!result.isEmpty()) {
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        public void run() {
+                            consumer.consume(result.get(0));
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Mark all entries as stale
+     */
+    private synchronized void markAllStale() {
+        modificationCount++;
+        for (Entry entry : entries.values()) {
+            entry.stale = true;
+        }
+    }
+
+    /**
+     * Mark all entries affected by events as stale
+     */
+    private synchronized void invalidate(@NotNull List<? extends VFileEvent> events) {
+        modificationCount++;
+        int remainingNames = MAX_NAMES;
+        for (VFileEvent event : events) {
+            if (entries.isEmpty()) {
+                return;
+            }
+            VirtualFile file = null;      // existing file which was changed
+            VirtualFile newFile = null;   // file (maybe directory) which appears with a new name/location
+            if (event instanceof VFileCreateEvent) {
+                newFile = event.getFile();
+            } else if (event instanceof VFileCopyEvent) {
+                VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+                newFile = copyEvent.getNewParent().findChild(copyEvent.getNewChildName());
+            } else if (event instanceof VFileDeleteEvent) {
+                file = event.getFile();
+            } else if (event instanceof VFileMoveEvent) {
+                file = event.getFile();
+                newFile = file;
+            } else if (event instanceof VFilePropertyChangeEvent && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName())) {
+                file = event.getFile();
+                newFile = file;
+            } else {
+                continue; // content changes etc. don't affect any result
+            }
+            // names which may match now
+            Set<String> newNames = new HashSet<String>();
+            if (newFile != null && !collectNames(newFile, newNames, remainingNames)) {
+                markAllStale();
+                return;
+            }
+            remainingNames -= newNames.size();
+            for (Entry entry : entries.values()) {
+                if (!entry.stale && entry.isAffected(file, newNames)) {
+                    entry.stale = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect names of file and all its children
+     *
+     * @return false if there are more than maxNames
+     */
+    private static boolean collectNames(@NotNull VirtualFile file, @NotNull Set<String> names, int maxNames) {
+        if (names.size() >= maxNames) {
+            return false;
+        }
+        if (file.isDirectory()) {
+            for (VirtualFile child : file.getChildren()) {
+                if (!collectNames(child, names, maxNames)) {
+                    return false;
+                }
+            }
+        } else {
+            names.add(file.getName());
+        }
+        return true;
+    }
+
+    /**
+     * A running lookup
+     */
+    private static final class Lookup extends FutureTask<AlternateFileFinder.Result> {
+        /**
+         * indicator of thread which runs lookup, null if it can't be cancelled
+         */
+        @Nullable
+        private volatile ProgressIndicator indicator;
+
+        private Lookup(@NotNull Callable<AlternateFileFinder.Result> callable) {
+            super(callable);
+        }
+    }
+
+    /**
+     * Cache key: file and configuration
+     */
+    private static final class Key {
+        @NotNull
+        private final VirtualFile file;
+        @NotNull
+        private final String configurationFingerprint;
+
+        private Key(@NotNull VirtualFile file, @NotNull String configurationFingerprint) {
+            this.file = file;
+            this.configurationFingerprint = configurationFingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            Key that = (Key) o;
+
+            return file.equals(that.file) && configurationFingerprint.equals(that.configurationFingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * file.hashCode() + configurationFingerprint.hashCode();
+        }
+    }
+
+    /**
+     * Cache entry: result and all files it depends on
+     */
+    private static final class Entry {
+        @NotNull
+        private final VirtualFile currentFile;
+        @NotNull
+        private final AlternateFileFinder.Result result;
+        @NotNull
+        private final Set<VirtualFile> files = new HashSet<VirtualFile>();
+        private boolean stale;
+
+        private Entry(@NotNull VirtualFile currentFile, @NotNull AlternateFileFinder.Result result) {
+            this.currentFile = currentFile;
+            this.result = result;
+            for (AlternateFileGroup fileGroup : result.getFileGroups()) {
+                files.addAll(fileGroup.getFiles());
+            }
+        }
+
+        /**
+         * @return true, if all files of this entry are still valid
+         */
+        private boolean isValid() {
+            if (!currentFile.isValid()) {
+                return false;
+            }
+            for (AlternateFileGroup fileGroup : result.getFileGroups()) {
+                for (VirtualFile file : fileGroup.getFiles()) {
+                    if (!file.isValid()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param file      changed file or directory (deleted, renamed or moved), null if none
+         * @param newNames  names of files which appeared
+         * @return true, if result of this entry may have changed
+         */
+        private boolean isAffected(@Nullable VirtualFile file, @NotNull Set<String> newNames) {
+            if (!isValid()) {
+                return true;
+            }
+            if (file != null) {
+                if (VfsUtilCore.isAncestor(file, currentFile, false)) {
+                    return true;
+                }
+                for (VirtualFile entryFile : files) {
+                    if (VfsUtilCore.isAncestor(file, entryFile, false)) {
+                        return true;
+                    }
+                }
+            }
+            for (String newName : newNames) {
+                if (result.matches(newName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
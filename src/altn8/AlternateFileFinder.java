@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import altn8.filematcher.AlternateFileMatcher;
+import altn8.filematcher.AlternateFreeRegexFileMatcher;
+import altn8.filematcher.AlternateGenericRegexFileMatcher;
+import altn8.filematcher.AlternateRuleStatistic;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Finds all corresponding files of a file (the scan behind our action). Only VFS names and our index are used (no
+ * PSI), so this works while the IDE is indexing.
+ */
+public final class AlternateFileFinder {
+    /**
+     * Matchers are timed on every SAMPLE_INTERVAL-th file only (enough for the ordering, cheap for the scan)
+     */
+    private static final int SAMPLE_INTERVAL = 16;
+
+    /**
+     * only static methods
+     */
+    private AlternateFileFinder() {
+    }
+
+    /**
+     * Find all corresponding files.<br>
+     * If onlyFromModule is set, only files of the nearest tier with a result are listed (see
+     * {@link AlternateSearchTiers}), and we stop searching there. Else module files, then project files.
+     */
+    @NotNull
+    public static Result findFiles(@NotNull final VirtualFile currentFile, @NotNull final Project project) {
+        AlternateConfiguration configuration = AlternateConfiguration.getInstance();
+
+        // groups per tier
+        final List<Map<String, AlternateFileGroup>> workMaps = new ArrayList<Map<String, AlternateFileGroup>>();
+        for (int i = 0; i < AlternateSearchTiers.COUNT; i++) {
+            workMaps.add(new HashMap<String, AlternateFileGroup>());
+        }
+        final String currentFilename = currentFile.getName();
+
+        // get all fileMatchers
+        final List<AlternateFileMatcher> fileMatchers = getFileMatchers(configuration, currentFile, project);
+        if (!fileMatchers.isEmpty()) {
+            // evaluate cheap matchers with high hit rate first (as long as this does not change the result). The path
+            // mirror matcher stays first: it rejects files by their location, which the ordering can't know.
+            final AlternateRuleStatistics ruleStatistics = AlternateRuleStatistics.getInstance();
+            int pinned = 0;
+            while (pinned < fileMatchers.size() && fileMatchers.get(pinned) instanceof AlternatePathMirrorFileMatcher) {
+                pinned++;
+            }
+            List<AlternateFileMatcher> orderedFileMatchers = new ArrayList<AlternateFileMatcher>(fileMatchers.subList(0, pinned));
+            orderedFileMatchers.addAll(ruleStatistics.order(fileMatchers.subList(pinned, fileMatchers.size())));
+            final AlternateFileMatcher[] matchers = orderedFileMatchers.toArray(new AlternateFileMatcher[orderedFileMatchers.size()]);
+            final AlternateRuleStatistic[] matcherStatistics = new AlternateRuleStatistic[matchers.length];
+            final Map<String, AlternateRuleStatistic> scanStatistics = new HashMap<String, AlternateRuleStatistic>();
+            for (int i = 0; i < matchers.length; i++) {
+                matcherStatistics[i] = new AlternateRuleStatistic();
+                scanStatistics.put(matchers[i].getStatisticKey(), matcherStatistics[i]);
+            }
+            // iterate thru files
+            final ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+            final AlternateSearchTiers tiers = new AlternateSearchTiers(project, currentFile);
+            ContentIterator contentIterator = new ContentIterator() {
+                private int fileCount;
+
+                public boolean processFile(VirtualFile fileOrDir) {
+                    // stop if our (background) search is cancelled
+                    ProgressManager.checkCanceled();
+                    // if not a directory
+                    if (!fileOrDir.isDirectory()) {
+                        // and not currentFile...
+                        if (!currentFilename.equals(fileOrDir.getName()) || !currentFile.getPath().equals(fileOrDir.getPath())) {
+                            // iterate thru matchers and test...
+                            boolean sampled = fileCount++ % SAMPLE_INTERVAL == 0;
+                            for (int i = 0; i < matchers.length; i++) {
+                                AlternateFileMatcher fileMatcher = matchers[i];
+                                boolean matches;
+                                if (sampled) {
+                                    long start = System.nanoTime();
+                                    matches = fileMatcher.matches(fileOrDir.getName());
+                                    matcherStatistics[i].record(matches, System.nanoTime() - start);
+                                } else {
+                                    matches = fileMatcher.matches(fileOrDir.getName());
+                                }
+                                if (matches) {
+                                    if (fileMatcher instanceof AlternatePathMirrorFileMatcher && !((AlternatePathMirrorFileMatcher) fileMatcher).accepts(fileOrDir)) {
+                                        break; // same name as a mirrored file, but at another place
+                                    }
+                                    Map<String, AlternateFileGroup> workMap = workMaps.get(tiers.getTier(fileOrDir));
+                                    // add to group of its tier
+                                    String baseFilename = fileMatcher.getBaseFilename(fileOrDir.getName());
+                                    String groupId = groupId(baseFilename);
+                                    AlternateFileGroup group = workMap.get(groupId);
+                                    if (group == null) {
+                                        group = new AlternateFileGroup(groupId);
+                                        workMap.put(groupId, group);
+                                    }
+                                    group.addFile(baseFilename, fileOrDir);
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                    return true;
+                }
+            };
+            // only test candidates of our index, or scan project if it can't tell (ex: warm-up not completed)
+            Collection<VirtualFile> candidates = AlternateFileIndex.getInstance(project).getCandidates(fileMatchers);
+            if (candidates != null) {
+                List<VirtualFile> sortedCandidates = new ArrayList<VirtualFile>(candidates);
+                Collections.sort(sortedCandidates, new Comparator<VirtualFile>() {
+                    public int compare(VirtualFile o1, VirtualFile o2) {
+                        return o1.getPath().compareTo(o2.getPath());
+                    }
+                });
+                for (VirtualFile candidate : sortedCandidates) {
+                    if (candidate.isValid() && projectFileIndex.isInContent(candidate)) {
+                        contentIterator.processFile(candidate);
+                    }
+                }
+            } else if (configuration.onlyFromModule) {
+                // search tier by tier until one has a result
+                for (int tier = 0; tier < AlternateSearchTiers.COUNT && isEmpty(workMaps); tier++) {
+                    tiers.iterate(tier, contentIterator);
+                }
+            } else {
+                tiers.iterate(AlternateSearchTiers.PROJECT, contentIterator);
+            }
+            ruleStatistics.add(scanStatistics);
+        }
+
+        // Enhancement 5: If (at least) one corresponding file is found nearby, show only files of nearest tier
+        List<AlternateFileGroup> result = new ArrayList<AlternateFileGroup>();
+        if (configuration.onlyFromModule) {
+            for (int tier = 0; tier < AlternateSearchTiers.COUNT && result.isEmpty(); tier++) {
+                result = getSortedGroups(workMaps, tier, tier);
+            }
+        } else {
+            // add moduleItems then projectItems
+            result.addAll(getSortedGroups(workMaps, AlternateSearchTiers.DIRECTORY, AlternateSearchTiers.MODULE));
+            result.addAll(getSortedGroups(workMaps, AlternateSearchTiers.DEPENDENT_MODULES, AlternateSearchTiers.PROJECT));
+        }
+
+        // move current file's group to top
+        String currentGroupId = null;
+        for (AlternateFileMatcher fileMatcher : fileMatchers) {
+            if (fileMatcher.matches(currentFilename)) {
+                currentGroupId = groupId(fileMatcher.getBaseFilename(currentFilename));
+                break;
+            }
+        }
+        if (currentGroupId != null && currentGroupId.length() > 0) {
+            for (int i = 0, resultSize = result.size(); i < resultSize; i++) {
+                AlternateFileGroup fileGroup = result.get(i);
+                if (fileGroup.getGroupId().equals(currentGroupId)) {
+                    if (i > 0) {
+                        result.add(0, result.remove(i));
+                    }
+                    break;
+                }
+            }
+        }
+        // move group with no id to bottom
+        for (int i = 0, resultSize = result.size(); i < resultSize; i++) {
+            AlternateFileGroup fileGroup = result.get(i);
+            if (fileGroup.getGroupId().length() == 0) {
+                if (i < result.size() - 1) {
+                    result.add(result.remove(i));
+                }
+                break;
+            }
+        }
+
+        return new Result(result, fileMatchers);
+    }
+
+    private static boolean isEmpty(@NotNull List<Map<String, AlternateFileGroup>> workMaps) {
+        for (Map<String, AlternateFileGroup> workMap : workMaps) {
+            if (!workMap.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return groups of tiers (fromTier..toTier, same groups merged), sorted by groupId
+     */
+    @NotNull
+    private static List<AlternateFileGroup> getSortedGroups(@NotNull List<Map<String, AlternateFileGroup>> workMaps, int fromTier, int toTier) {
+        Map<String, AlternateFileGroup> groups = new HashMap<String, AlternateFileGroup>();
+        for (int tier = fromTier; tier <= toTier; tier++) {
+            for (AlternateFileGroup fileGroup : workMaps.get(tier).values()) {
+                AlternateFileGroup group = groups.get(fileGroup.getGroupId());
+                if (group == null) {
+                    groups.put(fileGroup.getGroupId(), fileGroup);
+                } else {
+                    group.addFiles(fileGroup);
+                }
+            }
+        }
+        List<AlternateFileGroup> result = new ArrayList<AlternateFileGroup>(groups.values());
+        Collections.sort(result);
+        return result;
+    }
+
+    @NotNull
+    private static String groupId(@NotNull String baseFilename) {
+        // group id is lowecase of basefilename
+        return baseFilename.toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * @return  List with currently active FileMatchers ()
+     */
+    private static List<AlternateFileMatcher> getFileMatchers(AlternateConfiguration configuration, VirtualFile currentFile, Project project) {
+        String currentFilename = currentFile.getName();
+        List<AlternateFileMatcher> result = new ArrayList<AlternateFileMatcher>();
+        // pathMirrorActive (first, it claims the names of mirrored files)
+        if (configuration.pathMirrorActive) {
+            AlternatePathMirrorFileMatcher fileMatcher = new AlternatePathMirrorFileMatcher(currentFile, project, configuration);
+            if (fileMatcher.canProcess()) {
+                result.add(fileMatcher);
+            }
+        }
+        // genericRegexActive (before freeRegexItems, because generic groups)
+        if (configuration.genericRegexActive) {
+            AlternateGenericRegexFileMatcher fileMatcher = new AlternateGenericRegexFileMatcher(currentFilename, configuration, new AlternateFileTypeExtensionProvider());
+            if (fileMatcher.canProcess()) {
+                result.add(fileMatcher);
+            }
+        }
+        // freeRegexItems
+        if (configuration.freeRegexActive) {
+            AlternateFreeRegexFileMatcher fileMatcher = new AlternateFreeRegexFileMatcher(currentFilename, configuration);
+            if (fileMatcher.canProcess()) {
+                result.add(fileMatcher);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Found groups and the matchers used to find them
+     */
+    public static final class Result {
+        @NotNull
+        private final List<AlternateFileGroup> fileGroups;
+        @NotNull
+        private final List<AlternateFileMatcher> fileMatchers;
+
+        private Result(@NotNull List<AlternateFileGroup> fileGroups, @NotNull List<AlternateFileMatcher> fileMatchers) {
+            this.fileGroups = fileGroups;
+            this.fileMatchers = fileMatchers;
+        }
+
+        /**
+         * @return found groups (sorted, maybe empty)
+         */
+        @NotNull
+        public List<AlternateFileGroup> getFileGroups() {
+            return fileGroups;
+        }
+
+        /**
+         * @return true, if one of the matchers (used to find the groups) matches filename
+         */
+        public boolean matches(@NotNull String filename) {
+            for (AlternateFileMatcher fileMatcher : fileMatchers) {
+                if (fileMatcher.matches(filename)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -15,8 +15,9 @@
  */
 package altn8;
 
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -27,7 +28,7 @@ import java.util.List;
 public class AlternateFileGroup implements Comparable<AlternateFileGroup> {
     private String groupId;
     private List<String> baseFilenames = new ArrayList<String>();
-    private List<PsiFile> files = new ArrayList<PsiFile>();
+    private List<VirtualFile> files = new ArrayList<VirtualFile>();
 
     /**
      *
@@ -59,17 +60,44 @@ public class AlternateFileGroup implements Comparable<AlternateFileGroup> {
         return sb.toString();
     }
 
-    public void addFile(@NotNull String baseFilename, @NotNull PsiFile psiFile) {
+    public void addFile(@NotNull String baseFilename, @NotNull VirtualFile file) {
         if (!baseFilenames.contains(baseFilename)) {
             baseFilenames.add(baseFilename);
         }
-        files.add(psiFile);
+        files.add(file);
+    }
+
+    /**
+     * Add all files of other group (with same groupId)
+     */
+    void addFiles(@NotNull AlternateFileGroup other) {
+        for (String baseFilename : other.baseFilenames) {
+            if (!baseFilenames.contains(baseFilename)) {
+                baseFilenames.add(baseFilename);
+            }
+        }
+        files.addAll(other.files);
+    }
+
+    /**
+     * @return copy of this group with all still valid files (null if there is none)
+     */
+    @Nullable
+    AlternateFileGroup copyValidFiles() {
+        AlternateFileGroup result = new AlternateFileGroup(groupId);
+        result.baseFilenames.addAll(baseFilenames);
+        for (VirtualFile file : files) {
+            if (file.isValid()) {
+                result.files.add(file);
+            }
+        }
+        return result.files.isEmpty() ? null : result;
     }
 
     /**
      * @return List with all files of this group
      */
-    public List<PsiFile> getFiles() {
+    public List<VirtualFile> getFiles() {
         return files;
     }
 
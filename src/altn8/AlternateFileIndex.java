@@ -0,0 +1,1501 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import altn8.filematcher.AlternateFileMatcher;
+import altn8.filematcher.AlternateGenericRegexFileMatcher;
+import altn8.filematcher.AlternateRegexGuard;
+import altn8.filematcher.AlternateStemExtractor;
+import altn8.filematcher.RegexTimeoutException;
+import altn8.index.AlternateBloomFilter;
+import altn8.index.AlternatePostingMap;
+import altn8.index.AlternateRadixTree;
+import altn8.index.AlternateTrigramIndex;
+import com.intellij.ProjectTopics;
+import com.intellij.ide.IdeEventQueue;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.fileTypes.FileTypeEvent;
+import com.intellij.openapi.fileTypes.FileTypeListener;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.startup.StartupManager;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.*;
+import com.intellij.openapi.vfs.newvfs.persistent.FSRecords;
+import com.intellij.openapi.vfs.newvfs.persistent.PersistentFS;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Index of all project files by filename and by stem (see {@link AlternateStemExtractor}), so a lookup only has to
+ * test a few candidates instead of scanning the whole project.<br>
+ * The index is built in background after project open (warm-up): a low priority thread which pauses while the IDE
+ * is indexing or the user is typing, and which sleeps between batches so it never takes more than a fraction of one
+ * CPU. Until the warm-up is completed, lookups fall back to the project scan.<br>
+ * The index is persisted in background (see {@link AlternateFileIndexStorage}) after warm-up and a while after each
+ * change, and the next warm-up only loads and validates it against VFS, as long as the generic items (the stems) are
+ * the same.<br>
+ * If generic items change, only stems of files which the added or removed items can affect are recomputed. Files
+ * whose stems are unknown (generic regex timed out) are candidates of every generic lookup.<br>
+ * VFS events are collected (coalesced per directory) and applied in batches in background: deleted and renamed files
+ * are removed by the id and name they had before the event, so we never have to walk thru the whole index. Too many
+ * events at once (ex: VCS branch switch) let us rescan affected content roots instead, in parallel. We never wait for
+ * our lock on EDT: a lookup while the index is busy scans the project.<br>
+ * Files are stored by their VFS id: names in an {@link AlternateRadixTree} (also answers prefix lookups), stems in an
+ * {@link AlternatePostingMap} and trigrams of names in an {@link AlternateTrigramIndex} (for matchers which can only
+ * tell literals their names contain). A Bloom filter of names rejects most names which don't exist (ex: generated by free
+ * regex items) before any lookup. If the index gets bigger than MAX_HEAP_SIZE, we give up and lookups scan the
+ * project.
+ */
+public class AlternateFileIndex extends AbstractProjectComponent {
+    private static final int BATCH_SIZE = 200;
+    /**
+     * sleep this times as long as a batch took (-> warm-up takes at most a quarter of one CPU)
+     */
+    private static final int SLEEP_FACTOR = 3;
+    /**
+     * pause if user typed within this time (ms)
+     */
+    private static final long TYPING_PAUSE = 1000;
+    private static final long PAUSE = 500;
+    /**
+     * wait this time (ms) for more VFS events before applying them
+     */
+    private static final long CHANGES_DELAY = 300;
+    /**
+     * if more VFS events are pending, we rescan affected content roots
+     */
+    private static final int RESCAN_THRESHOLD = 10000;
+    /**
+     * wait this time (ms) after a change before the index is persisted again
+     */
+    private static final long SAVE_DELAY = 60000;
+    /**
+     * maximal heap size of index (bytes)
+     */
+    private static final long MAX_HEAP_SIZE = Math.min(Runtime.getRuntime().maxMemory() / 8, 256L * 1024 * 1024);
+    /**
+     * stem of files whose stems are unknown (generic regex timed out or disabled): candidates of every generic lookup
+     * (never a real stem, these are words)
+     */
+    private static final String UNKNOWN_STEM = "?";
+
+    /**
+     * guards all index data (but not pendingChanges, see changesLock)
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * guards pendingChanges, changesScheduled and changesInProgress (VFS events are collected on EDT)
+     */
+    private final Object changesLock = new Object();
+    private final AlternateRadixTree filesByName = new AlternateRadixTree(false);
+    private final AlternatePostingMap filesByStem = new AlternatePostingMap();
+    private final AlternateTrigramIndex filesByTrigram = new AlternateTrigramIndex();
+    @NotNull
+    private AlternateBloomFilter namesFilter = new AlternateBloomFilter(0);
+    /**
+     * true if index got too big (we don't try again in this session)
+     */
+    private volatile boolean tooBig;
+    /**
+     * null until warm-up is started
+     */
+    @Nullable
+    private volatile AlternateStemExtractor stemExtractor;
+    /**
+     * fingerprint of configuration (see {@link AlternateConfiguration#computeFingerprint()}) stems were checked for,
+     * null if file types have changed since
+     */
+    @Nullable
+    private volatile String checkedConfiguration;
+    /**
+     * incremented on each change of file types (generic items match their extensions)
+     */
+    private volatile int fileTypesChanges;
+    /**
+     * true while a background thread checks whether stems are still valid
+     */
+    private boolean stemsCheckScheduled;
+    private boolean ready;
+    /**
+     * true if index has changed since it was persisted
+     */
+    private boolean dirty;
+    /**
+     * true while a background thread waits to persist the index
+     */
+    private boolean saveScheduled;
+    /**
+     * incremented on each (re)start of warm-up, so an older warm-up stops
+     */
+    private volatile int generation;
+    private volatile boolean closed;
+    @NotNull
+    private Changes pendingChanges = new Changes();
+    /**
+     * true while a background thread waits for changes and applies them
+     */
+    private boolean changesScheduled;
+    /**
+     * true while changes are taken from pendingChanges but not applied yet
+     */
+    private boolean changesInProgress;
+
+    public AlternateFileIndex(Project project) {
+        super(project);
+    }
+
+    public static AlternateFileIndex getInstance(@NotNull Project project) {
+        return project.getComponent(AlternateFileIndex.class);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void projectOpened() {
+        MessageBusConnection connection = myProject.getMessageBus().connect(myProject);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener.Adapter() {
+            @Override
+            public void before(@NotNull List<? extends VFileEvent> events) {
+                collectRemovedFiles(events);
+            }
+
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                collectChanges(events);
+            }
+        });
+        connection.subscribe(FileTypeManager.TOPIC, new FileTypeListener() {
+            public void beforeFileTypesChanged(FileTypeEvent event) {
+            }
+
+            public void fileTypesChanged(FileTypeEvent event) {
+                fileTypesChanges++;
+                checkedConfiguration = null;
+            }
+        });
+        connection.subscribe(ProjectTopics.PROJECT_ROOTS, new ModuleRootListener() {
+            public void beforeRootsChange(ModuleRootEvent event) {
+            }
+
+            public void rootsChanged(ModuleRootEvent event) {
+                // content has changed
+                ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                    public void run() {
+                        restartWarmUp();
+                    }
+                });
+            }
+        });
+        // don't slow down project open: start after all startup activities
+        StartupManager.getInstance(myProject).registerPostStartupActivity(new Runnable() {
+            public void run() {
+                ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                    public void run() {
+                        startWarmUp();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void projectClosed() {
+        // not saved here: we don't walk thru the index on EDT, a save in background is pending if it has changed
+        closed = true;
+        generation++;
+    }
+
+    /**
+     * @return all indexed files which may be matched by one of fileMatchers, null if the index can't tell (ex: warm-up
+     * is not completed yet, changes are pending or the index is busy on EDT) -> scan project
+     */
+    @Nullable
+    public Collection<VirtualFile> getCandidates(@NotNull List<AlternateFileMatcher> fileMatchers) {
+        // never wait for a batch on EDT
+        if (ApplicationManager.getApplication().isDispatchThread()) {
+            if (!lock.tryLock()) {
+                return null;
+            }
+        } else {
+            lock.lock();
+        }
+        try {
+            return findCandidates(fileMatchers);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @see #getCandidates(List)
+     */
+    @Nullable
+    private Collection<VirtualFile> findCandidates(@NotNull List<AlternateFileMatcher> fileMatchers) {
+        if (!ready || stemExtractor == null) {
+            return null;
+        }
+        // pending changes are applied in background soon, meanwhile we can't tell
+        synchronized (changesLock) {
+            if (!pendingChanges.isEmpty() || changesInProgress) {
+                return null;
+            }
+        }
+        AlternateConfiguration configuration = AlternateConfiguration.getInstance();
+        boolean stemsChecked = configuration.computeFingerprint().equals(checkedConfiguration);
+        final Set<VirtualFile> result = new HashSet<VirtualFile>();
+        for (AlternateFileMatcher fileMatcher : fileMatchers) {
+            Collection<String> filenames = fileMatcher.getMatchingFilenames();
+            if (filenames != null) {
+                for (String filename : filenames) {
+                    if (namesFilter.mightContain(filename)) {
+                        addAll(result, filesByName.get(filename));
+                    }
+                }
+            } else if (fileMatcher instanceof AlternateGenericRegexFileMatcher) {
+                // stems depend on generic items and file types -> check them in background if they may have changed
+                if (!stemsChecked) {
+                    scheduleStemsCheck();
+                    // meanwhile: without prefixes, all matching names start with the name
+                    if (!hasPrefixes(configuration)) {
+                        filesByName.visitStartingWith(((AlternateGenericRegexFileMatcher) fileMatcher).getName(), configuration.caseInsensitiveBasename, new AlternatePostingMap.Visitor() {
+                            public void visit(@NotNull String key, @NotNull int[] ids) {
+                                addAll(result, ids);
+                            }
+                        });
+                    } else if (!addAllContaining(result, fileMatcher.getRequiredLiterals())) {
+                        return null;
+                    }
+                    continue;
+                }
+                addAll(result, filesByStem.get(((AlternateGenericRegexFileMatcher) fileMatcher).getName().toLowerCase(Locale.ENGLISH)));
+                addAll(result, filesByStem.get(UNKNOWN_STEM));
+            } else if (!addAllContaining(result, fileMatcher.getRequiredLiterals())) {
+                return null; // unknown matcher without literals
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return stems of name, UNKNOWN_STEM if stemExtractor can't tell
+     */
+    @NotNull
+    private static Set<String> getStems(@NotNull AlternateStemExtractor stemExtractor, @NotNull String name) {
+        Set<String> stems = stemExtractor.getStems(name);
+        return stems != null ? stems : Collections.singleton(UNKNOWN_STEM);
+    }
+
+    private static void addAll(@NotNull Set<VirtualFile> result, @NotNull int[] ids) {
+        for (int id : ids) {
+            VirtualFile file = findFile(id);
+            if (file != null) {
+                result.add(file);
+            }
+        }
+    }
+
+    /**
+     * Add files whose names contain all literals (and maybe some more, the matcher checks them anyway)
+     *
+     * @return false, if literals are too short to tell
+     */
+    private boolean addAllContaining(@NotNull Set<VirtualFile> result, @NotNull Collection<String> literals) {
+        int[] ids = filesByTrigram.find(literals);
+        if (ids == null) {
+            return false;
+        }
+        addAll(result, ids);
+        return true;
+    }
+
+    private static boolean hasPrefixes(@NotNull AlternateConfiguration configuration) {
+        for (AlternateGenericPrefixPostfixRegexItem item : configuration.genericPrefixRegexItems) {
+            if (!item.hasError()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return VFS id of file, 0 if it has none (such files are not indexed)
+     */
+    private static int getId(@NotNull VirtualFile file) {
+        return file instanceof VirtualFileWithId ? ((VirtualFileWithId) file).getId() : 0;
+    }
+
+    @Nullable
+    private static VirtualFile findFile(int id) {
+        return PersistentFS.getInstance().findFileById(id);
+    }
+
+    /**
+     * @return all indexed names
+     */
+    @NotNull
+    private List<String> getNames() {
+        final List<String> result = new ArrayList<String>(filesByName.size());
+        filesByName.visit(new AlternatePostingMap.Visitor() {
+            public void visit(@NotNull String key, @NotNull int[] ids) {
+                result.add(key);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Give up if index got too big (lookups scan project then)
+     */
+    private void checkHeapSize() {
+        if (filesByName.estimateHeapSize() + filesByStem.estimateHeapSize() + filesByTrigram.estimateHeapSize() + namesFilter.estimateHeapSize() > MAX_HEAP_SIZE) {
+            tooBig = true;
+            generation++;
+            ready = false;
+            stemExtractor = null;
+            clear();
+            synchronized (changesLock) {
+                pendingChanges = new Changes();
+            }
+        }
+    }
+
+    private void clear() {
+        filesByName.clear();
+        filesByStem.clear();
+        filesByTrigram.clear();
+        namesFilter = new AlternateBloomFilter(0);
+    }
+
+    /**
+     * Restart warm-up if it was started before
+     */
+    private void restartWarmUp() {
+        lock.lock();
+        try {
+            if (stemExtractor != null) {
+                startWarmUp();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clear index and (re)build it in background
+     */
+    private void startWarmUp() {
+        lock.lock();
+        try {
+            if (closed || tooBig) {
+                return;
+            }
+            final int currentGeneration = ++generation;
+            ready = false;
+            clear();
+            checkedConfiguration = AlternateConfiguration.getInstance().computeFingerprint();
+            stemExtractor = new AlternateStemExtractor(AlternateConfiguration.getInstance(), new AlternateFileTypeExtensionProvider());
+            final String stemFingerprint = stemExtractor.getFingerprint();
+            synchronized (changesLock) {
+                scheduleChanges(); // collected before warm-up
+            }
+            ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    int priority = thread.getPriority();
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    try {
+                        warmUp(currentGeneration, stemFingerprint);
+                    } catch (InterruptedException e) {
+                        // stop
+                    } finally {
+                        thread.setPriority(priority);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Check in background whether stems are still valid for current configuration and file types, update them if
+     * not (caller holds lock). Meanwhile lookups use a fallback.
+     */
+    private void scheduleStemsCheck() {
+        if (stemsCheckScheduled || closed) {
+            return;
+        }
+        stemsCheckScheduled = true;
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            public void run() {
+                int checkedFileTypesChanges = fileTypesChanges;
+                AlternateConfiguration configuration = AlternateConfiguration.getInstance();
+                String configurationFingerprint = configuration.computeFingerprint();
+                AlternateStemExtractor newStemExtractor = new AlternateStemExtractor(configuration, new AlternateFileTypeExtensionProvider());
+                lock.lock();
+                try {
+                    stemsCheckScheduled = false;
+                    if (stemExtractor == null) {
+                        return; // warm-up not started yet
+                    }
+                    // unknown stems are extracted again too (ex: generic regex was enabled again by settings)
+                    //noinspection ConstantConditions
+                    if (!newStemExtractor.getFingerprint().equals(stemExtractor.getFingerprint()) || filesByStem.get(UNKNOWN_STEM).length > 0) {
+                        updateStems(newStemExtractor);
+                    }
+                    if (checkedFileTypesChanges == fileTypesChanges) {
+                        checkedConfiguration = configurationFingerprint;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Generic items have changed: recompute stems of all filenames the changed items can affect (in background)
+     */
+    private void updateStems(@NotNull final AlternateStemExtractor newStemExtractor) {
+        lock.lock();
+        try {
+            if (closed || stemExtractor == null) {
+                return;
+            }
+            final int currentGeneration = ++generation;
+            ready = false;
+            final AlternateStemExtractor oldStemExtractor = stemExtractor;
+            final List<Pattern> changedExpressions = newStemExtractor.diff(oldStemExtractor);
+            final Iterator<String> names = getNames().iterator();
+            // files with unknown stems are extracted again (ex: generic regex is enabled again)
+            final int[] unknownIds = filesByStem.get(UNKNOWN_STEM);
+            Arrays.sort(unknownIds);
+            // from now on new files get new stems
+            stemExtractor = newStemExtractor;
+            ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                public void run() {
+                    Thread thread = Thread.currentThread();
+                    int priority = thread.getPriority();
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    try {
+                        boolean completed = runThrottled(currentGeneration, new Batch() {
+                            public boolean process() {
+                                for (int i = 0; i < BATCH_SIZE && names.hasNext(); i++) {
+                                    String name = names.next();
+                                    int[] ids = filesByName.get(name);
+                                    if (ids.length > 0 && (isAffected(changedExpressions, name) || containsAny(unknownIds, ids))) {
+                                        Set<String> oldStems = getStems(oldStemExtractor, name);
+                                        Set<String> newStems = getStems(newStemExtractor, name);
+                                        for (String stem : oldStems) {
+                                            if (!newStems.contains(stem)) {
+                                                for (int id : ids) {
+                                                    filesByStem.remove(stem, id);
+                                                }
+                                            }
+                                        }
+                                        for (String stem : newStems) {
+                                            if (!oldStems.contains(stem)) {
+                                                for (int id : ids) {
+                                                    filesByStem.add(stem, id);
+                                                }
+                                            }
+                                        }
+                                    }
+                                }
+                                return names.hasNext();
+                            }
+                        });
+                        if (completed) {
+                            lock.lock();
+                            try {
+                                if (!isCancelled(currentGeneration)) {
+                                    ready = true;
+                                    scheduleSave(SAVE_DELAY);
+                                }
+                            } finally {
+                                lock.unlock();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        // stop
+                    } finally {
+                        thread.setPriority(priority);
+                    }
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true, if one of changedExpressions (null: all) matches somewhere in name
+     */
+    private static boolean isAffected(@Nullable List<Pattern> changedExpressions, @NotNull String name) {
+        if (changedExpressions == null) {
+            return true;
+        }
+        for (Pattern pattern : changedExpressions) {
+            try {
+                if (AlternateRegexGuard.matcher(pattern, name).find()) {
+                    return true;
+                }
+            } catch (RegexTimeoutException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param sortedIds sorted
+     * @return true, if sortedIds contains one of ids
+     */
+    private static boolean containsAny(@NotNull int[] sortedIds, @NotNull int[] ids) {
+        for (int id : ids) {
+            if (Arrays.binarySearch(sortedIds, id) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isCancelled(int warmUpGeneration) {
+        return warmUpGeneration != generation || myProject.isDisposed();
+    }
+
+    /**
+     * Load persisted index or walk thru content
+     */
+    private void warmUp(int warmUpGeneration, @NotNull String stemFingerprint) throws InterruptedException {
+        boolean loaded;
+        try {
+            loaded = load(warmUpGeneration, stemFingerprint);
+        } catch (RuntimeException e) {
+            loaded = false; // broken file: forget what was loaded so far and rebuild
+            lock.lock();
+            try {
+                if (!isCancelled(warmUpGeneration)) {
+                    clear();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (loaded || walk(warmUpGeneration)) {
+            lock.lock();
+            try {
+                if (!isCancelled(warmUpGeneration)) {
+                    ready = true;
+                    scheduleSave(0);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * A small piece of work, done in a read action
+     */
+    private static interface Batch {
+        /**
+         * @return true, if there is more to do
+         */
+        boolean process();
+    }
+
+    /**
+     * Process batch until it is done, each time in its own read action (so we never block write actions for long).
+     * We pause while IDE is indexing or user is typing and sleep after each batch.
+     *
+     * @return false, if cancelled
+     */
+    private boolean runThrottled(final int warmUpGeneration, @NotNull final Batch batch) throws InterruptedException {
+        while (true) {
+            if (isCancelled(warmUpGeneration)) {
+                return false;
+            }
+            if (DumbService.getInstance(myProject).isDumb() || IdeEventQueue.getInstance().getIdleTime() < TYPING_PAUSE) {
+                Thread.sleep(PAUSE);
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            boolean more = ApplicationManager.getApplication().runReadAction(new Computable<Boolean>() {
+                public Boolean compute() {
+                    lock.lock();
+                    try {
+                        if (isCancelled(warmUpGeneration)) {
+                            return false;
+                        }
+                        boolean result = batch.process();
+                        checkHeapSize();
+                        return result;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+            Thread.sleep((System.currentTimeMillis() - start) * SLEEP_FACTOR);
+            if (!more) {
+                return !isCancelled(warmUpGeneration);
+            }
+        }
+    }
+
+    /**
+     * Walk thru content
+     *
+     * @return false, if cancelled
+     */
+    private boolean walk(final int warmUpGeneration) throws InterruptedException {
+        final Deque<VirtualFile> directories = new ArrayDeque<VirtualFile>();
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+            public void run() {
+                if (!isCancelled(warmUpGeneration)) {
+                    // nested content roots are walked thru by their parent
+                    VirtualFile[] contentRoots = ProjectRootManager.getInstance(myProject).getContentRoots();
+                    for (VirtualFile contentRoot : contentRoots) {
+                        if (!hasAncestor(contentRoot, contentRoots)) {
+                            directories.push(contentRoot);
+                        }
+                    }
+                }
+            }
+        });
+        return runThrottled(warmUpGeneration, new Batch() {
+            public boolean process() {
+                indexBatch(directories);
+                return !directories.isEmpty();
+            }
+        });
+    }
+
+    /**
+     * Load persisted index. Each file is validated against VFS (deleted, renamed, moved out of content or changed
+     * since) and directories changed since are scanned again.
+     *
+     * @return false, if there is no persisted index for stemFingerprint or if cancelled (a broken file throws a
+     * RuntimeException)
+     */
+    private boolean load(final int warmUpGeneration, @NotNull String stemFingerprint) throws InterruptedException {
+        final AlternateFileIndexStorage storage;
+        try {
+            storage = AlternateFileIndexStorage.open(getStorageFile());
+        } catch (IOException e) {
+            return false;
+        }
+        if (storage == null) {
+            return false;
+        }
+        return storage.readInt() == AlternateFileIndexStorage.VERSION
+                && storage.readLong() == FSRecords.getCreationTimestamp()
+                && storage.readString().equals(stemFingerprint)
+                && loadFiles(warmUpGeneration, storage)
+                && loadDirectories(warmUpGeneration, storage);
+    }
+
+    /**
+     * @return false, if cancelled
+     */
+    private boolean loadFiles(final int warmUpGeneration, @NotNull final AlternateFileIndexStorage storage) throws InterruptedException {
+        final int[] remainingFiles = {storage.readCount(AlternateFileIndexStorage.MIN_FILE_SIZE)};
+        return runThrottled(warmUpGeneration, new Batch() {
+            public boolean process() {
+                ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                for (int i = 0; i < BATCH_SIZE && remainingFiles[0] > 0; i++, remainingFiles[0]--) {
+                    int id = storage.readInt();
+                    long timeStamp = storage.readLong();
+                    String name = storage.readString();
+                    String[] stems = new String[storage.readCount(AlternateFileIndexStorage.MIN_STEM_SIZE)];
+                    for (int j = 0; j < stems.length; j++) {
+                        stems[j] = storage.readString();
+                    }
+                    VirtualFile file = findFile(id);
+                    if (file != null && file.isValid() && !file.isDirectory() && isContent(projectFileIndex, file)) {
+                        if (name.equals(file.getName()) && timeStamp == file.getTimeStamp()) {
+                            if (filesByName.add(name, id)) {
+                                addName(name, id);
+                            }
+                            for (String stem : stems) {
+                                filesByStem.add(stem, id);
+                            }
+                        } else {
+                            addFile(file);
+                        }
+                    }
+                }
+                return remainingFiles[0] > 0;
+            }
+        });
+    }
+
+    /**
+     * Scan directories changed since index was persisted
+     *
+     * @return false, if cancelled
+     */
+    private boolean loadDirectories(final int warmUpGeneration, @NotNull AlternateFileIndexStorage storage) throws InterruptedException {
+        final int directoryCount = storage.readCount(AlternateFileIndexStorage.DIRECTORY_SIZE);
+        final Set<Integer> directoryIds = new HashSet<Integer>();
+        final long[] directoryTimeStamps = new long[directoryCount];
+        final int[] directoryIdList = new int[directoryCount];
+        for (int i = 0; i < directoryCount; i++) {
+            directoryIdList[i] = storage.readInt();
+            directoryTimeStamps[i] = storage.readLong();
+            directoryIds.add(directoryIdList[i]);
+        }
+        final int[] nextDirectory = {0};
+        return runThrottled(warmUpGeneration, new Batch() {
+            public boolean process() {
+                ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                for (int i = 0; i < BATCH_SIZE && nextDirectory[0] < directoryCount; i++, nextDirectory[0]++) {
+                    VirtualFile directory = findFile(directoryIdList[nextDirectory[0]]);
+                    if (directory != null && directory.isValid() && directory.isDirectory()
+                            && directory.getTimeStamp() != directoryTimeStamps[nextDirectory[0]]
+                            && isContent(projectFileIndex, directory)) {
+                        // children may have been created since: add new files and new directories
+                        for (VirtualFile child : directory.getChildren()) {
+                            if (!child.isDirectory() || !directoryIds.contains(getId(child))) {
+                                addFiles(projectFileIndex, child);
+                            }
+                        }
+                    }
+                }
+                return nextDirectory[0] < directoryCount;
+            }
+        });
+    }
+
+    /**
+     * Persist index in background after delay (caller holds lock)
+     */
+    private void scheduleSave(final long delay) {
+        dirty = true;
+        if (saveScheduled || closed) {
+            return;
+        }
+        saveScheduled = true;
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            public void run() {
+                Thread thread = Thread.currentThread();
+                int priority = thread.getPriority();
+                thread.setPriority(Thread.MIN_PRIORITY);
+                try {
+                    Thread.sleep(delay);
+                    save();
+                } catch (InterruptedException e) {
+                    // stop
+                } finally {
+                    thread.setPriority(priority);
+                    lock.lock();
+                    try {
+                        saveScheduled = false;
+                        if (dirty && ready) {
+                            scheduleSave(SAVE_DELAY); // changed meanwhile
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Persist index (if completed and changed), so next warm-up just has to load it. Ids, names and stems are copied
+     * holding our lock (no VFS access), files and their directories are validated against VFS in throttled batches
+     * and data is written to disk afterwards.
+     */
+    private void save() throws InterruptedException {
+        final int saveGeneration;
+        String stemFingerprint;
+        final List<Integer> ids = new ArrayList<Integer>();
+        final List<String> names = new ArrayList<String>();
+        Map<Integer, List<String>> stemsByFile;
+        lock.lock();
+        try {
+            AlternateStemExtractor currentStemExtractor = stemExtractor;
+            if (!ready || !dirty || currentStemExtractor == null || closed || myProject.isDisposed()) {
+                return;
+            }
+            dirty = false;
+            saveGeneration = generation;
+            stemFingerprint = currentStemExtractor.getFingerprint();
+            filesByName.visit(new AlternatePostingMap.Visitor() {
+                public void visit(@NotNull String key, @NotNull int[] keyIds) {
+                    for (int id : keyIds) {
+                        ids.add(id);
+                        names.add(key);
+                    }
+                }
+            });
+            stemsByFile = getStemsByFile();
+        } finally {
+            lock.unlock();
+        }
+        // files (still valid) and their directories
+        final long[] timeStamps = new long[ids.size()];
+        final boolean[] valid = new boolean[ids.size()];
+        final Map<Integer, Long> directories = new LinkedHashMap<Integer, Long>();
+        final int[] next = {0};
+        boolean completed = runThrottled(saveGeneration, new Batch() {
+            public boolean process() {
+                ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                for (int i = 0; i < BATCH_SIZE && next[0] < valid.length; i++, next[0]++) {
+                    VirtualFile file = findFile(ids.get(next[0]));
+                    if (file != null && file.isValid() && names.get(next[0]).equals(file.getName())) {
+                        valid[next[0]] = true;
+                        timeStamps[next[0]] = file.getTimeStamp();
+                        VirtualFile parent = file.getParent();
+                        while (parent instanceof VirtualFileWithId && !directories.containsKey(getId(parent)) && isContent(projectFileIndex, parent)) {
+                            directories.put(getId(parent), parent.getTimeStamp());
+                            parent = parent.getParent();
+                        }
+                    }
+                }
+                return next[0] < valid.length;
+            }
+        });
+        if (!completed) {
+            return; // index is built again and saved afterwards
+        }
+        try {
+            AlternateFileIndexStorage.Writer writer = new AlternateFileIndexStorage.Writer(getStorageFile());
+            writer.writeInt(AlternateFileIndexStorage.VERSION);
+            writer.writeLong(FSRecords.getCreationTimestamp());
+            writer.writeString(stemFingerprint);
+            int fileCount = 0;
+            for (boolean isValid : valid) {
+                fileCount += isValid ? 1 : 0;
+            }
+            writer.writeInt(fileCount);
+            for (int i = 0; i < valid.length; i++) {
+                if (valid[i]) {
+                    writer.writeInt(ids.get(i));
+                    writer.writeLong(timeStamps[i]);
+                    writer.writeString(names.get(i));
+                    List<String> stems = stemsByFile.get(ids.get(i));
+                    writer.writeInt(stems == null ? 0 : stems.size());
+                    if (stems != null) {
+                        for (String stem : stems) {
+                            writer.writeString(stem);
+                        }
+                    }
+                }
+            }
+            writer.writeInt(directories.size());
+            for (Map.Entry<Integer, Long> directory : directories.entrySet()) {
+                writer.writeInt(directory.getKey());
+                writer.writeLong(directory.getValue());
+            }
+            writer.commit();
+        } catch (IOException e) {
+            // index is built again on next warm-up
+        }
+    }
+
+    /**
+     * @return stems per file id (caller holds lock)
+     */
+    @NotNull
+    private Map<Integer, List<String>> getStemsByFile() {
+        final Map<Integer, List<String>> result = new HashMap<Integer, List<String>>();
+        filesByStem.visit(new AlternatePostingMap.Visitor() {
+            public void visit(@NotNull String key, @NotNull int[] ids) {
+                for (int id : ids) {
+                    List<String> stems = result.get(id);
+                    if (stems == null) {
+                        stems = new ArrayList<String>(4);
+                        result.put(id, stems);
+                    }
+                    stems.add(key);
+                }
+            }
+        });
+        return result;
+    }
+
+    @NotNull
+    private File getStorageFile() {
+        return new File(new File(PathManager.getSystemPath(), "altn8"), myProject.getLocationHash() + ".index");
+    }
+
+    private static boolean hasAncestor(@NotNull VirtualFile file, @NotNull VirtualFile[] ancestors) {
+        for (VirtualFile ancestor : ancestors) {
+            if (VfsUtilCore.isAncestor(ancestor, file, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Index files of directories (at least BATCH_SIZE files if there are) and push their subdirectories
+     */
+    private void indexBatch(@NotNull Deque<VirtualFile> directories) {
+        ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+        int count = 0;
+        while (count < BATCH_SIZE && !directories.isEmpty()) {
+            VirtualFile directory = directories.pop();
+            if (directory.isValid()) {
+                for (VirtualFile child : directory.getChildren()) {
+                    if (isContent(projectFileIndex, child)) {
+                        if (child.isDirectory()) {
+                            directories.push(child);
+                        } else {
+                            addFile(child);
+                            count++;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static boolean isContent(@NotNull ProjectFileIndex projectFileIndex, @NotNull VirtualFile file) {
+        return !projectFileIndex.isIgnored(file) && projectFileIndex.isInContent(file);
+    }
+
+    /**
+     * Remember files which are about to be deleted (with their ids and names, both are gone after the event)
+     */
+    private void collectRemovedFiles(@NotNull List<? extends VFileEvent> events) {
+        if (tooBig) {
+            return;
+        }
+        synchronized (changesLock) {
+            for (VFileEvent event : events) {
+                if (event instanceof VFileDeleteEvent) {
+                    collectRemovedFiles(event.getFile());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remember all files of subtree as removed. Only cached children are visited: others were never seen by the
+     * index. If there are too many, we sweep the whole index instead.
+     */
+    private void collectRemovedFiles(@NotNull VirtualFile file) {
+        if (pendingChanges.sweep) {
+            return;
+        }
+        if (file.isDirectory()) {
+            if (file instanceof NewVirtualFile) {
+                for (VirtualFile child : ((NewVirtualFile) file).getCachedChildren()) {
+                    collectRemovedFiles(child);
+                }
+            }
+        } else if (pendingChanges.removedFiles.size() >= RESCAN_THRESHOLD) {
+            pendingChanges.removedFiles.clear();
+            pendingChanges.sweep = true;
+        } else {
+            addRemovedFile(getId(file), file.getName());
+        }
+    }
+
+    /**
+     * Remember file as removed by the name it is indexed with (the first one, if it was renamed several times)
+     */
+    private void addRemovedFile(int id, @NotNull String name) {
+        if (id != 0 && !pendingChanges.removedFiles.containsKey(id)) {
+            pendingChanges.removedFiles.put(id, name);
+        }
+    }
+
+    /**
+     * Collect changes of events (applied later in background, events before warm-up are kept until it starts)
+     */
+    private void collectChanges(@NotNull List<? extends VFileEvent> events) {
+        if (tooBig) {
+            return;
+        }
+        synchronized (changesLock) {
+            for (VFileEvent event : events) {
+                if (event instanceof VFileCreateEvent) {
+                    VFileCreateEvent createEvent = (VFileCreateEvent) event;
+                    if (createEvent.isDirectory()) {
+                        addSubtree(createEvent.getFile());
+                    } else {
+                        pendingChanges.directories.add(createEvent.getParent());
+                    }
+                } else if (event instanceof VFileCopyEvent) {
+                    VFileCopyEvent copyEvent = (VFileCopyEvent) event;
+                    addSubtree(copyEvent.getNewParent().findChild(copyEvent.getNewChildName()));
+                } else if (event instanceof VFileMoveEvent) {
+                    // ids and names stay the same: just check whether subtree is in content now
+                    addSubtree(event.getFile());
+                } else if (isRename(event)) {
+                    VirtualFile file = event.getFile();
+                    if (!file.isDirectory()) {
+                        addRemovedFile(getId(file), (String) ((VFilePropertyChangeEvent) event).getOldValue());
+                    }
+                    addSubtree(file);
+                } else if (!(event instanceof VFileDeleteEvent)) {
+                    continue; // content changes etc. don't affect our index (deleted files were collected before)
+                }
+                pendingChanges.eventCount++;
+            }
+            scheduleChanges();
+        }
+    }
+
+    /**
+     * Start a background thread applying pending changes (if not running yet and warm-up is started). Caller holds
+     * changesLock.
+     */
+    private void scheduleChanges() {
+        if (!pendingChanges.isEmpty() && !changesScheduled && !closed && stemExtractor != null) {
+            changesScheduled = true;
+            ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+                public void run() {
+                    applyPendingChanges();
+                }
+            });
+        }
+    }
+
+    private void addSubtree(@Nullable VirtualFile file) {
+        if (file != null) {
+            pendingChanges.subtrees.add(file);
+        }
+    }
+
+    private static boolean isRename(@NotNull VFileEvent event) {
+        return event instanceof VFilePropertyChangeEvent && VirtualFile.PROP_NAME.equals(((VFilePropertyChangeEvent) event).getPropertyName());
+    }
+
+    /**
+     * Wait for more events, then apply all pending changes (or rescan if there are too many)
+     */
+    private void applyPendingChanges() {
+        Thread thread = Thread.currentThread();
+        int priority = thread.getPriority();
+        thread.setPriority(Thread.MIN_PRIORITY);
+        try {
+            Thread.sleep(CHANGES_DELAY);
+            while (true) {
+                final Changes changes;
+                synchronized (changesLock) {
+                    if (pendingChanges.isEmpty() || closed) {
+                        return;
+                    }
+                    changes = pendingChanges;
+                    pendingChanges = new Changes();
+                    changesInProgress = true;
+                }
+                try {
+                    if (changes.eventCount > RESCAN_THRESHOLD) {
+                        rescan(changes);
+                    } else {
+                        ApplicationManager.getApplication().runReadAction(new Runnable() {
+                            public void run() {
+                                lock.lock();
+                                try {
+                                    applyChanges(changes);
+                                } finally {
+                                    lock.unlock();
+                                }
+                            }
+                        });
+                    }
+                } finally {
+                    synchronized (changesLock) {
+                        changesInProgress = false;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // stop
+        } finally {
+            thread.setPriority(priority);
+            synchronized (changesLock) {
+                changesScheduled = false;
+                scheduleChanges(); // changes collected meanwhile
+            }
+        }
+    }
+
+    /**
+     * Apply changes (in read action, holding our lock)
+     */
+    private void applyChanges(@NotNull Changes changes) {
+        if (stemExtractor == null || changes.isEmpty()) {
+            return;
+        }
+        ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+        removeFiles(changes);
+        // directories with created files
+        for (VirtualFile directory : changes.directories) {
+            if (directory.isValid() && isContent(projectFileIndex, directory)) {
+                for (VirtualFile child : directory.getChildren()) {
+                    if (!child.isDirectory() && isContent(projectFileIndex, child)) {
+                        addFile(child);
+                    }
+                }
+            }
+        }
+        // created, copied, moved and renamed files (may be inside or outside of content now)
+        for (VirtualFile file : changes.subtrees) {
+            if (file.isValid()) {
+                updateFiles(projectFileIndex, file);
+            }
+        }
+        checkHeapSize();
+        scheduleSave(SAVE_DELAY);
+    }
+
+    /**
+     * Remove deleted and renamed files by the names they are indexed with
+     */
+    private void removeFiles(@NotNull Changes changes) {
+        if (changes.sweep) {
+            sweep(null);
+        }
+        for (Map.Entry<Integer, String> entry : changes.removedFiles.entrySet()) {
+            remove(entry.getValue(), entry.getKey());
+        }
+    }
+
+    /**
+     * Remove deleted files, files indexed with an old name and (if root is given) all files under root
+     */
+    private void sweep(@Nullable final VirtualFile root) {
+        final List<String> removedNames = new ArrayList<String>();
+        final List<Integer> removedIds = new ArrayList<Integer>();
+        filesByName.visit(new AlternatePostingMap.Visitor() {
+            public void visit(@NotNull String key, @NotNull int[] ids) {
+                for (int id : ids) {
+                    VirtualFile file = findFile(id);
+                    if (file == null || !file.isValid() || !key.equals(file.getName()) || (root != null && VfsUtilCore.isAncestor(root, file, false))) {
+                        removedNames.add(key);
+                        removedIds.add(id);
+                    }
+                }
+            }
+        });
+        for (int i = 0; i < removedNames.size(); i++) {
+            remove(removedNames.get(i), removedIds.get(i));
+        }
+    }
+
+    /**
+     * Too many changes at once (ex: VCS branch switch): rescan content roots with created/moved files, each in its
+     * own thread
+     */
+    private void rescan(@NotNull final Changes changes) throws InterruptedException {
+        final AlternateStemExtractor rescanStemExtractor = stemExtractor;
+        if (rescanStemExtractor == null) {
+            return;
+        }
+        List<VirtualFile> roots = ApplicationManager.getApplication().runReadAction(new Computable<List<VirtualFile>>() {
+            public List<VirtualFile> compute() {
+                List<VirtualFile> result = new ArrayList<VirtualFile>();
+                VirtualFile[] contentRoots = ProjectRootManager.getInstance(myProject).getContentRoots();
+                for (VirtualFile contentRoot : contentRoots) {
+                    if (!hasAncestor(contentRoot, contentRoots) && (containsAny(contentRoot, changes.directories) || containsAny(contentRoot, changes.subtrees))) {
+                        result.add(contentRoot);
+                    }
+                }
+                return result;
+            }
+        });
+        // scan roots in parallel
+        List<Future<List<IndexedFile>>> futures = new ArrayList<Future<List<IndexedFile>>>();
+        for (final VirtualFile root : roots) {
+            futures.add(ApplicationManager.getApplication().executeOnPooledThread(new Callable<List<IndexedFile>>() {
+                public List<IndexedFile> call() throws Exception {
+                    Thread thread = Thread.currentThread();
+                    int priority = thread.getPriority();
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    try {
+                        return scan(root, rescanStemExtractor);
+                    } finally {
+                        thread.setPriority(priority);
+                    }
+                }
+            }));
+        }
+        final List<IndexedFile> indexedFiles = new ArrayList<IndexedFile>();
+        for (Future<List<IndexedFile>> future : futures) {
+            try {
+                indexedFiles.addAll(future.get());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        // replace index entries of roots
+        final List<VirtualFile> rescannedRoots = roots;
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+            public void run() {
+                lock.lock();
+                try {
+                    if (stemExtractor != rescanStemExtractor) {
+                        return; // warm-up was restarted with other stems
+                    }
+                    removeFiles(changes);
+                    for (VirtualFile root : rescannedRoots) {
+                        if (root.isValid()) {
+                            sweep(root);
+                        }
+                    }
+                    for (IndexedFile indexedFile : indexedFiles) {
+                        int id = getId(indexedFile.file);
+                        if (id != 0 && indexedFile.file.isValid() && indexedFile.name.equals(indexedFile.file.getName())) {
+                            if (filesByName.add(indexedFile.name, id)) {
+                                addName(indexedFile.name, id);
+                            }
+                            for (String stem : indexedFile.stems) {
+                                filesByStem.add(stem, id);
+                            }
+                        }
+                    }
+                    // files moved or renamed out of rescanned roots (ex: out of content)
+                    ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                    VirtualFile[] rootArray = rescannedRoots.toArray(new VirtualFile[rescannedRoots.size()]);
+                    for (VirtualFile file : changes.subtrees) {
+                        if (file.isValid() && !hasAncestor(file, rootArray)) {
+                            updateFiles(projectFileIndex, file);
+                        }
+                    }
+                    checkHeapSize();
+                    scheduleSave(SAVE_DELAY);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    private static boolean containsAny(@NotNull VirtualFile root, @NotNull Set<VirtualFile> files) {
+        for (VirtualFile file : files) {
+            if (VfsUtilCore.isAncestor(root, file, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return all content files under root with their stems (directories are read in batches, each in its own read
+     * action)
+     */
+    @NotNull
+    private List<IndexedFile> scan(@NotNull VirtualFile root, @NotNull final AlternateStemExtractor rescanStemExtractor) {
+        final List<IndexedFile> result = new ArrayList<IndexedFile>();
+        final Deque<VirtualFile> directories = new ArrayDeque<VirtualFile>();
+        directories.push(root);
+        while (!directories.isEmpty() && !closed) {
+            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                public void run() {
+                    ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(myProject).getFileIndex();
+                    for (int i = 0; i < BATCH_SIZE && !directories.isEmpty(); i++) {
+                        VirtualFile directory = directories.pop();
+                        if (directory.isValid() && isContent(projectFileIndex, directory)) {
+                            for (VirtualFile child : directory.getChildren()) {
+                                if (child.isDirectory()) {
+                                    directories.push(child);
+                                } else if (isContent(projectFileIndex, child)) {
+                                    String name = child.getName();
+                                    result.add(new IndexedFile(child, name, getStems(rescanStemExtractor, name)));
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        return result;
+    }
+
+    private void addFiles(@NotNull ProjectFileIndex projectFileIndex, @NotNull VirtualFile file) {
+        if (isContent(projectFileIndex, file)) {
+            if (file.isDirectory()) {
+                for (VirtualFile child : file.getChildren()) {
+                    addFiles(projectFileIndex, child);
+                }
+            } else {
+                addFile(file);
+            }
+        }
+    }
+
+    /**
+     * Add files of subtree which are in content and remove all others
+     */
+    private void updateFiles(@NotNull ProjectFileIndex projectFileIndex, @NotNull VirtualFile file) {
+        if (file.isDirectory()) {
+            for (VirtualFile child : file.getChildren()) {
+                updateFiles(projectFileIndex, child);
+            }
+        } else if (isContent(projectFileIndex, file)) {
+            addFile(file);
+        } else {
+            removeFile(file);
+        }
+    }
+
+    private void addFile(@NotNull VirtualFile file) {
+        int id = getId(file);
+        if (id != 0) {
+            String name = file.getName();
+            if (filesByName.add(name, id)) {
+                addName(name, id);
+            }
+            //noinspection ConstantConditions
+            for (String stem : getStems(stemExtractor, name)) {
+                filesByStem.add(stem, id);
+            }
+        }
+    }
+
+    private void removeFile(@NotNull VirtualFile file) {
+        int id = getId(file);
+        if (id != 0) {
+            remove(file.getName(), id);
+        }
+    }
+
+    /**
+     * Remove id indexed by name (and its stems)
+     */
+    private void remove(@NotNull String name, int id) {
+        if (filesByName.remove(name, id)) {
+            //noinspection ConstantConditions
+            for (String stem : getStems(stemExtractor, name)) {
+                filesByStem.remove(stem, id);
+            }
+            filesByStem.remove(UNKNOWN_STEM, id); // stems may have been unknown when file was added
+            filesByTrigram.remove(name, id);
+            if (filesByTrigram.needsRebuild()) {
+                filesByTrigram.clear();
+                filesByName.visit(new AlternatePostingMap.Visitor() {
+                    public void visit(@NotNull String key, @NotNull int[] ids) {
+                        for (int fileId : ids) {
+                            filesByTrigram.add(key, fileId);
+                        }
+                    }
+                });
+            }
+            if (filesByName.get(name).length == 0) {
+                namesFilter.remove(name);
+                if (namesFilter.needsRebuild()) {
+                    rebuildNamesFilter();
+                }
+            }
+        }
+    }
+
+    /**
+     * Add name (just added to filesByName) to trigrams and names filter
+     */
+    private void addName(@NotNull String name, int id) {
+        filesByTrigram.add(name, id);
+        if (filesByName.get(name).length == 1) {
+            namesFilter.add(name);
+            if (namesFilter.needsRebuild()) {
+                rebuildNamesFilter();
+            }
+        }
+    }
+
+    /**
+     * New names filter with all names (and room for as many more)
+     */
+    private void rebuildNamesFilter() {
+        final AlternateBloomFilter filter = new AlternateBloomFilter(filesByName.size() * 2);
+        filesByName.visit(new AlternatePostingMap.Visitor() {
+            public void visit(@NotNull String key, @NotNull int[] ids) {
+                filter.add(key);
+            }
+        });
+        namesFilter = filter;
+    }
+
+    /**
+     * VFS changes not applied yet, coalesced per directory
+     */
+    private static final class Changes {
+        /**
+         * directories with created files
+         */
+        private final Set<VirtualFile> directories = new HashSet<VirtualFile>();
+        /**
+         * created, copied, moved or renamed files and directories (whole subtree has to be checked)
+         */
+        private final Set<VirtualFile> subtrees = new HashSet<VirtualFile>();
+        /**
+         * deleted files and renamed files: id -> name they are indexed with
+         */
+        private final Map<Integer, String> removedFiles = new HashMap<Integer, String>();
+        /**
+         * too many files were deleted to remember them -> remove all invalid files
+         */
+        private boolean sweep;
+        private int eventCount;
+
+        private boolean isEmpty() {
+            return eventCount == 0;
+        }
+    }
+
+    /**
+     * A scanned file with its stems
+     */
+    private static final class IndexedFile {
+        @NotNull
+        private final VirtualFile file;
+        @NotNull
+        private final String name;
+        @NotNull
+        private final Set<String> stems;
+
+        private IndexedFile(@NotNull VirtualFile file, @NotNull String name, @NotNull Set<String> stems) {
+            this.file = file;
+            this.name = name;
+            this.stems = stems;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * File of a persisted {@link AlternateFileIndex}. Layout:
+ * <pre>
+ *   int     VERSION
+ *   long    VFS creation timestamp (file ids are only valid in same VFS)
+ *   string  fingerprint of stems
+ *   int     fileCount, per file: int id, long timeStamp, string name, int stemCount, string stems...
+ *   int     directoryCount, per directory: int id, long timeStamp
+ * </pre>
+ * Strings are stored as int length and UTF-8 bytes. The file is read into memory at once (a broken file throws
+ * {@link BufferUnderflowException}): it is not kept open or mapped, so it can be replaced at any time (Windows locks
+ * mapped files until they are garbage collected).
+ */
+final class AlternateFileIndexStorage {
+    static final int VERSION = 1;
+    /**
+     * minimal size of a file entry (id, timeStamp, name length, stemCount)
+     */
+    static final int MIN_FILE_SIZE = 20;
+    /**
+     * minimal size of a stem (length)
+     */
+    static final int MIN_STEM_SIZE = 4;
+    /**
+     * size of a directory entry (id, timeStamp)
+     */
+    static final int DIRECTORY_SIZE = 12;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+
+    private AlternateFileIndexStorage(@NotNull ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return content of file or null if there is none
+     */
+    @Nullable
+    static AlternateFileIndexStorage open(@NotNull File file) throws IOException {
+        if (!file.isFile()) {
+            return null;
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            long length = randomAccessFile.length();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Too big: " + file);
+            }
+            byte[] bytes = new byte[(int) length];
+            randomAccessFile.readFully(bytes);
+            return new AlternateFileIndexStorage(ByteBuffer.wrap(bytes));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    int readInt() {
+        return buffer.getInt();
+    }
+
+    long readLong() {
+        return buffer.getLong();
+    }
+
+    /**
+     * @param itemSize minimal size of each item
+     * @return count of items which follow
+     * @throws BufferUnderflowException if file is broken (they can't fit into the rest of file)
+     */
+    int readCount(int itemSize) {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemSize) {
+            throw new BufferUnderflowException();
+        }
+        return count;
+    }
+
+    /**
+     * @throws BufferUnderflowException if file is broken
+     */
+    @NotNull
+    String readString() {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Writer of storage file. Data is collected in memory (so callers don't do I/O while holding locks) and written
+     * on commit into a temp file which then replaces file, so a crash never leaves a broken file.
+     */
+    static final class Writer {
+        private final File file;
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Writer(@NotNull File file) {
+            this.file = file;
+        }
+
+        void writeInt(int value) throws IOException {
+            out.writeInt(value);
+        }
+
+        void writeLong(long value) throws IOException {
+            out.writeLong(value);
+        }
+
+        void writeString(@NotNull String value) throws IOException {
+            byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Write data into temp file and replace file by it
+         */
+        void commit() throws IOException {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Cannot create " + directory);
+            }
+            File tempFile = new File(file.getPath() + ".tmp");
+            boolean written = false;
+            try {
+                OutputStream tempOut = new FileOutputStream(tempFile);
+                try {
+                    bytes.writeTo(tempOut);
+                } finally {
+                    tempOut.close();
+                }
+                // rename replaces file atomically, except on Windows: there it fails if file exists
+                written = tempFile.renameTo(file) || (file.delete() && tempFile.renameTo(file));
+            } finally {
+                if (!written) {
+                    //noinspection ResultOfMethodCallIgnored
+                    tempFile.delete();
+                }
+            }
+            if (!written) {
+                throw new IOException("Cannot write " + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import com.intellij.openapi.application.ApplicationAdapter;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.AbstractProjectComponent;
+import com.intellij.openapi.fileEditor.FileEditorManagerAdapter;
+import com.intellij.openapi.fileEditor.FileEditorManagerEvent;
+import com.intellij.openapi.fileEditor.FileEditorManagerListener;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the corresponding files of the selected editor in background, so our action can take them from
+ * {@link AlternateFileCache}. A running prefetch is cancelled if the user selects another editor or a write action
+ * starts (we never block the user).
+ */
+public class AlternateFilePrefetcher extends AbstractProjectComponent {
+    @Nullable
+    private ProgressIndicator currentIndicator;
+
+    public AlternateFilePrefetcher(Project project) {
+        super(project);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void projectOpened() {
+        myProject.getMessageBus().connect(myProject).subscribe(FileEditorManagerListener.FILE_EDITOR_MANAGER, new FileEditorManagerAdapter() {
+            @Override
+            public void selectionChanged(@NotNull FileEditorManagerEvent event) {
+                prefetch(event.getNewFile());
+            }
+        });
+        ApplicationManager.getApplication().addApplicationListener(new ApplicationAdapter() {
+            @Override
+            public void beforeWriteActionStart(Object action) {
+                cancel();
+            }
+        }, myProject);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void projectClosed() {
+        cancel();
+    }
+
+    /**
+     * Cancel running prefetch and start a new one for file
+     */
+    private synchronized void prefetch(@Nullable final VirtualFile file) {
+        cancel();
+        if (file == null || !file.isValid() || file.isDirectory()) {
+            return;
+        }
+        final ProgressIndicator indicator = new ProgressIndicatorBase();
+        currentIndicator = indicator;
+        ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+            public void run() {
+                Thread thread = Thread.currentThread();
+                int priority = thread.getPriority();
+                thread.setPriority(Thread.MIN_PRIORITY);
+                try {
+                    ProgressManager.getInstance().runProcess(new Runnable() {
+                        public void run() {
+                            ApplicationManager.getApplication().runReadAction(new Runnable() {
+                                public void run() {
+                                    if (!indicator.isCanceled() && !myProject.isDisposed() && file.isValid()) {
+                                        AlternateFileCache.getInstance(myProject).findFiles(file);
+                                    }
+                                }
+                            });
+                        }
+                    }, indicator);
+                } catch (ProcessCanceledException e) {
+                    // user moved on -> just forget it
+                } finally {
+                    thread.setPriority(priority);
+                    done(indicator);
+                }
+            }
+        });
+    }
+
+    private synchronized void cancel() {
+        if (currentIndicator != null) {
+            currentIndicator.cancel();
+            currentIndicator = null;
+        }
+    }
+
+    private synchronized void done(@NotNull ProgressIndicator indicator) {
+        if (currentIndicator == indicator) {
+            currentIndicator = null;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import altn8.filematcher.AlternateFileExtensionProvider;
+import com.intellij.openapi.fileTypes.*;
+import com.intellij.util.PatternUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * File extensions of all file types registered in the IDE
+ */
+public class AlternateFileTypeExtensionProvider implements AlternateFileExtensionProvider {
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public List<String> getFileExtensions() {
+        List<String> result = new ArrayList<String>();
+        FileTypeManager fileTypeManager = FileTypeManager.getInstance();
+        for (FileType fileType : fileTypeManager.getRegisteredFileTypes()) {
+            for (FileNameMatcher fileNameMatcher : fileTypeManager.getAssociations(fileType)) {
+                String extension = null;
+                if (fileNameMatcher instanceof ExtensionFileNameMatcher) {
+                    extension = ((ExtensionFileNameMatcher) fileNameMatcher).getExtension();
+                } else if (fileNameMatcher instanceof WildcardFileNameMatcher) {
+                    String pattern = ((WildcardFileNameMatcher) fileNameMatcher).getPattern();
+                    if (pattern.startsWith("*.")) { // we only support matcher starting with *. assuming it's a file extension
+                        extension = PatternUtil.convertToRegex(pattern.substring(2));
+                    }
+                }
+                if (extension != null) {
+                    result.add(extension);
+                }
+            }
+        }
+        return result;
+    }
+}
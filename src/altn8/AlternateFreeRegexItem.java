@@ -15,6 +15,7 @@
  */
 package altn8;
 
+import altn8.filematcher.AlternateNameTemplate;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -22,7 +23,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 /**
- * data item of a free regex (immutable).
+ * data item of a free regex (immutable). Expressions may be templates too (ex: <code>${name}Test.${ext}</code>).
  */
 public final class AlternateFreeRegexItem extends AbstractRegexItem {
     @NotNull
@@ -94,12 +95,25 @@ public final class AlternateFreeRegexItem extends AbstractRegexItem {
     }
 
     /**
-     * @param matchExpression
+     * @param matchExpression   regex or template (see {@link AlternateNameTemplate})
      * @param replaceExpression
      * @return ErrorText or null if ok
      */
     @Nullable
     public static String validate(@NotNull String matchExpression, @NotNull String replaceExpression) {
+        if (AlternateNameTemplate.isTemplate(matchExpression)) {
+            return AlternateNameTemplate.validate(matchExpression, replaceExpression);
+        }
+        return validateRegex(matchExpression, replaceExpression);
+    }
+
+    /**
+     * @param matchExpression
+     * @param replaceExpression
+     * @return ErrorText or null if ok
+     */
+    @Nullable
+    public static String validateRegex(@NotNull String matchExpression, @NotNull String replaceExpression) {
         // matchExpression
         Pattern matchPattern = null;
         try {
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import altn8.filematcher.AlternateFileMatcher;
+import altn8.filematcher.AlternateRegexGuard;
+import altn8.filematcher.RegexTimeoutException;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matches the files mirroring currentFile by path mirror items. They are resolved directly by their relative path (no
+ * scan), and claim their names: files with the same name at other places (ex: other packages) don't match at all, see
+ * {@link #accepts(VirtualFile)}.
+ */
+public class AlternatePathMirrorFileMatcher implements AlternateFileMatcher {
+    /**
+     * mirrored files by name
+     */
+    private final Map<String, Set<VirtualFile>> files = new HashMap<String, Set<VirtualFile>>();
+    private final Map<String, String> baseFilenames = new HashMap<String, String>();
+
+    /**
+     *
+     */
+    public AlternatePathMirrorFileMatcher(@NotNull VirtualFile currentFile, @NotNull Project project, @NotNull AlternateConfiguration configuration) {
+        ProjectFileIndex projectFileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        VirtualFile contentRoot = projectFileIndex.getContentRootForFile(currentFile);
+        String relativePath = contentRoot != null ? VfsUtilCore.getRelativePath(currentFile, contentRoot, '/') : null;
+        if (relativePath == null) {
+            return;
+        }
+        for (Target target : getTargets(relativePath, configuration.pathMirrorItems)) {
+            VirtualFile file = contentRoot.findFileByRelativePath(target.relativePath);
+            if (file != null && !file.isDirectory() && !file.equals(currentFile)) {
+                Set<VirtualFile> set = files.get(file.getName());
+                if (set == null) {
+                    set = new LinkedHashSet<VirtualFile>();
+                    files.put(file.getName(), set);
+                    baseFilenames.put(file.getName(), target.baseFilename);
+                }
+                set.add(file);
+            }
+        }
+    }
+
+    /**
+     * @return relative paths (to content root) mirroring relativePath
+     */
+    @NotNull
+    static List<Target> getTargets(@NotNull String relativePath, @NotNull List<AlternatePathMirrorItem> items) {
+        List<Target> result = new ArrayList<Target>();
+        for (AlternatePathMirrorItem item : items) {
+            if (item.hasError()) {
+                continue;
+            }
+            String sourcePath = trimSlashes(item.sourcePath);
+            if (!relativePath.startsWith(sourcePath + "/")) {
+                continue;
+            }
+            String path = relativePath.substring(sourcePath.length() + 1);
+            int index = path.lastIndexOf('/');
+            String directory = path.substring(0, index + 1);
+            String filename = path.substring(index + 1);
+            String targetFilename = filename;
+            String baseFilename = "";
+            if (item.matchExpression.length() > 0) {
+                // skip expressions disabled after repeated timeouts
+                if (AlternateRegexGuard.isDisabled(item.matchExpression)) {
+                    continue;
+                }
+                try {
+                    Matcher matcher = AlternateRegexGuard.matcher(Pattern.compile(item.matchExpression), filename);
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+                    baseFilename = matcher.groupCount() > 0 && matcher.group(1) != null ? matcher.group(1) : "";
+                    targetFilename = matcher.replaceAll(item.replaceExpression);
+                } catch (RegexTimeoutException e) {
+                    AlternateRegexGuard.reportTimeout(item.matchExpression);
+                    continue;
+                }
+            }
+            result.add(new Target(trimSlashes(item.targetPath) + "/" + directory + targetFilename, baseFilename));
+        }
+        return result;
+    }
+
+    @NotNull
+    private static String trimSlashes(@NotNull String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+
+    /**
+     *
+     */
+    public boolean canProcess() {
+        return !files.isEmpty();
+    }
+
+    /**
+     * @return mirrored files
+     */
+    @NotNull
+    public Collection<VirtualFile> getFiles() {
+        List<VirtualFile> result = new ArrayList<VirtualFile>();
+        for (Set<VirtualFile> set : files.values()) {
+            result.addAll(set);
+        }
+        return result;
+    }
+
+    /**
+     * @return true, if file (which {@link #matches(String)}) is a mirrored file (and not one with the same name at
+     * another place)
+     */
+    public boolean accepts(@NotNull VirtualFile file) {
+        Set<VirtualFile> set = files.get(file.getName());
+        return set != null && set.contains(file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean matches(@NotNull String filename) {
+        return files.containsKey(filename);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public String getBaseFilename(@NotNull String filename) {
+        String baseFilename = baseFilenames.get(filename);
+        return baseFilename != null ? baseFilename : "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public String getStatisticKey() {
+        return "mirror";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    public Collection<String> getMatchingFilenames() {
+        return files.keySet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public Collection<String> getRequiredLiterals() {
+        return Collections.emptyList(); // we have our names
+    }
+
+    /**
+     * Mirrored path of an item
+     */
+    static final class Target {
+        @NotNull
+        final String relativePath;
+        @NotNull
+        final String baseFilename;
+
+        private Target(@NotNull String relativePath, @NotNull String baseFilename) {
+            this.relativePath = relativePath;
+            this.baseFilename = baseFilename;
+        }
+    }
+}
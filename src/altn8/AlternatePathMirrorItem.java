@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * data item of a path mirror (immutable): a file at <code>sourcePath/a/b/Foo.java</code> (relative to its content
+ * root) corresponds to <code>targetPath/a/b/FooTest.java</code>. The filename is transformed by match- and
+ * replaceExpression like a free regex (same name if both are empty).
+ */
+public final class AlternatePathMirrorItem extends AbstractRegexItem {
+    @NotNull
+    public String sourcePath;
+    @NotNull
+    public String targetPath;
+    @NotNull
+    public String matchExpression;
+    @NotNull
+    public String replaceExpression;
+
+    /**
+     *
+     */
+    public static AlternatePathMirrorItem of(@NotNull String sourcePath, @NotNull String targetPath, @NotNull String matchExpression, @NotNull String replaceExpression) {
+        AlternatePathMirrorItem item = new AlternatePathMirrorItem();
+        item.sourcePath = sourcePath;
+        item.targetPath = targetPath;
+        item.matchExpression = matchExpression;
+        item.replaceExpression = replaceExpression;
+        return item;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    protected String validate() {
+        return validate(sourcePath, targetPath, matchExpression, replaceExpression);
+    }
+
+    /**
+     * @return  true if emtpy
+     */
+    public boolean isEmpty() {
+        return sourcePath.length() == 0 && targetPath.length() == 0 && matchExpression.length() == 0 && replaceExpression.length() == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        AlternatePathMirrorItem that = (AlternatePathMirrorItem) o;
+
+        return sourcePath.equals(that.sourcePath) && targetPath.equals(that.targetPath) &&
+                matchExpression.equals(that.matchExpression) && replaceExpression.equals(that.replaceExpression);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        int result = sourcePath.hashCode();
+        result = 31 * result + targetPath.hashCode();
+        result = 31 * result + matchExpression.hashCode();
+        result = 31 * result + replaceExpression.hashCode();
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AlternatePathMirrorItem{" +
+                "sourcePath='" + sourcePath + '\'' +
+                ", targetPath='" + targetPath + '\'' +
+                ", matchExpression='" + matchExpression + '\'' +
+                ", replaceExpression='" + replaceExpression + '\'' +
+                '}';
+    }
+
+    /**
+     * @return ErrorText or null if ok
+     */
+    @Nullable
+    public static String validate(@NotNull String sourcePath, @NotNull String targetPath, @NotNull String matchExpression, @NotNull String replaceExpression) {
+        if (sourcePath.length() == 0 || targetPath.length() == 0) {
+            return "Source and Target Path are required";
+        }
+        if (sourcePath.contains("\\") || targetPath.contains("\\")) {
+            return "Paths are separated by '/'";
+        }
+        if (matchExpression.length() == 0 && replaceExpression.length() > 0) {
+            return "Match Expression: required for Replace Expression";
+        }
+        if (matchExpression.length() > 0 && replaceExpression.length() == 0) {
+            return "Replace Expression: required for Match Expression";
+        }
+        return AlternateFreeRegexItem.validateRegex(matchExpression, replaceExpression);
+    }
+}
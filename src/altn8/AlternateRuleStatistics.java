@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import altn8.filematcher.AlternateFileMatcher;
+import altn8.filematcher.AlternateFileMatcherOrdering;
+import altn8.filematcher.AlternateRuleStatistic;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.util.xmlb.XmlSerializerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hit and cost statistics of our matchers (sampled while scanning, persisted between sessions).
+ */
+@State(name = "AlternateRuleStatistics", storages = {@Storage(id = "altn8", file = "$APP_CONFIG$/altn8.statistics.xml")})
+public class AlternateRuleStatistics implements PersistentStateComponent<AlternateRuleStatistics> {
+    /**
+     * halve statistics if a matcher reaches this number of evaluations, so newer behaviour dominates
+     */
+    private static final long MAX_EVALUATIONS = 10000000;
+
+    public Map<String, AlternateRuleStatistic> statistics = new HashMap<String, AlternateRuleStatistic>();
+
+    public static AlternateRuleStatistics getInstance() {
+        return ServiceManager.getService(AlternateRuleStatistics.class);
+    }
+
+    @Nullable
+    public AlternateRuleStatistics getState() {
+        return this;
+    }
+
+    public void loadState(AlternateRuleStatistics state) {
+        XmlSerializerUtil.copyBean(state, this);
+    }
+
+    /**
+     * @see AlternateFileMatcherOrdering#order(List, Map)
+     */
+    @NotNull
+    public synchronized List<AlternateFileMatcher> order(@NotNull List<AlternateFileMatcher> fileMatchers) {
+        return AlternateFileMatcherOrdering.order(fileMatchers, statistics);
+    }
+
+    /**
+     * Add statistics of a scan
+     */
+    public synchronized void add(@NotNull Map<String, AlternateRuleStatistic> scanStatistics) {
+        for (Map.Entry<String, AlternateRuleStatistic> entry : scanStatistics.entrySet()) {
+            AlternateRuleStatistic statistic = statistics.get(entry.getKey());
+            if (statistic == null) {
+                statistic = new AlternateRuleStatistic();
+                statistics.put(entry.getKey(), statistic);
+            }
+            statistic.evaluations += entry.getValue().evaluations;
+            statistic.hits += entry.getValue().hits;
+            statistic.nanos += entry.getValue().nanos;
+            if (statistic.evaluations > MAX_EVALUATIONS) {
+                statistic.evaluations /= 2;
+                statistic.hits /= 2;
+                statistic.nanos /= 2;
+            }
+        }
+    }
+}
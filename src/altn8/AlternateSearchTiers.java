@@ -0,0 +1,119 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tiers of a search for the corresponding files of a file, nearest first: its directory and the directories mirroring
+ * it in other source roots of its module (ex: <code>src/test/java/foo</code> for <code>src/main/java/foo</code>), its
+ * module, modules depending on its module and the whole project.
+ */
+final class AlternateSearchTiers {
+    static final int DIRECTORY = 0;
+    static final int MODULE = 1;
+    static final int DEPENDENT_MODULES = 2;
+    static final int PROJECT = 3;
+    static final int COUNT = 4;
+
+    @NotNull
+    private final ProjectFileIndex projectFileIndex;
+    @Nullable
+    private final Module module;
+    private final Set<VirtualFile> directories = new LinkedHashSet<VirtualFile>();
+    private final Set<Module> dependentModules = new HashSet<Module>();
+
+    AlternateSearchTiers(@NotNull Project project, @NotNull VirtualFile currentFile) {
+        projectFileIndex = ProjectRootManager.getInstance(project).getFileIndex();
+        module = projectFileIndex.getModuleForFile(currentFile);
+        VirtualFile directory = currentFile.getParent();
+        if (module != null && directory != null) {
+            directories.add(directory);
+            // same relative path in other source roots
+            VirtualFile sourceRoot = projectFileIndex.getSourceRootForFile(currentFile);
+            String relativePath = sourceRoot != null ? VfsUtilCore.getRelativePath(directory, sourceRoot, '/') : null;
+            if (relativePath != null) {
+                for (VirtualFile root : ModuleRootManager.getInstance(module).getSourceRoots()) {
+                    VirtualFile mirror = relativePath.length() == 0 ? root : root.findFileByRelativePath(relativePath);
+                    if (mirror != null && mirror.isDirectory()) {
+                        directories.add(mirror);
+                    }
+                }
+            }
+            dependentModules.addAll(ModuleManager.getInstance(project).getModuleDependentModules(module));
+        }
+    }
+
+    /**
+     * @return tier of file
+     */
+    int getTier(@NotNull VirtualFile file) {
+        if (module == null) {
+            return PROJECT;
+        }
+        Module fileModule = projectFileIndex.getModuleForFile(file);
+        if (module.equals(fileModule)) {
+            return directories.contains(file.getParent()) ? DIRECTORY : MODULE;
+        }
+        return fileModule != null && dependentModules.contains(fileModule) ? DEPENDENT_MODULES : PROJECT;
+    }
+
+    /**
+     * Iterate files of tier. MODULE and PROJECT iterate their whole content (including files of the tiers before), so
+     * the tiers before should have been searched without result.
+     */
+    void iterate(int tier, @NotNull ContentIterator iterator) {
+        switch (tier) {
+            case DIRECTORY:
+                for (VirtualFile directory : directories) {
+                    for (VirtualFile child : directory.getChildren()) {
+                        if (!child.isDirectory() && !projectFileIndex.isIgnored(child) && projectFileIndex.isInContent(child) && !iterator.processFile(child)) {
+                            return;
+                        }
+                    }
+                }
+                break;
+            case MODULE:
+                if (module != null) {
+                    ModuleRootManager.getInstance(module).getFileIndex().iterateContent(iterator);
+                }
+                break;
+            case DEPENDENT_MODULES:
+                for (Module dependentModule : dependentModules) {
+                    if (!ModuleRootManager.getInstance(dependentModule).getFileIndex().iterateContent(iterator)) {
+                        return;
+                    }
+                }
+                break;
+            default:
+                projectFileIndex.iterateContent(iterator);
+        }
+    }
+}
@@ -16,16 +16,21 @@
 package altn8.filechooser;
 
 import altn8.AlternateFileGroup;
-import com.intellij.ide.util.gotoByName.GotoFileCellRenderer;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.popup.JBPopup;
 import com.intellij.openapi.ui.popup.JBPopupFactory;
 import com.intellij.openapi.ui.popup.PopupChooserBuilder;
-import com.intellij.openapi.wm.ex.WindowManagerEx;
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -46,65 +51,114 @@ public final class AlternateFilePopupChooser {
      * @param fileGroups     List of fileGroups
      * @param currentProject
      * @param fileHandler    FileHandler to process choosed files
+     * @return               Updater to change the files of the shown popup (null if no popup is shown)
      */
-    public static void prompt(String title, List<AlternateFileGroup> fileGroups, Project currentProject, final FileHandler fileHandler) {
+    @Nullable
+    public static Updater prompt(String title, List<AlternateFileGroup> fileGroups, Project currentProject, final FileHandler fileHandler) {
         if (fileGroups != null && !fileGroups.isEmpty()) {
             // if we have only one group with 1 file...
-            if (fileGroups.size() == 1 && fileGroups.get(0).getFiles().size() == 1) {
+            if (!needsPopup(fileGroups)) {
                 // ...then open file directly
                 fileHandler.processFile(fileGroups.get(0).getFiles().get(0));
             } else {
                 // let user choose...
-
-                // list of Objects for out JList
-                List<Object> list = new ArrayList<Object>();
-
-                // if we have only 1 group, we dont show title, just adding all PsiFiles
-                if (fileGroups.size() == 1) {
-                    list.addAll(fileGroups.get(0).getFiles());
-                } else {
-                    // go thru all groups
-                    for (AlternateFileGroup fileGroup : fileGroups) {
-                        // add basefilename (will be presented as title) and all files
-                        list.add(fileGroup.getGroupTitle());
-                        list.addAll(fileGroup.getFiles());
-                    }
-                }
-
-                final JList valueList = new JList(list.toArray());
+                final DefaultListModel listModel = new DefaultListModel();
+                final JList valueList = new JList(listModel);
                 valueList.setCellRenderer(new AlternateCellRenderer(currentProject));
-                valueList.setSelectionModel(new AlternateListSelectionModel(list));
+                setListItems(valueList, listModel, createListItems(fileGroups));
 
                 PopupChooserBuilder listPopupBuilder = JBPopupFactory.getInstance().createListPopupBuilder(valueList);
                 listPopupBuilder.setTitle(title);
                 listPopupBuilder.setItemChoosenCallback(new Runnable() {
                     public void run() {
                         for (Object item : valueList.getSelectedValues()) {
-                            if (item instanceof PsiFile) {
-                                fileHandler.processFile((PsiFile) item);
+                            if (item instanceof VirtualFile) {
+                                fileHandler.processFile((VirtualFile) item);
                             }
                         }
                     }
                 });
-                listPopupBuilder.createPopup().showCenteredInCurrentWindow(currentProject);
+                final JBPopup popup = listPopupBuilder.createPopup();
+                popup.showCenteredInCurrentWindow(currentProject);
+                return new Updater() {
+                    public void update(@NotNull List<AlternateFileGroup> fileGroups) {
+                        if (popup.isVisible()) {
+                            if (fileGroups.isEmpty()) {
+                                popup.cancel();
+                            } else {
+                                List<Object> list = createListItems(fileGroups);
+                                if (!list.equals(Collections.list(listModel.elements()))) {
+                                    setListItems(valueList, listModel, list);
+                                    popup.pack(true, true);
+                                }
+                            }
+                        }
+                    }
+                };
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return false, if there is only one file (it will be processed without popup)
+     */
+    public static boolean needsPopup(@NotNull List<AlternateFileGroup> fileGroups) {
+        return !(fileGroups.size() == 1 && fileGroups.get(0).getFiles().size() == 1);
+    }
+
+    /**
+     * @return list of Objects for our JList: group titles and VirtualFiles
+     */
+    @NotNull
+    private static List<Object> createListItems(@NotNull List<AlternateFileGroup> fileGroups) {
+        List<Object> list = new ArrayList<Object>();
+        // if we have only 1 group, we dont show title, just adding all files
+        if (fileGroups.size() == 1) {
+            list.addAll(fileGroups.get(0).getFiles());
+        } else {
+            // go thru all groups
+            for (AlternateFileGroup fileGroup : fileGroups) {
+                // add basefilename (will be presented as title) and all files
+                list.add(fileGroup.getGroupTitle());
+                list.addAll(fileGroup.getFiles());
             }
         }
+        return list;
+    }
+
+    private static void setListItems(@NotNull JList valueList, @NotNull DefaultListModel listModel, @NotNull List<Object> list) {
+        listModel.clear();
+        for (Object item : list) {
+            listModel.addElement(item);
+        }
+        valueList.setSelectionModel(new AlternateListSelectionModel(list));
     }
 
     /**
-     * CellRenderer, renders PsiFile with ideas GotoFileCellRenderer and all other with DefaultListCellRenderer like a title (bgcolor: control)
+     * Change files of a shown popup
+     */
+    public static interface Updater {
+        /**
+         * @param fileGroups    new fileGroups (popup will be closed if empty)
+         */
+        void update(@NotNull List<AlternateFileGroup> fileGroups);
+    }
+
+    /**
+     * CellRenderer, renders VirtualFile with FileCellRenderer and all other with DefaultListCellRenderer like a title (bgcolor: control)
      */
     static class AlternateCellRenderer extends DefaultListCellRenderer {
-        private ListCellRenderer gotoFileCellRenderer;
+        private ListCellRenderer fileCellRenderer;
 
         AlternateCellRenderer(Project project) {
-            this.gotoFileCellRenderer = new GotoFileCellRenderer(WindowManagerEx.getInstanceEx().getFrame(project).getSize().width);
+            this.fileCellRenderer = new FileCellRenderer(project);
         }
 
         @Override
         public Component getListCellRendererComponent(JList list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            if (value instanceof PsiFile) {
-                return gotoFileCellRenderer.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            if (value instanceof VirtualFile) {
+                return fileCellRenderer.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
             } else {
                 if (value.toString().length() == 0) {
                     value = " "; // we need a caracter to have correct height
@@ -117,7 +171,39 @@ public final class AlternateFilePopupChooser {
     }
 
     /**
-     * Selection model accepts only PsiFile for selecting (no group headers)
+     * Renders VirtualFile with icon of its type, name and location (like ideas GotoFileCellRenderer, but without PSI,
+     * so it works while indexing)
+     */
+    static class FileCellRenderer extends ColoredListCellRenderer {
+        private Project project;
+
+        FileCellRenderer(Project project) {
+            this.project = project;
+        }
+
+        @Override
+        protected void customizeCellRenderer(JList list, Object value, int index, boolean selected, boolean hasFocus) {
+            VirtualFile file = (VirtualFile) value;
+            setIcon(file.getFileType().getIcon());
+            append(file.getName(), SimpleTextAttributes.REGULAR_ATTRIBUTES);
+            VirtualFile parent = file.getParent();
+            if (parent != null) {
+                append(" (" + getLocation(parent) + ")", SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+        }
+
+        /**
+         * @return path of directory relative to project's base directory (if inside)
+         */
+        private String getLocation(VirtualFile directory) {
+            VirtualFile baseDir = project.getBaseDir();
+            String relativePath = baseDir != null ? VfsUtilCore.getRelativePath(directory, baseDir, '/') : null;
+            return relativePath != null ? relativePath : directory.getPresentableUrl();
+        }
+    }
+
+    /**
+     * Selection model accepts only VirtualFile for selecting (no group headers)
      */
     static class AlternateListSelectionModel extends DefaultListSelectionModel {
         private List<Object> list;
@@ -128,16 +214,16 @@ public final class AlternateFilePopupChooser {
 
         AlternateListSelectionModel(List<Object> list) {
             this.list = list;
-            // first psiFile in list
+            // first file in list
             for (int i = 0, listSize = list.size(); i < listSize; i++) {
-                if (list.get(i) instanceof PsiFile){
+                if (list.get(i) instanceof VirtualFile){
                     first = i;
                     break;
                 }
             }
-            // last psiFile in list
+            // last file in list
             for (int i = list.size() - 1; i >= 0; i--) {
-                if (list.get(i) instanceof PsiFile){
+                if (list.get(i) instanceof VirtualFile){
                     last = i;
                     break;
                 }
@@ -180,13 +266,13 @@ public final class AlternateFilePopupChooser {
             // next
             if (current < newIndex) {
                 current = newIndex;
-                while (current < list.size() && !(list.get(current) instanceof PsiFile)) {
+                while (current < list.size() && !(list.get(current) instanceof VirtualFile)) {
                     current++;
                 }
             } else if (current > newIndex) {
                 // previous
                 current = newIndex;
-                while (current >= 0 && !(list.get(current) instanceof PsiFile)) {
+                while (current >= 0 && !(list.get(current) instanceof VirtualFile)) {
                     current--;
                 }
             }
@@ -15,7 +15,7 @@
  */
 package altn8.filechooser;
 
-import com.intellij.psi.PsiFile;
+import com.intellij.openapi.vfs.VirtualFile;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -23,7 +23,7 @@ import org.jetbrains.annotations.NotNull;
  */
 public interface FileHandler {
     /**
-     * @param psiFile   choosed file to process
+     * @param file      choosed file to process
      */
-    void processFile(@NotNull PsiFile psiFile);
+    void processFile(@NotNull VirtualFile file);
 }
@@ -0,0 +1,637 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Matches filenames like the regex of {@link AlternateGenericRegexFileMatcher} (same result, same groups), but
+ * without backtracking: prefix and postfix items are compiled to their (few) fixed-length expansions, which are tested
+ * at their position, and failed states (element, position) are remembered, so a filename is matched in linear time.
+ * <br>
+ * Only items consisting of literals, character classes, non-capturing groups, alternations, lookaheads and bounded
+ * quantifiers (ex: <code>[Tt]est_?</code>, <code>I(?=[A-Z])</code>, <code>(?:_\w{2}(?:_\w{2})?)</code>) are
+ * supported, see {@link #getInstance(List, List, List)}.
+ */
+public final class AlternateAffixPattern {
+    private static final int MAX_EXPANSIONS = 64;
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+
+    private static List<Object> lastKey;
+    private static AlternateAffixPattern lastAffixPattern;
+
+    /**
+     * expansions of prefix items, then of postfix items
+     */
+    @NotNull
+    private final Step[][][] items;
+    @NotNull
+    private final boolean[] grouping;
+    private final int prefixCount;
+    @NotNull
+    private final Set<String> literalExtensions = new HashSet<String>();
+    @Nullable
+    private final Pattern extensionPattern;
+
+    private AlternateAffixPattern(@NotNull List<AlternateGenericPrefixPostfixRegexItem> prefixItems, @NotNull List<AlternateGenericPrefixPostfixRegexItem> postfixItems,
+                                  @NotNull List<String> extensions) throws UnsupportedExpressionException {
+        List<AlternateGenericPrefixPostfixRegexItem> allItems = new ArrayList<AlternateGenericPrefixPostfixRegexItem>();
+        int count = 0;
+        for (AlternateGenericPrefixPostfixRegexItem item : prefixItems) {
+            if (!item.hasError()) {
+                allItems.add(item);
+                count++;
+            }
+        }
+        prefixCount = count;
+        for (AlternateGenericPrefixPostfixRegexItem item : postfixItems) {
+            if (!item.hasError()) {
+                allItems.add(item);
+            }
+        }
+        items = new Step[allItems.size()][][];
+        grouping = new boolean[allItems.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = new Parser(allItems.get(i).expression).parse();
+            grouping[i] = allItems.get(i).grouping;
+        }
+        // literal extensions are looked up, others (ex: from wildcards) are matched by regex
+        StringBuilder sb = new StringBuilder();
+        for (String extension : extensions) {
+            if (isLiteral(extension)) {
+                literalExtensions.add(extension);
+            } else {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(extension);
+            }
+        }
+        if (extensions.isEmpty()) {
+            literalExtensions.add(""); // "(?:\.(?:))?$"
+        }
+        extensionPattern = sb.length() > 0 ? Pattern.compile(sb.toString()) : null;
+    }
+
+    /**
+     * @param extensions    alternatives of the file extension (regex)
+     * @return compiled items (only recompiled if something has changed), null if an item is not supported
+     */
+    @Nullable
+    public static synchronized AlternateAffixPattern getInstance(@NotNull List<AlternateGenericPrefixPostfixRegexItem> prefixItems,
+                                                                 @NotNull List<AlternateGenericPrefixPostfixRegexItem> postfixItems,
+                                                                 @NotNull List<String> extensions) {
+        List<Object> key = Arrays.<Object>asList(new ArrayList<AlternateGenericPrefixPostfixRegexItem>(prefixItems),
+                new ArrayList<AlternateGenericPrefixPostfixRegexItem>(postfixItems), new ArrayList<String>(extensions));
+        if (!key.equals(lastKey)) {
+            lastKey = key;
+            try {
+                lastAffixPattern = new AlternateAffixPattern(prefixItems, postfixItems, extensions);
+            } catch (UnsupportedExpressionException e) {
+                lastAffixPattern = null;
+            }
+        }
+        return lastAffixPattern;
+    }
+
+    /**
+     * @return true, if expression can be compiled (ex: <code>[Tt]est_?</code>), false if it needs a regex (ex:
+     * <code>\w+</code>)
+     */
+    static boolean isSupported(@NotNull String expression) {
+        try {
+            new Parser(expression).parse();
+            return true;
+        } catch (UnsupportedExpressionException e) {
+            return false;
+        }
+    }
+
+    private static boolean isLiteral(@NotNull String expression) {
+        for (int i = 0; i < expression.length(); i++) {
+            if (REGEX_META.indexOf(expression.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return name (group <code>(\w+?)</code> of generic regex), null if filename does not match
+     */
+    @Nullable
+    public String findName(@NotNull String filename) {
+        Match match = new Match(filename, null, false);
+        return match.matches() ? filename.substring(match.nameStart, match.nameEnd) : null;
+    }
+
+    /**
+     * @return baseFilename (all grouping items and name), null if filename does not match (with given name)
+     */
+    @Nullable
+    public String match(@NotNull String filename, @NotNull String name, boolean caseInsensitive) {
+        Match match = new Match(filename, name, caseInsensitive);
+        if (!match.matches()) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < items.length; i++) {
+            if (i == prefixCount) {
+                sb.append(filename, match.nameStart, match.nameEnd);
+            }
+            if (grouping[i] && match.starts[i] >= 0) {
+                sb.append(filename, match.starts[i], match.ends[i]);
+            }
+        }
+        if (items.length == prefixCount) {
+            sb.append(filename, match.nameStart, match.nameEnd);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true, if filename from position is "" or a file extension (<code>(?:\.(?:ext))?$</code>)
+     */
+    private boolean isEnd(@NotNull String filename, int position) {
+        if (position == filename.length()) {
+            return true;
+        }
+        if (filename.charAt(position) != '.') {
+            return false;
+        }
+        String extension = filename.substring(position + 1);
+        return literalExtensions.contains(extension) || (extensionPattern != null && extensionPattern.matcher(extension).matches());
+    }
+
+    /**
+     * One match attempt. Elements are: items of prefix, name, items of postfix, end. They are tried in the order
+     * the regex would try them (greedy items, lazy name); a failed (element, position) is never tried again.
+     */
+    private final class Match {
+        @NotNull
+        private final String filename;
+        @Nullable
+        private final String name;
+        private final boolean caseInsensitive;
+        private final int nameElement = prefixCount;
+        private final int endElement = items.length + 1;
+        @NotNull
+        private final BitSet failed;
+        @NotNull
+        private final int[] starts = new int[items.length];
+        @NotNull
+        private final int[] ends = new int[items.length];
+        private int nameStart;
+        private int nameEnd;
+
+        private Match(@NotNull String filename, @Nullable String name, boolean caseInsensitive) {
+            this.filename = filename;
+            this.name = name;
+            this.caseInsensitive = caseInsensitive;
+            this.failed = new BitSet((endElement + 1) * (filename.length() + 1));
+        }
+
+        private boolean matches() {
+            return matches(0, 0);
+        }
+
+        private boolean matches(int element, int position) {
+            int state = element * (filename.length() + 1) + position;
+            if (failed.get(state)) {
+                return false;
+            }
+            if (matchesElement(element, position)) {
+                return true;
+            }
+            failed.set(state);
+            return false;
+        }
+
+        private boolean matchesElement(int element, int position) {
+            if (element == endElement) {
+                return isEnd(filename, position);
+            }
+            if (element == nameElement) {
+                return matchesName(element, position);
+            }
+            int item = element < nameElement ? element : element - 1;
+            // greedy: item first (expansions in order), then without item
+            for (Step[] expansion : items[item]) {
+                int end = matches(expansion, position);
+                if (end >= 0 && matches(element + 1, end)) {
+                    starts[item] = position;
+                    ends[item] = end;
+                    return true;
+                }
+            }
+            if (matches(element + 1, position)) {
+                starts[item] = -1;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean matchesName(int element, int position) {
+            if (name != null) {
+                // quoted name
+                int end = position + name.length();
+                if (end <= filename.length() && (caseInsensitive ? equalsAsciiIgnoreCase(filename, position, name) : filename.startsWith(name, position))
+                        && matches(element + 1, end)) {
+                    nameStart = position;
+                    nameEnd = end;
+                    return true;
+                }
+                return false;
+            }
+            // lazy (\w+?)
+            for (int end = position + 1; end <= filename.length() && CharSet.WORD.contains(filename.charAt(end - 1)); end++) {
+                if (matches(element + 1, end)) {
+                    nameStart = position;
+                    nameEnd = end;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return end of expansion at position, -1 if it does not match
+         */
+        private int matches(@NotNull Step[] expansion, int position) {
+            for (Step step : expansion) {
+                if (step.set != null) {
+                    if (position >= filename.length() || !step.set.contains(filename.charAt(position))) {
+                        return -1;
+                    }
+                    position++;
+                } else {
+                    //noinspection ConstantConditions (lookahead if no set)
+                    if (matchesAny(step.lookahead, position) == step.negative) {
+                        return -1;
+                    }
+                }
+            }
+            return position;
+        }
+
+        private boolean matchesAny(@NotNull Step[][] expansions, int position) {
+            for (Step[] expansion : expansions) {
+                if (matches(expansion, position) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * (?i) without UNICODE_CASE only folds US-ASCII
+     */
+    private static boolean equalsAsciiIgnoreCase(@NotNull String filename, int position, @NotNull String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char a = filename.charAt(position + i);
+            char b = name.charAt(i);
+            if (a != b && (a >= 128 || b >= 128 || Character.toLowerCase(a) != Character.toLowerCase(b))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A step of an expansion: consumes one char of set or is a lookahead
+     */
+    private static final class Step {
+        @Nullable
+        private final CharSet set;
+        @Nullable
+        private final Step[][] lookahead;
+        private final boolean negative;
+
+        private Step(@Nullable CharSet set, @Nullable Step[][] lookahead, boolean negative) {
+            this.set = set;
+            this.lookahead = lookahead;
+            this.negative = negative;
+        }
+    }
+
+    /**
+     * Set of chars: ranges (from, to inclusive), maybe negated
+     */
+    private static final class CharSet {
+        private static final CharSet WORD = new CharSet(new char[]{'a', 'z', 'A', 'Z', '_', '_', '0', '9'}, false);
+        private static final CharSet DIGIT = new CharSet(new char[]{'0', '9'}, false);
+        private static final CharSet SPACE = new CharSet(new char[]{' ', ' ', '\t', '\r'}, false); // \t\n\x0B\f\r
+        private static final CharSet ANY = new CharSet(new char[]{'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'}, true);
+
+        @NotNull
+        private final char[] ranges;
+        private final boolean negated;
+
+        private CharSet(@NotNull char[] ranges, boolean negated) {
+            this.ranges = ranges;
+            this.negated = negated;
+        }
+
+        private boolean contains(char c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) {
+                    return !negated;
+                }
+            }
+            return negated;
+        }
+    }
+
+    /**
+     * Parses an item expression to its expansions (in the order the regex tries them)
+     */
+    private static final class Parser {
+        @NotNull
+        private final String expression;
+        private int cursor;
+
+        private Parser(@NotNull String expression) {
+            this.expression = expression;
+        }
+
+        @NotNull
+        private Step[][] parse() throws UnsupportedExpressionException {
+            List<List<Step>> result = parseAlternation();
+            if (cursor < expression.length()) {
+                throw new UnsupportedExpressionException(); // unbalanced ')'
+            }
+            return toArray(result);
+        }
+
+        @NotNull
+        private List<List<Step>> parseAlternation() throws UnsupportedExpressionException {
+            List<List<Step>> result = parseSequence();
+            while (cursor < expression.length() && expression.charAt(cursor) == '|') {
+                cursor++;
+                result.addAll(parseSequence());
+                checkSize(result);
+            }
+            return result;
+        }
+
+        @NotNull
+        private List<List<Step>> parseSequence() throws UnsupportedExpressionException {
+            List<List<Step>> result = new ArrayList<List<Step>>();
+            result.add(new ArrayList<Step>());
+            while (cursor < expression.length() && expression.charAt(cursor) != '|' && expression.charAt(cursor) != ')') {
+                boolean lookahead = expression.startsWith("(?=", cursor) || expression.startsWith("(?!", cursor);
+                List<List<Step>> atom = parseAtom();
+                if (cursor < expression.length() && "?*+{".indexOf(expression.charAt(cursor)) >= 0) {
+                    if (lookahead) {
+                        throw new UnsupportedExpressionException();
+                    }
+                    atom = parseQuantifier(atom);
+                }
+                result = product(result, atom);
+            }
+            return result;
+        }
+
+        @NotNull
+        private List<List<Step>> parseAtom() throws UnsupportedExpressionException {
+            char c = expression.charAt(cursor);
+            switch (c) {
+                case '(':
+                    if (expression.startsWith("(?:", cursor)) {
+                        cursor += 3;
+                        List<List<Step>> result = parseAlternation();
+                        expect(')');
+                        return result;
+                    }
+                    if (expression.startsWith("(?=", cursor) || expression.startsWith("(?!", cursor)) {
+                        boolean negative = expression.charAt(cursor + 2) == '!';
+                        cursor += 3;
+                        List<List<Step>> lookahead = parseAlternation();
+                        expect(')');
+                        return single(new Step(null, toArray(lookahead), negative));
+                    }
+                    throw new UnsupportedExpressionException(); // capturing groups would shift our groups, flags etc.
+                case '[':
+                    return single(new Step(parseCharClass(), null, false));
+                case '.':
+                    cursor++;
+                    return single(new Step(CharSet.ANY, null, false));
+                case '\\':
+                    return single(new Step(parseEscape(false), null, false));
+                default:
+                    if ("^$?*+{".indexOf(c) >= 0) {
+                        throw new UnsupportedExpressionException(); // anchors, dangling quantifiers
+                    }
+                    cursor++;
+                    return single(new Step(new CharSet(new char[]{c, c}, false), null, false));
+            }
+        }
+
+        @NotNull
+        private List<List<Step>> parseQuantifier(@NotNull List<List<Step>> atom) throws UnsupportedExpressionException {
+            char c = expression.charAt(cursor++);
+            int min;
+            int max;
+            if (c == '?') {
+                min = 0;
+                max = 1;
+            } else if (c == '{') {
+                int end = expression.indexOf('}', cursor);
+                if (end < 0) {
+                    throw new UnsupportedExpressionException();
+                }
+                String[] bounds = expression.substring(cursor, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedExpressionException(); // {n,} or illegal
+                }
+                if (bounds.length > 2 || max < min || max > MAX_EXPANSIONS) {
+                    throw new UnsupportedExpressionException();
+                }
+                cursor = end + 1;
+            } else {
+                throw new UnsupportedExpressionException(); // * and + are unbounded
+            }
+            boolean lazy = false;
+            if (cursor < expression.length()) {
+                char modifier = expression.charAt(cursor);
+                if (modifier == '+') {
+                    throw new UnsupportedExpressionException(); // possessive
+                }
+                if (modifier == '?') {
+                    lazy = true;
+                    cursor++;
+                }
+            }
+            return repeat(atom, 0, min, max, lazy);
+        }
+
+        /**
+         * @return expansions of iterations count..max, in the order a (greedy or lazy) loop tries them
+         */
+        @NotNull
+        private static List<List<Step>> repeat(@NotNull List<List<Step>> atom, int count, int min, int max, boolean lazy) throws UnsupportedExpressionException {
+            List<List<Step>> result = new ArrayList<List<Step>>();
+            if (lazy && count >= min) {
+                result.add(new ArrayList<Step>()); // exit loop first
+            }
+            if (count < max) {
+                result.addAll(product(atom, repeat(atom, count + 1, min, max, lazy)));
+                checkSize(result);
+            }
+            if (!lazy && count >= min) {
+                result.add(new ArrayList<Step>()); // exit loop last
+            }
+            return result;
+        }
+
+        @NotNull
+        private CharSet parseCharClass() throws UnsupportedExpressionException {
+            cursor++; // [
+            boolean negated = false;
+            if (cursor < expression.length() && expression.charAt(cursor) == '^') {
+                negated = true;
+                cursor++;
+            }
+            StringBuilder ranges = new StringBuilder();
+            boolean first = true;
+            while (true) {
+                if (cursor >= expression.length()) {
+                    throw new UnsupportedExpressionException();
+                }
+                char c = expression.charAt(cursor);
+                if (c == ']' && !first) {
+                    cursor++;
+                    break;
+                }
+                if (c == '[' || c == ']' || expression.startsWith("&&", cursor)) {
+                    throw new UnsupportedExpressionException(); // unions, intersections
+                }
+                first = false;
+                if (c == '\\') {
+                    CharSet set = parseEscape(true);
+                    ranges.append(set.ranges);
+                    continue;
+                }
+                cursor++;
+                char to = c;
+                if (cursor + 1 < expression.length() && expression.charAt(cursor) == '-' && expression.charAt(cursor + 1) != ']') {
+                    to = expression.charAt(cursor + 1);
+                    if (to == '\\' || to == '[' || to < c) {
+                        throw new UnsupportedExpressionException();
+                    }
+                    cursor += 2;
+                }
+                ranges.append(c).append(to);
+            }
+            char[] result = new char[ranges.length()];
+            ranges.getChars(0, ranges.length(), result, 0);
+            return new CharSet(result, negated);
+        }
+
+        @NotNull
+        private CharSet parseEscape(boolean inCharClass) throws UnsupportedExpressionException {
+            if (cursor + 1 >= expression.length()) {
+                throw new UnsupportedExpressionException();
+            }
+            char c = expression.charAt(cursor + 1);
+            cursor += 2;
+            switch (c) {
+                case 'w':
+                    return CharSet.WORD;
+                case 'd':
+                    return CharSet.DIGIT;
+                case 's':
+                    return CharSet.SPACE;
+                case 'W':
+                case 'D':
+                case 'S':
+                    if (inCharClass) {
+                        throw new UnsupportedExpressionException();
+                    }
+                    CharSet set = c == 'W' ? CharSet.WORD : c == 'D' ? CharSet.DIGIT : CharSet.SPACE;
+                    return new CharSet(set.ranges, true);
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedExpressionException(); // \b, \Q, A, \1 etc.
+                    }
+                    return new CharSet(new char[]{c, c}, false);
+            }
+        }
+
+        private void expect(char c) throws UnsupportedExpressionException {
+            if (cursor >= expression.length() || expression.charAt(cursor) != c) {
+                throw new UnsupportedExpressionException();
+            }
+            cursor++;
+        }
+
+        @NotNull
+        private static List<List<Step>> single(@NotNull Step step) {
+            List<List<Step>> result = new ArrayList<List<Step>>();
+            result.add(Collections.singletonList(step));
+            return result;
+        }
+
+        /**
+         * @return all a followed by all b (a varies slowest, like backtracking)
+         */
+        @NotNull
+        private static List<List<Step>> product(@NotNull List<List<Step>> a, @NotNull List<List<Step>> b) throws UnsupportedExpressionException {
+            List<List<Step>> result = new ArrayList<List<Step>>(a.size() * b.size());
+            for (List<Step> x : a) {
+                for (List<Step> y : b) {
+                    List<Step> expansion = new ArrayList<Step>(x.size() + y.size());
+                    expansion.addAll(x);
+                    expansion.addAll(y);
+                    result.add(expansion);
+                }
+                checkSize(result);
+            }
+            return result;
+        }
+
+        private static void checkSize(@NotNull List<List<Step>> expansions) throws UnsupportedExpressionException {
+            if (expansions.size() > MAX_EXPANSIONS) {
+                throw new UnsupportedExpressionException();
+            }
+        }
+
+        @NotNull
+        private static Step[][] toArray(@NotNull List<List<Step>> expansions) {
+            Step[][] result = new Step[expansions.size()][];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = expansions.get(i).toArray(new Step[expansions.get(i).size()]);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Expression needs a regex
+     */
+    private static final class UnsupportedExpressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Provides the file extensions a generic match may end with. The engine (this package) is plain Java, the IDE
+ * plugs in its registered file types (<code>altn8.AlternateFileTypeExtensionProvider</code>).
+ */
+public interface AlternateFileExtensionProvider {
+    /**
+     * @return alternatives of file extensions (regex, ex: <code>java</code>, <code>htm.</code>)
+     */
+    @NotNull
+    List<String> getFileExtensions();
+}
@@ -16,6 +16,9 @@
 package altn8.filematcher;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
 
 /**
  *
@@ -31,4 +34,22 @@ public interface AlternateFileMatcher {
      */
     @NotNull
     String getBaseFilename(@NotNull String filename);
+
+    /**
+     * @return key to collect statistics of this matcher
+     */
+    @NotNull
+    String getStatisticKey();
+
+    /**
+     * @return all filenames this matcher can match or null if this is not a finite list
+     */
+    @Nullable
+    Collection<String> getMatchingFilenames();
+
+    /**
+     * @return literals each filename this matcher matches contains (ignoring case), empty if unknown
+     */
+    @NotNull
+    Collection<String> getRequiredLiterals();
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders matchers for the scan loop. The first matching matcher wins, so a matcher may only be evaluated before a
+ * matcher with higher priority, if both can never match the same filename. Within these bounds cheap matchers with
+ * a high hit rate are moved to the front.
+ */
+public final class AlternateFileMatcherOrdering {
+    /**
+     * only static methods
+     */
+    private AlternateFileMatcherOrdering() {
+    }
+
+    /**
+     * @param fileMatchers  matchers in priority order
+     * @param statistics    collected statistics (key: {@link AlternateFileMatcher#getStatisticKey()})
+     * @return              matchers in evaluation order (same results as priority order)
+     */
+    @NotNull
+    public static List<AlternateFileMatcher> order(@NotNull List<AlternateFileMatcher> fileMatchers, @NotNull Map<String, AlternateRuleStatistic> statistics) {
+        List<AlternateFileMatcher> result = new ArrayList<AlternateFileMatcher>(fileMatchers.size());
+        for (AlternateFileMatcher fileMatcher : fileMatchers) {
+            // insertion: move in front as long as we are cheaper and disjoint from the one we pass
+            int index = result.size();
+            while (index > 0 && isCheaper(fileMatcher, result.get(index - 1), statistics) && isDisjoint(fileMatcher, result.get(index - 1))) {
+                index--;
+            }
+            result.add(index, fileMatcher);
+        }
+        return result;
+    }
+
+    /**
+     * Expected costs until the first hit are minimal if matchers are ordered by cost / hitRate.
+     *
+     * @return true, if a should be evaluated before b (false if we do not know enough)
+     */
+    private static boolean isCheaper(@NotNull AlternateFileMatcher a, @NotNull AlternateFileMatcher b, @NotNull Map<String, AlternateRuleStatistic> statistics) {
+        AlternateRuleStatistic statisticA = statistics.get(a.getStatisticKey());
+        AlternateRuleStatistic statisticB = statistics.get(b.getStatisticKey());
+        if (statisticA == null || statisticB == null || statisticA.evaluations == 0 || statisticB.evaluations == 0) {
+            return false;
+        }
+        // a * hitRateB < b * hitRateA  <=>  a / hitRateA < b / hitRateB (without division by zero)
+        return statisticA.getAverageNanos() * statisticB.getHitRate() < statisticB.getAverageNanos() * statisticA.getHitRate();
+    }
+
+    /**
+     * @return true, if we know that a and b never match the same filename
+     */
+    static boolean isDisjoint(@NotNull AlternateFileMatcher a, @NotNull AlternateFileMatcher b) {
+        Collection<String> filenames = a.getMatchingFilenames();
+        AlternateFileMatcher other = b;
+        if (filenames == null) {
+            filenames = b.getMatchingFilenames();
+            other = a;
+        }
+        if (filenames == null) {
+            return false;
+        }
+        for (String filename : filenames) {
+            if (other.matches(filename)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -16,15 +16,12 @@
 package altn8.filematcher;
 
 import altn8.AlternateConfiguration;
-import altn8.AlternateFreeRegexItem;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  *
@@ -36,29 +33,22 @@ public class AlternateFreeRegexFileMatcher implements AlternateFileMatcher {
      *
      */
     public AlternateFreeRegexFileMatcher(String currentFilename, AlternateConfiguration configuration) {
-        // put all same matchExpressions in a map having a List with replaceExpressions
-        Map<String, List<String>> map = new HashMap<String, List<String>>(); // <matchExpression, List<replaceExpression>>
-        for (AlternateFreeRegexItem item : configuration.freeRegexItems) {
-            if (!item.hasError()) {
-                List<String> replaceItems = map.get(item.matchExpression);
-                if (replaceItems == null) {
-                    replaceItems = new ArrayList<String>();
-                    map.put(item.matchExpression, replaceItems);
-                }
-                replaceItems.add(item.replaceExpression);
-            }
-        }
-        // go thru all matchExpressions
         names = new ArrayList<String>(); // contains all possible filenames regarding to match/replaceExpression
-        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
-            // get a Matcher for currentFilename
-            Matcher matcher = Pattern.compile(entry.getKey()).matcher(currentFilename);
-            // if matches
-            if (matcher.matches()) {
-                // add all filenames by replacesPattern
-                for (String replacePattern : entry.getValue()) {
-                   names.add(matcher.replaceAll(replacePattern));
+        // go thru all rules which can match currentFilename
+        for (AlternateFreeRegexRuleSet.Rule rule : AlternateFreeRegexRuleSet.getInstance(configuration.freeRegexItems, configuration.generateRuleSetCode).getRules(currentFilename)) {
+            String matchExpression = rule.getMatchExpression();
+            // skip expressions disabled after repeated timeouts
+            if (rule.isGuarded(configuration.linearRegexEngine) && AlternateRegexGuard.isDisabled(matchExpression)) {
+                continue;
+            }
+            try {
+                // add all filenames generated from currentFilename (if rule matches)
+                List<String> filenames = rule.apply(currentFilename, configuration.linearRegexEngine);
+                if (filenames != null) {
+                    names.addAll(filenames);
                 }
+            } catch (RegexTimeoutException e) {
+                AlternateRegexGuard.reportTimeout(matchExpression);
             }
         }
     }
@@ -85,4 +75,28 @@ public class AlternateFreeRegexFileMatcher implements AlternateFileMatcher {
     public String getBaseFilename(@NotNull String filename) {
         return ""; // Free Regex does not have any grouping...
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public String getStatisticKey() {
+        return "free";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public Collection<String> getMatchingFilenames() {
+        return names;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public Collection<String> getRequiredLiterals() {
+        return Collections.emptyList(); // we have our names
+    }
 }
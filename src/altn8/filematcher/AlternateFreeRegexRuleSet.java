@@ -0,0 +1,355 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateFreeRegexItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled free regex items. Items with same matchExpression are merged to one rule and rules are dispatched by the
+ * file extension of their literal suffix (ex: <code>^(.*?)\.java$</code> -> <code>java</code>), so a filename only
+ * has to be tested against rules which can match at all. Templates and regex rules convertible to templates are
+ * evaluated without regex (see {@link AlternateNameTemplate}). Optionally, the dispatch is done by generated bytecode
+ * (see {@link AlternateRuleSelectorGenerator}).
+ */
+public final class AlternateFreeRegexRuleSet {
+    private static List<AlternateFreeRegexItem> lastItems;
+    private static boolean lastGenerateCode;
+    private static AlternateFreeRegexRuleSet lastRuleSet;
+
+    private final Map<String, List<Rule>> rulesByExtension = new HashMap<String, List<Rule>>();
+    private final List<Rule> otherRules = new ArrayList<Rule>();
+    @NotNull
+    private final Rule[] allRules;
+    @Nullable
+    private final Selector selector;
+
+    /**
+     * @return compiled items (only recompiled if items have changed)
+     */
+    @NotNull
+    public static AlternateFreeRegexRuleSet getInstance(@NotNull List<AlternateFreeRegexItem> items) {
+        return getInstance(items, false);
+    }
+
+    /**
+     * @param generateCode dispatch by generated bytecode (falls back to the interpreter if it can't be generated)
+     * @return compiled items (only recompiled if items or generateCode have changed)
+     */
+    @NotNull
+    public static synchronized AlternateFreeRegexRuleSet getInstance(@NotNull List<AlternateFreeRegexItem> items, boolean generateCode) {
+        if (lastRuleSet == null || !items.equals(lastItems) || generateCode != lastGenerateCode) {
+            lastItems = new ArrayList<AlternateFreeRegexItem>(items);
+            lastGenerateCode = generateCode;
+            lastRuleSet = new AlternateFreeRegexRuleSet(lastItems, generateCode);
+        }
+        return lastRuleSet;
+    }
+
+    private AlternateFreeRegexRuleSet(@NotNull List<AlternateFreeRegexItem> items, boolean generateCode) {
+        // put all same matchExpressions in one rule having a List with replaceExpressions (redundant items removed)
+        Map<String, Rule> rules = new LinkedHashMap<String, Rule>(); // <matchExpression, Rule>
+        for (AlternateFreeRegexItem item : AlternateRuleSetOptimizer.minimizeFreeRegexItems(items)) {
+            if (!item.hasError()) {
+                Rule rule = rules.get(item.matchExpression);
+                if (rule == null) {
+                    rule = new Rule(item.matchExpression);
+                    rules.put(item.matchExpression, rule);
+                }
+                rule.replaceExpressions.add(item.replaceExpression);
+            }
+        }
+        for (Rule rule : rules.values()) {
+            rule.compileGenerators();
+        }
+        // build dispatch table
+        for (Rule rule : rules.values()) {
+            int index = rule.literalSuffix.lastIndexOf('.');
+            if (index >= 0) {
+                String extension = rule.literalSuffix.substring(index + 1);
+                List<Rule> list = rulesByExtension.get(extension);
+                if (list == null) {
+                    list = new ArrayList<Rule>();
+                    rulesByExtension.put(extension, list);
+                }
+                list.add(rule);
+            } else {
+                otherRules.add(rule);
+            }
+        }
+        // generated dispatch
+        allRules = rules.values().toArray(new Rule[rules.size()]);
+        if (generateCode) {
+            List<String> literalSuffixes = new ArrayList<String>(allRules.length);
+            for (Rule rule : allRules) {
+                literalSuffixes.add(rule.literalSuffix);
+            }
+            selector = AlternateRuleSelectorGenerator.generate(literalSuffixes);
+        } else {
+            selector = null;
+        }
+    }
+
+    /**
+     * @return rule of item alone, as a lookup evaluates it (ex: to profile it), null if item has an error
+     */
+    @Nullable
+    static Rule createRule(@NotNull AlternateFreeRegexItem item) {
+        if (item.hasError()) {
+            return null;
+        }
+        Rule rule = new Rule(item.matchExpression);
+        rule.replaceExpressions.add(item.replaceExpression);
+        rule.compileGenerators();
+        return rule;
+    }
+
+    /**
+     * @return true, if rules are dispatched by generated bytecode
+     */
+    boolean isGenerated() {
+        return selector != null;
+    }
+
+    /**
+     * @return all rules which can match filename
+     */
+    @NotNull
+    public List<Rule> getRules(@NotNull String filename) {
+        if (selector != null) {
+            List<Rule> result = new ArrayList<Rule>();
+            selector.select(filename, allRules, result);
+            return result;
+        }
+        int index = filename.lastIndexOf('.');
+        List<Rule> rules = index >= 0 ? rulesByExtension.get(filename.substring(index + 1)) : null;
+        List<Rule> result = new ArrayList<Rule>((rules == null ? 0 : rules.size()) + otherRules.size());
+        if (rules != null) {
+            addRules(result, rules, filename);
+        }
+        addRules(result, otherRules, filename);
+        return result;
+    }
+
+    private static void addRules(@NotNull List<Rule> result, @NotNull List<Rule> rules, @NotNull String filename) {
+        for (Rule rule : rules) {
+            if (filename.endsWith(rule.literalSuffix)) {
+                result.add(rule);
+            }
+        }
+    }
+
+    /**
+     * @return literal text every match of regex must end with ("" if unknown)
+     */
+    @NotNull
+    static String getLiteralSuffix(@NotNull String regex) {
+        // alternations and inline flags (ex: case insensitive) change the meaning of the tail
+        if (indexOfUnescaped(regex, '|') >= 0 || Pattern.compile("\\(\\?[idmsuxU-]").matcher(regex).find()) {
+            return "";
+        }
+        int end = regex.length();
+        if (end > 0 && regex.charAt(end - 1) == '$' && !isEscaped(regex, end - 1)) {
+            end--;
+        }
+        StringBuilder sb = new StringBuilder();
+        int i = end - 1;
+        while (i >= 0) {
+            char c = regex.charAt(i);
+            if (isEscaped(regex, i)) {
+                if (Character.isLetterOrDigit(c)) {
+                    // \d, \w etc., but also escapes which take the chars after them (ex: \x41, \0101, \12)
+                    return "";
+                }
+                sb.append(c);
+                i -= 2;
+            } else if (Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == ' ') {
+                sb.append(c);
+                i--;
+            } else {
+                break; // meta character or quantifier
+            }
+        }
+        return sb.reverse().toString();
+    }
+
+    private static int indexOfUnescaped(@NotNull String regex, char c) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (regex.charAt(i) == c && !isEscaped(regex, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return true, if char at index is escaped by an odd number of backslashes
+     */
+    private static boolean isEscaped(@NotNull String regex, int index) {
+        int count = 0;
+        for (int i = index - 1; i >= 0 && regex.charAt(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 1;
+    }
+
+    /**
+     * Dispatch of generated bytecode (public, because it is implemented by a class of another class loader)
+     */
+    public interface Selector {
+        /**
+         * Add all rules which can match filename to result (same order as the interpreter)
+         */
+        void select(@NotNull String filename, @NotNull Rule[] rules, @NotNull List<Rule> result);
+    }
+
+    /**
+     * A matchExpression with all its replaceExpressions
+     */
+    public static final class Rule {
+        @NotNull
+        private final String matchExpression;
+        @Nullable
+        private final Pattern pattern;
+        @Nullable
+        private AlternateNameTemplate template;
+        @Nullable
+        private AlternateLinearRegex linearRegex;
+        private boolean linearRegexCompiled;
+        @NotNull
+        private final String literalSuffix;
+        @NotNull
+        private final List<String> replaceExpressions = new ArrayList<String>();
+        @NotNull
+        private final List<AlternateNameTemplate.Generator> generators = new ArrayList<AlternateNameTemplate.Generator>();
+
+        private Rule(@NotNull String matchExpression) {
+            this.matchExpression = matchExpression;
+            this.template = AlternateNameTemplate.compile(matchExpression);
+            if (AlternateNameTemplate.isTemplate(matchExpression)) {
+                this.pattern = null;
+                this.literalSuffix = template.getLiteralSuffix();
+            } else {
+                this.pattern = Pattern.compile(matchExpression);
+                this.literalSuffix = getLiteralSuffix(matchExpression);
+            }
+        }
+
+        /**
+         * Compile replaceExpressions to generators. A regex rule is only evaluated as template if all its
+         * replaceExpressions can be converted.
+         */
+        private void compileGenerators() {
+            if (template == null) {
+                return;
+            }
+            for (String replaceExpression : replaceExpressions) {
+                AlternateNameTemplate.Generator generator = pattern == null ? AlternateNameTemplate.Generator.parse(replaceExpression, template) :
+                        AlternateNameTemplate.Generator.fromReplacement(replaceExpression, pattern.matcher("").groupCount());
+                if (generator == null) {
+                    template = null;
+                    generators.clear();
+                    return;
+                }
+                generators.add(generator);
+            }
+        }
+
+        @NotNull
+        public String getMatchExpression() {
+            return matchExpression;
+        }
+
+        /**
+         * @return true, if rule is evaluated without regex (can't time out)
+         */
+        public boolean isTemplate() {
+            return template != null;
+        }
+
+        /**
+         * @return true, if rule is evaluated by java.util.regex (may time out)
+         */
+        public boolean isGuarded(boolean linearRegexEngine) {
+            return template == null && (!linearRegexEngine || getLinearRegex() == null);
+        }
+
+        /**
+         * @return compiled matchExpression, null if it is not supported
+         */
+        @Nullable
+        private synchronized AlternateLinearRegex getLinearRegex() {
+            if (!linearRegexCompiled) {
+                linearRegex = AlternateLinearRegex.compile(matchExpression);
+                linearRegexCompiled = true;
+            }
+            return linearRegex;
+        }
+
+        @NotNull
+        public List<String> getReplaceExpressions() {
+            return replaceExpressions;
+        }
+
+        /**
+         * @return filenames generated from filename, null if rule does not match filename
+         */
+        @Nullable
+        public List<String> apply(@NotNull String filename) throws RegexTimeoutException {
+            return apply(filename, false);
+        }
+
+        /**
+         * @param linearRegexEngine use {@link AlternateLinearRegex} (if it supports matchExpression)
+         * @return filenames generated from filename, null if rule does not match filename
+         */
+        @Nullable
+        public List<String> apply(@NotNull String filename, boolean linearRegexEngine) throws RegexTimeoutException {
+            List<String> result = new ArrayList<String>(replaceExpressions.size());
+            if (template != null) {
+                String[] values = template.match(filename);
+                if (values == null) {
+                    return null;
+                }
+                for (AlternateNameTemplate.Generator generator : generators) {
+                    result.add(generator.generate(values));
+                }
+            } else if (linearRegexEngine && getLinearRegex() != null) {
+                //noinspection ConstantConditions
+                if (linearRegex.match(filename) == null) {
+                    return null;
+                }
+                for (String replaceExpression : replaceExpressions) {
+                    result.add(linearRegex.replaceAll(filename, replaceExpression));
+                }
+            } else {
+                //noinspection ConstantConditions (pattern is null for templates only)
+                if (!AlternateRegexGuard.matcher(pattern, filename).matches()) {
+                    return null;
+                }
+                // each evaluation with its own budget
+                for (String replaceExpression : replaceExpressions) {
+                    result.add(AlternateRegexGuard.matcher(pattern, filename).replaceAll(replaceExpression));
+                }
+            }
+            return result;
+        }
+    }
+}
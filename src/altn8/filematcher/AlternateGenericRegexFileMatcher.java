@@ -17,44 +17,52 @@ package altn8.filematcher;
 
 import altn8.AlternateConfiguration;
 import altn8.AlternateGenericPrefixPostfixRegexItem;
-import com.intellij.openapi.fileTypes.*;
-import com.intellij.util.PatternUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- *
+ * Matches by generic prefix/postfix items. If all items are supported by {@link AlternateAffixPattern}, filenames are
+ * matched without regex (same result), else by the regex below (by {@link AlternateLinearRegex} if configured and
+ * supported). File extensions are given by an {@link AlternateFileExtensionProvider}, so there is no dependency to
+ * the IDE.
  */
 public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
     private Pattern matchPattern;
     private int matchPatternGroupCount;
     private String name;
+    private String guardExpression;
+    @Nullable
+    private AlternateAffixPattern affixPattern;
+    private boolean caseInsensitiveBasename;
+    @Nullable
+    private AlternateLinearRegex linearMatchPattern;
 
     /**
      *
      */
-    public AlternateGenericRegexFileMatcher(String currentFilename, AlternateConfiguration configuration) {
-        // create regex and count groups
-        GenRegex prefixGenRegex = createRegexPattern(configuration.genericPrefixRegexItems);
-        GenRegex postfixGenRegex = createRegexPattern(configuration.genericPostfixRegexItems);
-
-        // create full prefix/postfixPattern
-        String prefixPattern = "^" + prefixGenRegex.pattern;
-        String postfixPattern = postfixGenRegex.pattern + "(?:\\.(?:" + createFileExtensionPattern() + "))?$";
-
-        // get matcher capturing the name
-        Matcher matcher = Pattern.compile(prefixPattern + "(\\w+?)" + postfixPattern).matcher(currentFilename);
-        // we have a name if regex matches (prefixGroupCount + 1 to get the name-group (\w+?))
-        name = matcher.matches() ? matcher.group(prefixGenRegex.groupCount + 1) : "";
+    public AlternateGenericRegexFileMatcher(String currentFilename, AlternateConfiguration configuration, AlternateFileExtensionProvider extensionProvider) {
+        NameFinder nameFinder = new NameFinder(configuration, extensionProvider);
+        guardExpression = nameFinder.guardExpression;
+        name = "";
+        affixPattern = nameFinder.affixPattern;
+        caseInsensitiveBasename = configuration.caseInsensitiveBasename;
+        if (!nameFinder.isGuarded() || !AlternateRegexGuard.isDisabled(guardExpression)) {
+            try {
+                name = nameFinder.findName(currentFilename);
+            } catch (RegexTimeoutException e) {
+                AlternateRegexGuard.reportTimeout(guardExpression);
+            }
+        }
 
         // we have our name so we can create our pattern to test filenames
         StringBuilder sb = new StringBuilder();
-        sb.append(prefixPattern);
+        sb.append(nameFinder.prefixPattern);
         if (configuration.caseInsensitiveBasename) {
             sb.append("(?i)");
         }
@@ -62,11 +70,14 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
         if (configuration.caseInsensitiveBasename) {
             sb.append("(?-i)");
         }
-        sb.append(postfixPattern);
+        sb.append(nameFinder.postfixPattern);
         matchPattern = Pattern.compile(sb.toString());
+        if (nameFinder.linearGuardPattern != null) {
+            linearMatchPattern = AlternateLinearRegex.compile(sb.toString());
+        }
 
         //
-        matchPatternGroupCount = prefixGenRegex.groupCount + postfixGenRegex.groupCount + 1; // + 1 for the name
+        matchPatternGroupCount = nameFinder.prefixGroupCount + nameFinder.postfixGroupCount + 1; // + 1 for the name
 
         /*
             ^
@@ -102,12 +113,80 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
         */
     }
 
-    private static class GenRegex {
+    /**
+     * Finds the name in filenames by the generic items of a configuration (redundant items removed). Unlike the
+     * matcher, it doesn't catch timeouts, so {@link AlternateRuleProfiler} can count them.
+     */
+    static final class NameFinder {
+        final String prefixPattern;
+        final String postfixPattern;
+        final int prefixGroupCount;
+        final int postfixGroupCount;
+        /**
+         * captures the name (also used as key to disable generic regex if it runs into timeout)
+         */
+        final String guardExpression;
+        @Nullable
+        final AlternateAffixPattern affixPattern;
+        @Nullable
+        final AlternateLinearRegex linearGuardPattern;
+        @Nullable
+        private Pattern guardPattern;
+
+        NameFinder(@NotNull AlternateConfiguration configuration, @NotNull AlternateFileExtensionProvider extensionProvider) {
+            // create regex and count groups (redundant items removed)
+            List<AlternateGenericPrefixPostfixRegexItem> prefixItems = AlternateRuleSetOptimizer.minimizeGenericItems(configuration.genericPrefixRegexItems);
+            List<AlternateGenericPrefixPostfixRegexItem> postfixItems = AlternateRuleSetOptimizer.minimizeGenericItems(configuration.genericPostfixRegexItems);
+            GenRegex prefixGenRegex = createRegexPattern(prefixItems);
+            GenRegex postfixGenRegex = createRegexPattern(postfixItems);
+            prefixGroupCount = prefixGenRegex.groupCount;
+            postfixGroupCount = postfixGenRegex.groupCount;
+
+            // create full prefix/postfixPattern
+            List<String> fileExtensions = extensionProvider.getFileExtensions();
+            prefixPattern = "^" + prefixGenRegex.pattern;
+            postfixPattern = postfixGenRegex.pattern + "(?:\\.(?:" + join(fileExtensions) + "))?$";
+            guardExpression = prefixPattern + "(\\w+?)" + postfixPattern;
+            affixPattern = AlternateAffixPattern.getInstance(prefixItems, postfixItems, fileExtensions);
+            linearGuardPattern = affixPattern == null && configuration.linearRegexEngine ? AlternateLinearRegex.compile(guardExpression) : null;
+        }
+
+        /**
+         * @return true, if names are found by java.util.regex (which may time out)
+         */
+        boolean isGuarded() {
+            return affixPattern == null && linearGuardPattern == null;
+        }
+
+        /**
+         * @return name of filename (without any prefix/postfix), "" if none
+         * @throws RegexTimeoutException if regex takes too long
+         */
+        @NotNull
+        String findName(@NotNull String filename) {
+            if (affixPattern != null) {
+                String affixName = affixPattern.findName(filename);
+                return affixName != null ? affixName : "";
+            }
+            if (linearGuardPattern != null) {
+                String[] groups = linearGuardPattern.match(filename);
+                return groups != null ? groups[prefixGroupCount + 1] : "";
+            }
+            if (guardPattern == null) {
+                guardPattern = Pattern.compile(guardExpression);
+            }
+            Matcher matcher = AlternateRegexGuard.matcher(guardPattern, filename);
+            // we have a name if regex matches (prefixGroupCount + 1 to get the name-group (\w+?))
+            return matcher.matches() ? matcher.group(prefixGroupCount + 1) : "";
+        }
+    }
+
+    static class GenRegex {
         int groupCount = 0;
         String pattern;
     }
 
-    private GenRegex createRegexPattern(List<AlternateGenericPrefixPostfixRegexItem> items) {
+    static GenRegex createRegexPattern(List<AlternateGenericPrefixPostfixRegexItem> items) {
         GenRegex result = new GenRegex();
         StringBuilder sb = new StringBuilder();
         for (AlternateGenericPrefixPostfixRegexItem item : items) {
@@ -131,27 +210,17 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
         return result;
     }
 
-    private String createFileExtensionPattern() {
+    static String createFileExtensionPattern(@NotNull AlternateFileExtensionProvider extensionProvider) {
+        return join(extensionProvider.getFileExtensions());
+    }
+
+    private static String join(List<String> alternatives) {
         StringBuilder sb = new StringBuilder();
-        FileTypeManager fileTypeManager = FileTypeManager.getInstance();
-        for (FileType fileType : fileTypeManager.getRegisteredFileTypes()) {
-            for (FileNameMatcher fileNameMatcher : fileTypeManager.getAssociations(fileType)) {
-                String extension = null;
-                if (fileNameMatcher instanceof ExtensionFileNameMatcher) {
-                    extension = ((ExtensionFileNameMatcher) fileNameMatcher).getExtension();
-                } else if (fileNameMatcher instanceof WildcardFileNameMatcher) {
-                    String pattern = ((WildcardFileNameMatcher) fileNameMatcher).getPattern();
-                    if (pattern.startsWith("*.")) { // we only support matcher starting with *. assuming it's a file extension
-                        extension = PatternUtil.convertToRegex(pattern.substring(2));
-                    }
-                }
-                if (extension != null) {
-                    if (sb.length() > 0) {
-                        sb.append("|");
-                    }
-                    sb.append(extension);
-                }
+        for (String alternative : alternatives) {
+            if (sb.length() > 0) {
+                sb.append("|");
             }
+            sb.append(alternative);
         }
         return sb.toString();
     }
@@ -163,11 +232,33 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
         return name.length() > 0;
     }
 
+    /**
+     * @return name of currentFilename (without any prefix/postfix), "" if none
+     */
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
     /**
      * {@inheritDoc}
      */
     public boolean matches(@NotNull String filename) {
-        return matchPattern.matcher(filename).matches();
+        if (affixPattern != null) {
+            return affixPattern.match(filename, name, caseInsensitiveBasename) != null;
+        }
+        if (linearMatchPattern != null) {
+            return linearMatchPattern.match(filename) != null;
+        }
+        if (AlternateRegexGuard.isDisabled(guardExpression)) {
+            return false;
+        }
+        try {
+            return AlternateRegexGuard.matcher(matchPattern, filename).matches();
+        } catch (RegexTimeoutException e) {
+            AlternateRegexGuard.reportTimeout(guardExpression);
+            return false;
+        }
     }
 
     /**
@@ -175,10 +266,46 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
      */
     @NotNull
     public String getBaseFilename(@NotNull String filename) {
-        return matchPattern.matcher(filename).replaceAll(getReplacePattern(matchPatternGroupCount));
+        if (affixPattern != null) {
+            String baseFilename = affixPattern.match(filename, name, caseInsensitiveBasename);
+            return baseFilename != null ? baseFilename : filename; // like replaceAll without match
+        }
+        if (linearMatchPattern != null) {
+            return linearMatchPattern.replaceAll(filename, getReplacePattern(matchPatternGroupCount));
+        }
+        try {
+            return AlternateRegexGuard.matcher(matchPattern, filename).replaceAll(getReplacePattern(matchPatternGroupCount));
+        } catch (RegexTimeoutException e) {
+            AlternateRegexGuard.reportTimeout(guardExpression);
+            return "";
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public String getStatisticKey() {
+        return "generic";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Nullable
+    public Collection<String> getMatchingFilenames() {
+        return null; // any filename with our name...
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    public Collection<String> getRequiredLiterals() {
+        return AlternateRequiredLiterals.get(matchPattern.pattern());
     }
 
-    private static final Map<Integer, String> REPLACEPATTERNS = new HashMap<Integer, String>();
+    private static final ConcurrentMap<Integer, String> REPLACEPATTERNS = new ConcurrentHashMap<Integer, String>();
 
     /**
      * @return replacePattern to build baseFilename (ex: groupCount is 5 -> "$1$2$3$4$5")
@@ -191,7 +318,7 @@ public class AlternateGenericRegexFileMatcher implements AlternateFileMatcher {
                 sb.append('$').append(i + 1);
             }
             replacePattern = sb.toString();
-            REPLACEPATTERNS.put(groupCount, replacePattern);
+            REPLACEPATTERNS.putIfAbsent(groupCount, replacePattern);
         }
         return replacePattern;
     }
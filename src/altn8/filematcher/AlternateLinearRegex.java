@@ -0,0 +1,853 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Regex engine with a linear time bound (Pike VM: all alternatives are simulated in parallel, one pass over the
+ * input), so a user supplied rule can never run away. Results (groups, replacements) are the same as with
+ * java.util.regex: threads are kept in the order a backtracking matcher would try them.
+ * <br>
+ * Supported are literals, character classes, groups, alternations, greedy and lazy quantifiers, <code>^</code>,
+ * <code>$</code>, <code>\Q..\E</code> and <code>(?i)</code>. Expressions with lookarounds, backreferences, word
+ * boundaries, possessive quantifiers, other flags or repeated empty matches are not supported, see
+ * {@link #compile(String)}.
+ */
+public final class AlternateLinearRegex {
+    private static final int MAX_PROGRAM_SIZE = 10000;
+
+    // instructions
+    private static final int CHAR = 0;
+    private static final int SPLIT = 1;
+    private static final int JMP = 2;
+    private static final int SAVE = 3;
+    private static final int BEGIN = 4;
+    private static final int END = 5;
+    private static final int MATCH = 6;
+
+    private final int[] ops;
+    private final int[] args1;
+    private final int[] args2;
+    private final CharClass[] classes;
+    private final boolean[] caseInsensitive;
+    private final int groupCount;
+
+    private AlternateLinearRegex(@NotNull Program program, int groupCount) {
+        int size = program.ops.size();
+        ops = new int[size];
+        args1 = new int[size];
+        args2 = new int[size];
+        classes = new CharClass[size];
+        caseInsensitive = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            ops[i] = program.ops.get(i);
+            args1[i] = program.args1.get(i);
+            args2[i] = program.args2.get(i);
+            classes[i] = program.classes.get(i);
+            caseInsensitive[i] = program.caseInsensitive.get(i);
+        }
+        this.groupCount = groupCount;
+    }
+
+    /**
+     * @return compiled regex, null if regex is not supported (-> use java.util.regex)
+     */
+    @Nullable
+    public static AlternateLinearRegex compile(@NotNull String regex) {
+        try {
+            Parser parser = new Parser(regex);
+            Node node = parser.parse();
+            Program program = new Program();
+            program.emit(SAVE, 0, 0, null, false);
+            node.emit(program);
+            program.emit(SAVE, 1, 0, null, false);
+            program.emit(MATCH, 0, 0, null, false);
+            return new AlternateLinearRegex(program, parser.groupCount);
+        } catch (UnsupportedExpressionException e) {
+            return null;
+        }
+    }
+
+    public int groupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return groups (0 is whole input) if regex matches whole input (like {@link java.util.regex.Matcher#matches()}),
+     * null if it does not match
+     */
+    @Nullable
+    public String[] match(@NotNull String input) {
+        int[] captures = run(input, 0, true);
+        return captures == null ? null : toGroups(input, captures);
+    }
+
+    /**
+     * @return input with all matches replaced (like {@link java.util.regex.Matcher#replaceAll(String)})
+     */
+    @NotNull
+    public String replaceAll(@NotNull String input, @NotNull String replacement) {
+        StringBuilder sb = new StringBuilder();
+        int appendPosition = 0;
+        int from = 0;
+        while (from <= input.length()) {
+            int[] captures = run(input, from, false);
+            if (captures == null) {
+                break;
+            }
+            sb.append(input, appendPosition, captures[0]);
+            appendReplacement(sb, replacement, toGroups(input, captures));
+            appendPosition = captures[1];
+            // after an empty match, the next search starts one char later
+            from = captures[1] == captures[0] ? captures[1] + 1 : captures[1];
+        }
+        sb.append(input, appendPosition, input.length());
+        return sb.toString();
+    }
+
+    @NotNull
+    private String[] toGroups(@NotNull String input, @NotNull int[] captures) {
+        String[] groups = new String[groupCount + 1];
+        for (int i = 0; i <= groupCount; i++) {
+            if (captures[2 * i] >= 0 && captures[2 * i + 1] >= 0) {
+                groups[i] = input.substring(captures[2 * i], captures[2 * i + 1]);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * derived from {@link java.util.regex.Matcher#appendReplacement}
+     */
+    private void appendReplacement(@NotNull StringBuilder sb, @NotNull String replacement, @NotNull String[] groups) {
+        int cursor = 0;
+        while (cursor < replacement.length()) {
+            char nextChar = replacement.charAt(cursor++);
+            if (nextChar == '\\') {
+                if (cursor >= replacement.length()) {
+                    throw new IllegalArgumentException("character to be escaped is missing");
+                }
+                sb.append(replacement.charAt(cursor++));
+            } else if (nextChar == '$') {
+                int refNum = cursor < replacement.length() ? replacement.charAt(cursor) - '0' : -1;
+                if (refNum < 0 || refNum > 9) {
+                    throw new IllegalArgumentException("Illegal group reference");
+                }
+                cursor++;
+                while (cursor < replacement.length()) {
+                    int nextDigit = replacement.charAt(cursor) - '0';
+                    if (nextDigit < 0 || nextDigit > 9 || groupCount < refNum * 10 + nextDigit) {
+                        break;
+                    }
+                    refNum = refNum * 10 + nextDigit;
+                    cursor++;
+                }
+                if (refNum > groupCount) {
+                    throw new IndexOutOfBoundsException("No group " + refNum);
+                }
+                if (groups[refNum] != null) {
+                    sb.append(groups[refNum]);
+                }
+            } else {
+                sb.append(nextChar);
+            }
+        }
+    }
+
+    /**
+     * Simulate all threads in parallel. Threads are ordered by priority, so the first thread reaching MATCH is the
+     * match a backtracking matcher would find; threads with lower priority are dropped then.
+     *
+     * @param fullMatch true: match must start at from and end at end of input, false: find first match after from
+     * @return captures of match, null if none
+     */
+    @Nullable
+    private int[] run(@NotNull String input, int from, boolean fullMatch) {
+        ThreadList currentList = new ThreadList(ops.length);
+        ThreadList nextList = new ThreadList(ops.length);
+        int[] matched = null;
+        for (int position = from; ; position++) {
+            if (matched == null && (position == from || !fullMatch)) {
+                int[] captures = new int[2 * (groupCount + 1)];
+                Arrays.fill(captures, -1);
+                addThread(currentList, 0, captures, input, position);
+            }
+            char c = position < input.length() ? input.charAt(position) : 0;
+            for (int i = 0; i < currentList.size; i++) {
+                int pc = currentList.pcs[i];
+                int[] captures = currentList.captures[i];
+                if (ops[pc] == CHAR) {
+                    if (position < input.length() && classes[pc].matches(c, caseInsensitive[pc])) {
+                        addThread(nextList, pc + 1, captures, input, position + 1);
+                    }
+                } else if (ops[pc] == MATCH) {
+                    if (!fullMatch || position == input.length()) {
+                        matched = captures;
+                        break; // drop threads with lower priority
+                    }
+                }
+            }
+            ThreadList list = currentList;
+            currentList = nextList;
+            nextList = list;
+            nextList.clear();
+            if (position >= input.length() || (currentList.size == 0 && (matched != null || fullMatch))) {
+                break;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * Add thread and follow all instructions which don't consume a char
+     */
+    private void addThread(@NotNull ThreadList list, int pc, @NotNull int[] captures, @NotNull String input, int position) {
+        if (list.contains(pc)) {
+            return; // a thread with higher priority is already there
+        }
+        list.mark(pc);
+        switch (ops[pc]) {
+            case JMP:
+                addThread(list, args1[pc], captures, input, position);
+                break;
+            case SPLIT:
+                addThread(list, args1[pc], captures, input, position);
+                addThread(list, args2[pc], captures, input, position);
+                break;
+            case SAVE:
+                int[] newCaptures = captures.clone();
+                newCaptures[args1[pc]] = position;
+                addThread(list, pc + 1, newCaptures, input, position);
+                break;
+            case BEGIN:
+                if (position == 0) {
+                    addThread(list, pc + 1, captures, input, position);
+                }
+                break;
+            case END:
+                if (isEnd(input, position)) {
+                    addThread(list, pc + 1, captures, input, position);
+                }
+                break;
+            default:
+                list.add(pc, captures);
+        }
+    }
+
+    /**
+     * <code>$</code> without MULTILINE: at end of input or before a final line terminator
+     */
+    private static boolean isEnd(@NotNull String input, int position) {
+        int length = input.length();
+        if (position == length) {
+            return true;
+        }
+        if (position == length - 2) {
+            return input.charAt(position) == '\r' && input.charAt(position + 1) == '\n';
+        }
+        if (position == length - 1) {
+            char c = input.charAt(position);
+            if (c == '\n') {
+                return position == 0 || input.charAt(position - 1) != '\r';
+            }
+            return c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+        }
+        return false;
+    }
+
+    /**
+     * Threads (ordered by priority) of one position
+     */
+    private static final class ThreadList {
+        private final int[] pcs;
+        private final int[][] captures;
+        private final boolean[] marked;
+        private int size;
+
+        private ThreadList(int programSize) {
+            pcs = new int[programSize];
+            captures = new int[programSize][];
+            marked = new boolean[programSize];
+        }
+
+        private boolean contains(int pc) {
+            return marked[pc];
+        }
+
+        private void mark(int pc) {
+            marked[pc] = true;
+        }
+
+        private void add(int pc, @NotNull int[] threadCaptures) {
+            pcs[size] = pc;
+            captures[size] = threadCaptures;
+            size++;
+        }
+
+        private void clear() {
+            Arrays.fill(marked, false);
+            size = 0;
+        }
+    }
+
+    /**
+     * Program while compiling
+     */
+    private static final class Program {
+        private final List<Integer> ops = new ArrayList<Integer>();
+        private final List<Integer> args1 = new ArrayList<Integer>();
+        private final List<Integer> args2 = new ArrayList<Integer>();
+        private final List<CharClass> classes = new ArrayList<CharClass>();
+        private final List<Boolean> caseInsensitive = new ArrayList<Boolean>();
+
+        /**
+         * @return address of instruction
+         */
+        private int emit(int op, int arg1, int arg2, @Nullable CharClass charClass, boolean ignoreCase) throws UnsupportedExpressionException {
+            if (ops.size() >= MAX_PROGRAM_SIZE) {
+                throw new UnsupportedExpressionException();
+            }
+            ops.add(op);
+            args1.add(arg1);
+            args2.add(arg2);
+            classes.add(charClass);
+            caseInsensitive.add(ignoreCase);
+            return ops.size() - 1;
+        }
+
+        private int size() {
+            return ops.size();
+        }
+
+        private void setArgs(int address, int arg1, int arg2) {
+            args1.set(address, arg1);
+            args2.set(address, arg2);
+        }
+    }
+
+    /**
+     * Node of syntax tree
+     */
+    private abstract static class Node {
+        /**
+         * @return true, if node may match empty input
+         */
+        abstract boolean isNullable();
+
+        abstract void emit(@NotNull Program program) throws UnsupportedExpressionException;
+    }
+
+    private static final class CharNode extends Node {
+        @NotNull
+        private final CharClass charClass;
+        private final boolean caseInsensitive;
+
+        private CharNode(@NotNull CharClass charClass, boolean caseInsensitive) {
+            this.charClass = charClass;
+            this.caseInsensitive = caseInsensitive;
+        }
+
+        boolean isNullable() {
+            return false;
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            program.emit(CHAR, 0, 0, charClass, caseInsensitive);
+        }
+    }
+
+    private static final class AssertNode extends Node {
+        private final int op;
+
+        private AssertNode(int op) {
+            this.op = op;
+        }
+
+        boolean isNullable() {
+            return true;
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            program.emit(op, 0, 0, null, false);
+        }
+    }
+
+    private static final class SequenceNode extends Node {
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        boolean isNullable() {
+            for (Node node : nodes) {
+                if (!node.isNullable()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            for (Node node : nodes) {
+                node.emit(program);
+            }
+        }
+    }
+
+    private static final class AlternationNode extends Node {
+        private final List<Node> nodes = new ArrayList<Node>();
+
+        boolean isNullable() {
+            for (Node node : nodes) {
+                if (node.isNullable()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            // split a, next; a; jmp end; next: split b, next2; b; jmp end; ...; last
+            List<Integer> jumps = new ArrayList<Integer>();
+            for (int i = 0; i < nodes.size() - 1; i++) {
+                int split = program.emit(SPLIT, 0, 0, null, false);
+                nodes.get(i).emit(program);
+                jumps.add(program.emit(JMP, 0, 0, null, false));
+                program.setArgs(split, split + 1, program.size());
+            }
+            nodes.get(nodes.size() - 1).emit(program);
+            for (int jump : jumps) {
+                program.setArgs(jump, program.size(), 0);
+            }
+        }
+    }
+
+    private static final class GroupNode extends Node {
+        @NotNull
+        private final Node node;
+        private final int index;
+
+        private GroupNode(@NotNull Node node, int index) {
+            this.node = node;
+            this.index = index;
+        }
+
+        boolean isNullable() {
+            return node.isNullable();
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            program.emit(SAVE, 2 * index, 0, null, false);
+            node.emit(program);
+            program.emit(SAVE, 2 * index + 1, 0, null, false);
+        }
+    }
+
+    private static final class RepeatNode extends Node {
+        @NotNull
+        private final Node node;
+        private final int min;
+        /**
+         * -1: unbounded
+         */
+        private final int max;
+        private final boolean greedy;
+
+        private RepeatNode(@NotNull Node node, int min, int max, boolean greedy) throws UnsupportedExpressionException {
+            // java.util.regex stops loops at empty iterations, we don't simulate that
+            if (node.isNullable() && max != 1) {
+                throw new UnsupportedExpressionException();
+            }
+            this.node = node;
+            this.min = min;
+            this.max = max;
+            this.greedy = greedy;
+        }
+
+        boolean isNullable() {
+            return min == 0 || node.isNullable();
+        }
+
+        void emit(@NotNull Program program) throws UnsupportedExpressionException {
+            for (int i = 0; i < min; i++) {
+                node.emit(program);
+            }
+            if (max < 0) {
+                // loop: split body, end; body; jmp loop
+                int split = program.emit(SPLIT, 0, 0, null, false);
+                node.emit(program);
+                program.emit(JMP, split, 0, null, false);
+                setSplit(program, split, split + 1, program.size());
+            } else {
+                // optional copies, each only tried if the one before matched: split a, end; a; split b, end; b...
+                List<Integer> splits = new ArrayList<Integer>();
+                for (int i = min; i < max; i++) {
+                    splits.add(program.emit(SPLIT, 0, 0, null, false));
+                    node.emit(program);
+                }
+                for (int split : splits) {
+                    setSplit(program, split, split + 1, program.size());
+                }
+            }
+        }
+
+        private void setSplit(@NotNull Program program, int split, int body, int end) {
+            if (greedy) {
+                program.setArgs(split, body, end);
+            } else {
+                program.setArgs(split, end, body);
+            }
+        }
+    }
+
+    /**
+     * Set of chars: items (ranges, maybe negated) joined, maybe negated
+     */
+    private static final class CharClass {
+        private static final char[] WORD = new char[]{'a', 'z', 'A', 'Z', '_', '_', '0', '9'};
+        private static final char[] DIGIT = new char[]{'0', '9'};
+        private static final char[] SPACE = new char[]{' ', ' ', '\t', '\r'};
+        private static final char[] LINE_TERMINATORS = new char[]{'\n', '\n', '\r', '\r', '\u0085', '\u0085', '\u2028', '\u2029'};
+
+        private final List<char[]> ranges = new ArrayList<char[]>();
+        private final List<Boolean> negatedRanges = new ArrayList<Boolean>();
+        private boolean negated;
+
+        @NotNull
+        private static CharClass of(@NotNull char[] ranges, boolean negated) {
+            CharClass result = new CharClass();
+            result.add(ranges, negated);
+            return result;
+        }
+
+        private void add(@NotNull char[] itemRanges, boolean itemNegated) {
+            ranges.add(itemRanges);
+            negatedRanges.add(itemNegated);
+        }
+
+        /**
+         * (?i) without UNICODE_CASE only folds US-ASCII
+         */
+        private boolean matches(char c, boolean caseInsensitive) {
+            boolean result = contains(c);
+            if (!result && caseInsensitive && c < 128 && Character.isLetter(c)) {
+                result = contains(Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+            }
+            return result != negated;
+        }
+
+        private boolean contains(char c) {
+            for (int i = 0; i < ranges.size(); i++) {
+                char[] itemRanges = ranges.get(i);
+                boolean inRanges = false;
+                for (int j = 0; j < itemRanges.length && !inRanges; j += 2) {
+                    inRanges = c >= itemRanges[j] && c <= itemRanges[j + 1];
+                }
+                if (inRanges != negatedRanges.get(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Recursive descent parser of java.util.regex syntax (supported subset)
+     */
+    private static final class Parser {
+        @NotNull
+        private final String regex;
+        private int cursor;
+        private int groupCount;
+        private boolean caseInsensitive;
+
+        private Parser(@NotNull String regex) {
+            this.regex = regex;
+        }
+
+        @NotNull
+        private Node parse() throws UnsupportedExpressionException {
+            Node result = parseAlternation();
+            if (cursor < regex.length()) {
+                throw new UnsupportedExpressionException(); // unbalanced ')'
+            }
+            return result;
+        }
+
+        @NotNull
+        private Node parseAlternation() throws UnsupportedExpressionException {
+            AlternationNode result = new AlternationNode();
+            result.nodes.add(parseSequence());
+            while (cursor < regex.length() && regex.charAt(cursor) == '|') {
+                cursor++;
+                result.nodes.add(parseSequence());
+            }
+            return result.nodes.size() == 1 ? result.nodes.get(0) : result;
+        }
+
+        @NotNull
+        private Node parseSequence() throws UnsupportedExpressionException {
+            SequenceNode result = new SequenceNode();
+            while (cursor < regex.length() && regex.charAt(cursor) != '|' && regex.charAt(cursor) != ')') {
+                if (regex.startsWith("\\Q", cursor)) {
+                    parseQuote(result);
+                    continue;
+                }
+                Node atom = parseAtom();
+                if (atom == null) {
+                    continue; // flags
+                }
+                while (cursor < regex.length() && "?*+{".indexOf(regex.charAt(cursor)) >= 0) {
+                    if (atom instanceof AssertNode) {
+                        throw new UnsupportedExpressionException();
+                    }
+                    atom = parseQuantifier(atom);
+                }
+                result.nodes.add(atom);
+            }
+            return result;
+        }
+
+        /**
+         * \Q..\E: all chars literal (a quantifier applies to the last one)
+         */
+        private void parseQuote(@NotNull SequenceNode result) {
+            cursor += 2;
+            int end = regex.indexOf("\\E", cursor);
+            if (end < 0) {
+                end = regex.length();
+            }
+            for (int i = cursor; i < end; i++) {
+                char c = regex.charAt(i);
+                result.nodes.add(new CharNode(CharClass.of(new char[]{c, c}, false), caseInsensitive));
+            }
+            cursor = Math.min(end + 2, regex.length());
+        }
+
+        /**
+         * @return atom, null if flags were set
+         */
+        @Nullable
+        private Node parseAtom() throws UnsupportedExpressionException {
+            char c = regex.charAt(cursor);
+            switch (c) {
+                case '(':
+                    return parseGroup();
+                case '[':
+                    return new CharNode(parseCharClass(), caseInsensitive);
+                case '.':
+                    cursor++;
+                    return new CharNode(CharClass.of(CharClass.LINE_TERMINATORS, true), false);
+                case '^':
+                    cursor++;
+                    return new AssertNode(BEGIN);
+                case '$':
+                    cursor++;
+                    return new AssertNode(END);
+                case '\\':
+                    return new CharNode(parseEscape(), caseInsensitive);
+                default:
+                    if ("?*+{".indexOf(c) >= 0) {
+                        throw new UnsupportedExpressionException(); // dangling quantifier
+                    }
+                    cursor++;
+                    return new CharNode(CharClass.of(new char[]{c, c}, false), caseInsensitive);
+            }
+        }
+
+        @Nullable
+        private Node parseGroup() throws UnsupportedExpressionException {
+            boolean outerCaseInsensitive = caseInsensitive;
+            int index = 0;
+            if (regex.startsWith("(?:", cursor)) {
+                cursor += 3;
+            } else if (regex.startsWith("(?i)", cursor) || regex.startsWith("(?-i)", cursor)) {
+                // flag for the rest of the enclosing group
+                caseInsensitive = regex.charAt(cursor + 2) == 'i';
+                cursor += caseInsensitive ? 4 : 5;
+                return null;
+            } else if (regex.startsWith("(?i:", cursor) || regex.startsWith("(?-i:", cursor)) {
+                caseInsensitive = regex.charAt(cursor + 2) == 'i';
+                cursor += caseInsensitive ? 4 : 5;
+            } else if (regex.startsWith("(?", cursor)) {
+                throw new UnsupportedExpressionException(); // lookarounds, atomic and named groups, other flags
+            } else {
+                cursor++;
+                index = ++groupCount;
+            }
+            Node node = parseAlternation();
+            if (cursor >= regex.length() || regex.charAt(cursor) != ')') {
+                throw new UnsupportedExpressionException();
+            }
+            cursor++;
+            caseInsensitive = outerCaseInsensitive;
+            return index > 0 ? new GroupNode(node, index) : node;
+        }
+
+        @NotNull
+        private Node parseQuantifier(@NotNull Node atom) throws UnsupportedExpressionException {
+            char c = regex.charAt(cursor++);
+            int min;
+            int max;
+            if (c == '?') {
+                min = 0;
+                max = 1;
+            } else if (c == '*') {
+                min = 0;
+                max = -1;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+            } else {
+                int end = regex.indexOf('}', cursor);
+                if (end < 0) {
+                    throw new UnsupportedExpressionException();
+                }
+                String[] bounds = regex.substring(cursor, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].length() == 0 ? -1 : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    throw new UnsupportedExpressionException();
+                }
+                if (bounds.length > 2 || (max >= 0 && max < min)) {
+                    throw new UnsupportedExpressionException();
+                }
+                cursor = end + 1;
+            }
+            boolean greedy = true;
+            if (cursor < regex.length()) {
+                if (regex.charAt(cursor) == '+') {
+                    throw new UnsupportedExpressionException(); // possessive
+                }
+                if (regex.charAt(cursor) == '?') {
+                    greedy = false;
+                    cursor++;
+                }
+            }
+            return new RepeatNode(atom, min, max, greedy);
+        }
+
+        @NotNull
+        private CharClass parseCharClass() throws UnsupportedExpressionException {
+            cursor++; // [
+            CharClass result = new CharClass();
+            if (cursor < regex.length() && regex.charAt(cursor) == '^') {
+                result.negated = true;
+                cursor++;
+            }
+            boolean first = true;
+            while (true) {
+                if (cursor >= regex.length()) {
+                    throw new UnsupportedExpressionException();
+                }
+                char c = regex.charAt(cursor);
+                if (c == ']' && !first) {
+                    cursor++;
+                    return result;
+                }
+                if (c == '[' || c == ']' || regex.startsWith("&&", cursor)) {
+                    throw new UnsupportedExpressionException(); // unions, intersections
+                }
+                first = false;
+                if (c == '\\') {
+                    CharClass escape = parseEscape();
+                    result.add(escape.ranges.get(0), escape.negatedRanges.get(0));
+                    continue;
+                }
+                cursor++;
+                char to = c;
+                if (cursor + 1 < regex.length() && regex.charAt(cursor) == '-' && regex.charAt(cursor + 1) != ']') {
+                    to = regex.charAt(cursor + 1);
+                    if (to == '\\' || to == '[' || to < c) {
+                        throw new UnsupportedExpressionException();
+                    }
+                    cursor += 2;
+                }
+                result.add(new char[]{c, to}, false);
+            }
+        }
+
+        @NotNull
+        private CharClass parseEscape() throws UnsupportedExpressionException {
+            if (cursor + 1 >= regex.length()) {
+                throw new UnsupportedExpressionException();
+            }
+            char c = regex.charAt(cursor + 1);
+            cursor += 2;
+            switch (c) {
+                case 'w':
+                case 'W':
+                    return CharClass.of(CharClass.WORD, c == 'W');
+                case 'd':
+                case 'D':
+                    return CharClass.of(CharClass.DIGIT, c == 'D');
+                case 's':
+                case 'S':
+                    return CharClass.of(CharClass.SPACE, c == 'S');
+                case 't':
+                    return literal('\t');
+                case 'n':
+                    return literal('\n');
+                case 'r':
+                    return literal('\r');
+                case 'f':
+                    return literal('\f');
+                case 'a':
+                    return literal('\u0007');
+                case 'e':
+                    return literal('\u001B');
+                case 'x':
+                    return literal(parseHex(2));
+                case 'u':
+                    return literal(parseHex(4));
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw new UnsupportedExpressionException(); // \b, \A, \p, \1, \0 etc.
+                    }
+                    return literal(c);
+            }
+        }
+
+        private char parseHex(int digits) throws UnsupportedExpressionException {
+            if (cursor + digits > regex.length()) {
+                throw new UnsupportedExpressionException();
+            }
+            try {
+                char result = (char) Integer.parseInt(regex.substring(cursor, cursor + digits), 16);
+                cursor += digits;
+                return result;
+            } catch (NumberFormatException e) {
+                throw new UnsupportedExpressionException(); // ex: \x{h..h}
+            }
+        }
+
+        @NotNull
+        private static CharClass literal(char c) {
+            return CharClass.of(new char[]{c, c}, false);
+        }
+    }
+
+    /**
+     * Expression needs java.util.regex
+     */
+    private static final class UnsupportedExpressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Match part of a template rule (ex: <code>${name}Test.${ext}</code>), which is evaluated by string slicing instead
+ * of a regex. <code>${name}</code> is any non-empty text, <code>${ext}</code> the extension after the last '.' (only at
+ * end of template), all other text is literal. Replacements are {@link Generator}s (ex: <code>${name}.${ext}</code>).
+ * <br>
+ * Simple regex rules like <code>^(.*?)Test\.java$</code> -> <code>$1.java</code> are converted to templates too, see
+ * {@link #fromRegex(String)} and {@link Generator#fromReplacement(String, int)}.
+ */
+public final class AlternateNameTemplate {
+    static final int NAME = 0;
+    static final int EXT = 1;
+    private static final String[] VARIABLES = new String[]{"${name}", "${ext}"};
+    /**
+     * unescaped meta characters of a regex
+     */
+    private static final String REGEX_META = "\\^$.|?*+()[]{}";
+    private static final String[] REGEX_GROUPS = new String[]{"(.*?)", "(.*)", "(.+?)", "(.+)"};
+
+    @NotNull
+    private final String prefix;
+    @NotNull
+    private final String suffix;
+    private final boolean hasName;
+    private final int minNameLength;
+    private final boolean hasExt;
+
+    private AlternateNameTemplate(@NotNull String prefix, @NotNull String suffix, boolean hasName, int minNameLength, boolean hasExt) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.hasName = hasName;
+        this.minNameLength = minNameLength;
+        this.hasExt = hasExt;
+    }
+
+    /**
+     * @return true, if expression is a template: it contains <code>${name}</code> or <code>${ext}</code> and is no
+     * valid regex (outside of a character class such a variable is an illegal repetition). A regex like
+     * <code>[${]</code> stays a regex.
+     */
+    public static boolean isTemplate(@NotNull String expression) {
+        if (!expression.contains(VARIABLES[NAME]) && !expression.contains(VARIABLES[EXT])) {
+            return false;
+        }
+        try {
+            Pattern.compile(expression);
+            return false;
+        } catch (PatternSyntaxException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return template of matchExpression (template or regex), null if regex can't be converted
+     */
+    @Nullable
+    public static AlternateNameTemplate compile(@NotNull String matchExpression) {
+        return isTemplate(matchExpression) ? parse(matchExpression) : fromRegex(matchExpression);
+    }
+
+    /**
+     * @return ErrorText or null if ok
+     */
+    @Nullable
+    public static String validate(@NotNull String matchTemplate, @NotNull String generateTemplate) {
+        AlternateNameTemplate template;
+        try {
+            template = parse(matchTemplate);
+        } catch (IllegalArgumentException e) {
+            return "Match Expression: " + e.getMessage();
+        }
+        if (generateTemplate.length() == 0) {
+            return "Replace Expression: required for template";
+        }
+        try {
+            Generator.parse(generateTemplate, template);
+        } catch (IllegalArgumentException e) {
+            return "Replace Expression: " + e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if template is illegal (message is shown to user)
+     */
+    @NotNull
+    static AlternateNameTemplate parse(@NotNull String template) throws IllegalArgumentException {
+        List<String> literals = new ArrayList<String>();
+        List<Integer> variables = new ArrayList<Integer>();
+        tokenize(template, literals, variables);
+        int nameIndex = variables.indexOf(NAME);
+        int extIndex = variables.indexOf(EXT);
+        if (nameIndex != variables.lastIndexOf(NAME) || extIndex != variables.lastIndexOf(EXT)) {
+            throw new IllegalArgumentException("Variables may be used only once");
+        }
+        if (extIndex >= 0 && (extIndex != variables.size() - 1 || literals.get(extIndex + 1).length() > 0 || !literals.get(extIndex).endsWith("."))) {
+            throw new IllegalArgumentException("${ext} only at end, after a '.'");
+        }
+        if (nameIndex < 0) {
+            return new AlternateNameTemplate(literals.get(0), "", false, 0, extIndex >= 0);
+        }
+        return new AlternateNameTemplate(literals.get(0), literals.get(1), true, 1, extIndex >= 0);
+    }
+
+    /**
+     * Split template into literals and variables: literal, variable, literal, ..., literal
+     */
+    private static void tokenize(@NotNull String template, @NotNull List<String> literals, @NotNull List<Integer> variables) throws IllegalArgumentException {
+        int start = 0;
+        int index;
+        while ((index = template.indexOf("${", start)) >= 0) {
+            int end = template.indexOf('}', index);
+            if (end < 0) {
+                throw new IllegalArgumentException("Missing '}'");
+            }
+            String variable = template.substring(index, end + 1);
+            int variableIndex = VARIABLES[NAME].equals(variable) ? NAME : VARIABLES[EXT].equals(variable) ? EXT : -1;
+            if (variableIndex < 0) {
+                throw new IllegalArgumentException("Unknown variable " + variable + " (only ${name} and ${ext})");
+            }
+            literals.add(template.substring(start, index));
+            variables.add(variableIndex);
+            start = end + 1;
+        }
+        literals.add(template.substring(start));
+    }
+
+    /**
+     * Converts regex of form <code>^literal(.*?)literal$</code> (group may be <code>(.*)</code>, <code>(.+?)</code> or
+     * <code>(.+)</code> or missing). Both anchors are required: without them replaceAll also replaces parts of a
+     * filename (ex: the trailing empty match of <code>(.*)</code>).
+     *
+     * @return template matching same filenames (group 1 is ${name}), null if regex has another form
+     */
+    @Nullable
+    static AlternateNameTemplate fromRegex(@NotNull String regex) {
+        if (!regex.startsWith("^")) {
+            return null;
+        }
+        int[] cursor = new int[]{1};
+        String prefix = readRegexLiteral(regex, cursor);
+        boolean hasName = false;
+        int minNameLength = 0;
+        for (String group : REGEX_GROUPS) {
+            if (regex.startsWith(group, cursor[0])) {
+                hasName = true;
+                minNameLength = group.contains("+") ? 1 : 0;
+                cursor[0] += group.length();
+                break;
+            }
+        }
+        String suffix = hasName ? readRegexLiteral(regex, cursor) : "";
+        boolean anchored = cursor[0] == regex.length() - 1 && regex.charAt(cursor[0]) == '$';
+        return anchored ? new AlternateNameTemplate(prefix, suffix, hasName, minNameLength, false) : null;
+    }
+
+    /**
+     * Read literal chars (and escaped non-alphanumeric chars) starting at cursor[0]
+     */
+    @NotNull
+    private static String readRegexLiteral(@NotNull String regex, @NotNull int[] cursor) {
+        StringBuilder sb = new StringBuilder();
+        int i = cursor[0];
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                    break; // \d, \w, \Q etc.
+                }
+                sb.append(regex.charAt(i + 1));
+                i += 2;
+            } else if (REGEX_META.indexOf(c) >= 0) {
+                break;
+            } else {
+                sb.append(c);
+                i++;
+            }
+        }
+        cursor[0] = i;
+        return sb.toString();
+    }
+
+    /**
+     * @return true, if template defines variable ({@link #NAME} or {@link #EXT})
+     */
+    boolean hasVariable(int variable) {
+        return variable == NAME ? hasName : hasExt;
+    }
+
+    /**
+     * @return literal text every matching filename ends with ("" if unknown)
+     */
+    @NotNull
+    String getLiteralSuffix() {
+        return hasExt ? "" : hasName ? suffix : prefix;
+    }
+
+    /**
+     * @return values of variables (by {@link #NAME}, {@link #EXT}, "" if not defined), null if filename does not
+     * match
+     */
+    @Nullable
+    public String[] match(@NotNull String filename) {
+        int end = filename.length();
+        String ext = "";
+        if (hasExt) {
+            int index = filename.lastIndexOf('.');
+            if (index < 0 || index == end - 1) {
+                return null;
+            }
+            ext = filename.substring(index + 1);
+            end = index + 1;
+        }
+        if (!hasName) {
+            return end == prefix.length() && filename.startsWith(prefix) ? new String[]{"", ext} : null;
+        }
+        int nameEnd = end - suffix.length();
+        if (nameEnd - prefix.length() < minNameLength || !filename.startsWith(prefix) || !filename.startsWith(suffix, nameEnd)) {
+            return null;
+        }
+        return new String[]{filename.substring(prefix.length(), nameEnd), ext};
+    }
+
+    /**
+     * Symbolic {@link #match(String)} of all filenames template matches: values are lists of literal Strings and
+     * variables of template ({@link #NAME}, {@link #EXT} as Integer).
+     *
+     * @return our values (by {@link #NAME}, {@link #EXT}), null if we don't match all filenames template matches (or
+     * we can't tell)
+     */
+    @Nullable
+    List<Object>[] matchAll(@NotNull AlternateNameTemplate template) {
+        if (hasExt != template.hasExt) {
+            return null;
+        }
+        List<Object> ext = Arrays.<Object>asList(hasExt ? EXT : "");
+        if (!hasName) {
+            return !template.hasName && prefix.equals(template.prefix) ? values(Arrays.<Object>asList(""), ext) : null;
+        }
+        if (!template.hasName) {
+            String literal = template.prefix;
+            if (literal.length() - prefix.length() - suffix.length() < minNameLength || !literal.startsWith(prefix) || !literal.endsWith(suffix)) {
+                return null;
+            }
+            return values(Arrays.<Object>asList(literal.substring(prefix.length(), literal.length() - suffix.length())), ext);
+        }
+        // name of template is surrounded by the rest of its literals
+        if (!template.prefix.startsWith(prefix) || !template.suffix.endsWith(suffix)) {
+            return null;
+        }
+        String before = template.prefix.substring(prefix.length());
+        String after = template.suffix.substring(0, template.suffix.length() - suffix.length());
+        if (before.length() + template.minNameLength + after.length() < minNameLength) {
+            return null;
+        }
+        return values(Arrays.<Object>asList(before, NAME, after), ext);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @NotNull
+    private static List<Object>[] values(@NotNull List<Object> name, @NotNull List<Object> ext) {
+        return new List[]{name, ext};
+    }
+
+    /**
+     * Generate part of a template rule: literals and variables concatenated
+     */
+    public static final class Generator {
+        /**
+         * one more than variables
+         */
+        @NotNull
+        private final String[] literals;
+        @NotNull
+        private final int[] variables;
+
+        private Generator(@NotNull List<String> literals, @NotNull List<Integer> variables) {
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.variables = new int[variables.size()];
+            for (int i = 0; i < this.variables.length; i++) {
+                this.variables[i] = variables.get(i);
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException if template is illegal or uses a variable not defined by matchTemplate
+         */
+        @NotNull
+        static Generator parse(@NotNull String template, @NotNull AlternateNameTemplate matchTemplate) throws IllegalArgumentException {
+            List<String> literals = new ArrayList<String>();
+            List<Integer> variables = new ArrayList<Integer>();
+            tokenize(template, literals, variables);
+            for (int variable : variables) {
+                if (!matchTemplate.hasVariable(variable)) {
+                    throw new IllegalArgumentException(VARIABLES[variable] + " is not defined by Match Expression");
+                }
+            }
+            return new Generator(literals, variables);
+        }
+
+        /**
+         * Converts a regex replacement, which only uses group 1 (derived from
+         * {@link java.util.regex.Matcher#appendReplacement}).
+         *
+         * @param groupCount    groups of match expression
+         * @return generator, null if replacement references other groups
+         */
+        @Nullable
+        static Generator fromReplacement(@NotNull String replacement, int groupCount) {
+            List<String> literals = new ArrayList<String>();
+            List<Integer> variables = new ArrayList<Integer>();
+            StringBuilder sb = new StringBuilder();
+            int cursor = 0;
+            while (cursor < replacement.length()) {
+                char c = replacement.charAt(cursor++);
+                if (c == '\\') {
+                    if (cursor >= replacement.length()) {
+                        return null;
+                    }
+                    sb.append(replacement.charAt(cursor++));
+                } else if (c == '$') {
+                    if (cursor >= replacement.length() || !isDigit(replacement.charAt(cursor))) {
+                        return null;
+                    }
+                    int refNum = replacement.charAt(cursor++) - '0';
+                    while (cursor < replacement.length() && isDigit(replacement.charAt(cursor))) {
+                        int newRefNum = refNum * 10 + replacement.charAt(cursor) - '0';
+                        if (groupCount < newRefNum) {
+                            break;
+                        }
+                        refNum = newRefNum;
+                        cursor++;
+                    }
+                    if (refNum != 1 || groupCount != 1) {
+                        return null; // whole filename or unknown group
+                    }
+                    literals.add(sb.toString());
+                    variables.add(NAME);
+                    sb.setLength(0);
+                } else {
+                    sb.append(c);
+                }
+            }
+            literals.add(sb.toString());
+            return new Generator(literals, variables);
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        /**
+         * @param values    result of {@link AlternateNameTemplate#matchAll(AlternateNameTemplate)}
+         * @return generated literals and variables (adjacent literals joined, no empty literals)
+         */
+        @NotNull
+        List<Object> generateAll(@NotNull List<Object>[] values) {
+            List<Object> result = new ArrayList<Object>();
+            StringBuilder sb = new StringBuilder(literals[0]);
+            for (int i = 0; i < variables.length; i++) {
+                for (Object value : values[variables[i]]) {
+                    if (value instanceof String) {
+                        sb.append(value);
+                    } else {
+                        if (sb.length() > 0) {
+                            result.add(sb.toString());
+                            sb.setLength(0);
+                        }
+                        result.add(value);
+                    }
+                }
+                sb.append(literals[i + 1]);
+            }
+            if (sb.length() > 0) {
+                result.add(sb.toString());
+            }
+            return result;
+        }
+
+        /**
+         * @param values    result of {@link AlternateNameTemplate#match(String)}
+         */
+        @NotNull
+        public String generate(@NotNull String[] values) {
+            StringBuilder sb = new StringBuilder(literals[0]);
+            for (int i = 0; i < variables.length; i++) {
+                sb.append(values[variables[i]]).append(literals[i + 1]);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Guards all regex evaluations of our matchers. Each evaluation has its own budget of steps (reads of the input, see
+ * {@link StepBudgetCharSequence}). An expression which exceeds it several times is disabled until the configuration
+ * changes (see {@link #enableAll()}) and reported once (see {@link #pollNewlyDisabled()}).
+ */
+public final class AlternateRegexGuard {
+    /**
+     * max steps of a single regex evaluation (a filename needs some hundreds)
+     */
+    static final int MAX_STEPS = 1000000;
+    /**
+     * an expression is disabled after this many timeouts
+     */
+    static final int MAX_TIMEOUTS = 3;
+
+    private static final Map<String, Integer> timeoutCounts = new HashMap<String, Integer>();
+    private static final Set<String> disabledExpressions = new HashSet<String>();
+    private static final List<String> newlyDisabledExpressions = new ArrayList<String>();
+
+    /**
+     * only static methods
+     */
+    private AlternateRegexGuard() {
+    }
+
+    /**
+     * @return Matcher for input which throws {@link RegexTimeoutException} if the evaluation takes too many steps. Use
+     * a new Matcher for each evaluation (ex: matches and replaceAll), each gets its own budget.
+     */
+    @NotNull
+    public static Matcher matcher(@NotNull Pattern pattern, @NotNull CharSequence input) {
+        return pattern.matcher(new StepBudgetCharSequence(input, MAX_STEPS));
+    }
+
+    /**
+     * @return true, if expression was disabled
+     */
+    public static boolean isDisabled(@NotNull String expression) {
+        synchronized (disabledExpressions) {
+            return disabledExpressions.contains(expression);
+        }
+    }
+
+    /**
+     * An evaluation of expression timed out: disable it if this happened MAX_TIMEOUTS times
+     */
+    public static void reportTimeout(@NotNull String expression) {
+        synchronized (disabledExpressions) {
+            Integer count = timeoutCounts.get(expression);
+            count = count == null ? 1 : count + 1;
+            timeoutCounts.put(expression, count);
+            if (count >= MAX_TIMEOUTS && disabledExpressions.add(expression)) {
+                newlyDisabledExpressions.add(expression);
+            }
+        }
+    }
+
+    /**
+     * Enable all expressions again and forget their timeouts (configuration has changed)
+     */
+    public static void enableAll() {
+        synchronized (disabledExpressions) {
+            timeoutCounts.clear();
+            disabledExpressions.clear();
+            newlyDisabledExpressions.clear();
+        }
+    }
+    /**
+     * @return all expressions disabled since last call (to report them to the user)
+     */
+    @NotNull
+    public static List<String> pollNewlyDisabled() {
+        synchronized (disabledExpressions) {
+            List<String> result = new ArrayList<String>(newlyDisabledExpressions);
+            newlyDisabledExpressions.clear();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds literals which every match of a regex must contain (ex: <code>^(?:Test)?(Foo)Impl\.java$</code> ->
+ * <code>Foo</code>, <code>Impl.java</code>). The analysis is conservative: optional parts, alternations, classes and
+ * lookarounds just end a literal, so the result may be incomplete (or empty), but every literal is really required.
+ */
+public final class AlternateRequiredLiterals {
+    /**
+     * only static methods
+     */
+    private AlternateRequiredLiterals() {
+    }
+
+    /**
+     * @return literals every match of regex contains (maybe empty). Inline flags are not evaluated, so compare them
+     * ignoring case.
+     */
+    @NotNull
+    public static List<String> get(@NotNull String regex) {
+        Parser parser = new Parser(regex);
+        try {
+            List<String> result = parser.parseAlternation();
+            return parser.position == regex.length() && !parser.comments ? result : new ArrayList<String>();
+        } catch (IndexOutOfBoundsException e) {
+            return new ArrayList<String>(); // incomplete regex
+        }
+    }
+
+    private static final class Parser {
+        @NotNull
+        private final String regex;
+        private int position;
+        /**
+         * whitespace and comments are ignored in regex (?x) -> we can't tell
+         */
+        private boolean comments;
+
+        private Parser(@NotNull String regex) {
+            this.regex = regex;
+        }
+
+        /**
+         * Parse until end of regex or end of group
+         *
+         * @return required literals (none if there is an alternation)
+         */
+        @NotNull
+        private List<String> parseAlternation() {
+            List<String> result = parseSequence();
+            boolean alternation = false;
+            while (position < regex.length() && regex.charAt(position) == '|') {
+                position++;
+                parseSequence();
+                alternation = true;
+            }
+            return alternation ? new ArrayList<String>() : result;
+        }
+
+        @NotNull
+        private List<String> parseSequence() {
+            List<String> result = new ArrayList<String>();
+            StringBuilder literal = new StringBuilder();
+            while (position < regex.length()) {
+                char c = regex.charAt(position);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+                int literalLength = literal.length();
+                List<String> elementLiterals = null; // literals of a group
+                boolean literalElement = false;
+                if (c == '\\') {
+                    char next = regex.charAt(position + 1);
+                    if (next == 'Q') {
+                        int end = regex.indexOf("\\E", position + 2);
+                        if (end < 0) {
+                            end = regex.length();
+                        }
+                        String quoted = regex.substring(position + 2, end);
+                        position = Math.min(end + 2, regex.length());
+                        if (quoted.length() > 0) {
+                            // a quantifier applies to the last char only
+                            literal.append(quoted, 0, quoted.length() - 1);
+                            literalLength = literal.length();
+                            literal.append(quoted.charAt(quoted.length() - 1));
+                            literalElement = true;
+                        }
+                    } else if (Character.isLetterOrDigit(next)) {
+                        position += 2; // class (\d), boundary (\b), back reference (\1) etc.
+                        skipEscapeArguments(next);
+                    } else {
+                        literal.append(next);
+                        literalElement = true;
+                        position += 2;
+                    }
+                } else if (c == '(') {
+                    elementLiterals = parseGroup();
+                } else if (c == '[') {
+                    skipClass();
+                } else if (c == '.' || c == '^' || c == '$') {
+                    position++;
+                } else if (c == '*' || c == '+' || c == '?' || c == '{') {
+                    return new ArrayList<String>(); // dangling quantifier -> invalid
+                } else {
+                    literal.append(c);
+                    literalElement = true;
+                    position++;
+                }
+                // quantifier
+                Quantifier quantifier = parseQuantifier();
+                if (quantifier != Quantifier.ONE) {
+                    if (quantifier == Quantifier.OPTIONAL && literalElement) {
+                        literal.setLength(literalLength);
+                    }
+                    if (quantifier == Quantifier.OPTIONAL) {
+                        elementLiterals = null;
+                    }
+                    literalElement = false;
+                }
+                if (!literalElement) {
+                    add(result, literal);
+                }
+                if (elementLiterals != null) {
+                    result.addAll(elementLiterals);
+                }
+            }
+            add(result, literal);
+            return result;
+        }
+
+        /**
+         * @return literals of group (null if it matches nothing, ex: a lookaround or inline flags)
+         */
+        private List<String> parseGroup() {
+            position++; // (
+            boolean required = true;
+            if (regex.charAt(position) == '?') {
+                position++;
+                char c = regex.charAt(position);
+                if (c == ':' || c == '>') {
+                    position++;
+                } else if (c == '=' || c == '!') {
+                    position++;
+                    required = false;
+                } else if (c == '<' && (regex.charAt(position + 1) == '=' || regex.charAt(position + 1) == '!')) {
+                    position += 2;
+                    required = false;
+                } else if (c == '<') {
+                    position = indexOf('>') + 1; // named group
+                } else {
+                    // inline flags: (?i) or (?i:...)
+                    int start = position;
+                    while (Character.isLetter(regex.charAt(position)) || regex.charAt(position) == '-') {
+                        position++;
+                    }
+                    String flags = regex.substring(start, position);
+                    int minus = flags.indexOf('-');
+                    if ((minus < 0 ? flags : flags.substring(0, minus)).indexOf('x') >= 0) {
+                        comments = true;
+                    }
+                    if (regex.charAt(position) == ')') {
+                        position++;
+                        return null;
+                    }
+                    position++; // :
+                }
+            }
+            List<String> result = parseAlternation();
+            position++; // )
+            return required ? result : null;
+        }
+
+        private void skipClass() {
+            position++; // [
+            if (regex.charAt(position) == '^') {
+                position++;
+            }
+            if (regex.charAt(position) == ']') {
+                position++; // ] as first char is a literal
+            }
+            while (regex.charAt(position) != ']') {
+                char c = regex.charAt(position);
+                if (c == '\\') {
+                    position += 2;
+                } else if (c == '[') {
+                    skipClass(); // union/intersection
+                } else {
+                    position++;
+                }
+            }
+            position++; // ]
+        }
+
+        /**
+         * Skip what follows an escape (ex: <code>41</code> of <code>\x41</code>), so it is not taken as literal
+         */
+        private void skipEscapeArguments(char escape) {
+            if (escape == 'p' || escape == 'P' || escape == 'x') {
+                if (regex.charAt(position) == '{') {
+                    position = indexOf('}') + 1;
+                } else {
+                    position += escape == 'x' ? 2 : 1;
+                }
+            } else if (escape == 'u') {
+                position += 4;
+            } else if (escape == 'c') {
+                position++;
+            } else if (escape == 'k') {
+                position = indexOf('>') + 1;
+            } else if (Character.isDigit(escape)) {
+                // octal or back reference (we don't know how many digits belong to it)
+                while (position < regex.length() && Character.isDigit(regex.charAt(position))) {
+                    position++;
+                }
+            }
+        }
+
+        private int indexOf(char c) {
+            int index = regex.indexOf(c, position);
+            if (index < 0) {
+                throw new StringIndexOutOfBoundsException(position);
+            }
+            return index;
+        }
+
+        @NotNull
+        private Quantifier parseQuantifier() {
+            if (position >= regex.length()) {
+                return Quantifier.ONE;
+            }
+            Quantifier result;
+            char c = regex.charAt(position);
+            if (c == '?' || c == '*') {
+                position++;
+                result = Quantifier.OPTIONAL;
+            } else if (c == '+') {
+                position++;
+                result = Quantifier.REPEATED;
+            } else if (c == '{') {
+                int end = indexOf('}');
+                String min = regex.substring(position + 1, end).split(",", -1)[0].trim();
+                position = end + 1;
+                result = min.equals("0") || min.length() == 0 ? Quantifier.OPTIONAL : Quantifier.REPEATED;
+            } else {
+                return Quantifier.ONE;
+            }
+            // reluctant or possessive
+            if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+                position++;
+            }
+            return result;
+        }
+
+        private static void add(@NotNull List<String> result, @NotNull StringBuilder literal) {
+            if (literal.length() > 0) {
+                result.add(literal.toString());
+                literal.setLength(0);
+            }
+        }
+    }
+
+    private static enum Quantifier {
+        ONE, OPTIONAL, REPEATED
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateFreeRegexItem;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+
+/**
+ * Evaluates single rules against a list of filenames to find expensive or useless rules.
+ */
+public final class AlternateRuleProfiler {
+    /**
+     * only static methods
+     */
+    private AlternateRuleProfiler() {
+    }
+
+    /**
+     * Evaluate item against all filenames as a lookup does (sliced like a template if it can be converted, by the
+     * engine configuration selects otherwise)
+     *
+     * @param configuration edited configuration (for engine settings)
+     */
+    @NotNull
+    public static AlternateRuleStatistic profile(@NotNull AlternateFreeRegexItem item, @NotNull AlternateConfiguration configuration,
+                                                 @NotNull Collection<String> filenames, @NotNull CancelCheck cancelCheck) {
+        AlternateRuleStatistic statistic = new AlternateRuleStatistic();
+        AlternateFreeRegexRuleSet.Rule rule = AlternateFreeRegexRuleSet.createRule(item);
+        if (rule == null) {
+            return statistic;
+        }
+        for (String filename : filenames) {
+            cancelCheck.checkCanceled();
+            long start = System.nanoTime();
+            try {
+                statistic.record(rule.apply(filename, configuration.linearRegexEngine) != null, System.nanoTime() - start);
+            } catch (RegexTimeoutException e) {
+                statistic.recordTimeout(System.nanoTime() - start);
+            }
+        }
+        return statistic;
+    }
+
+    /**
+     * Evaluate item against all filenames by the pattern {@link AlternateGenericRegexFileMatcher} uses with this item
+     * alone. It hits a filename, if the name found differs from the one found without any item.
+     *
+     * @param configuration edited configuration (for engine settings)
+     */
+    @NotNull
+    public static AlternateRuleStatistic profile(@NotNull AlternateGenericPrefixPostfixRegexItem item, @NotNull AlternateConfiguration configuration,
+                                                 @NotNull AlternateFileExtensionProvider extensionProvider, @NotNull Collection<String> filenames,
+                                                 @NotNull CancelCheck cancelCheck) {
+        AlternateConfiguration itemConfiguration = new AlternateConfiguration();
+        itemConfiguration.linearRegexEngine = configuration.linearRegexEngine;
+        itemConfiguration.genericPrefixRegexItems.clear();
+        itemConfiguration.genericPostfixRegexItems.clear();
+        AlternateGenericRegexFileMatcher.NameFinder noItemNameFinder = new AlternateGenericRegexFileMatcher.NameFinder(itemConfiguration, extensionProvider);
+        if (item.type == AlternateGenericPrefixPostfixRegexItem.GenericType.PREFIX) {
+            itemConfiguration.genericPrefixRegexItems.add(item);
+        } else {
+            itemConfiguration.genericPostfixRegexItems.add(item);
+        }
+        AlternateGenericRegexFileMatcher.NameFinder nameFinder = new AlternateGenericRegexFileMatcher.NameFinder(itemConfiguration, extensionProvider);
+        AlternateRuleStatistic statistic = new AlternateRuleStatistic();
+        for (String filename : filenames) {
+            cancelCheck.checkCanceled();
+            String noItemName;
+            try {
+                noItemName = noItemNameFinder.findName(filename);
+            } catch (RegexTimeoutException e) {
+                noItemName = "";
+            }
+            long start = System.nanoTime();
+            try {
+                String name = nameFinder.findName(filename);
+                statistic.record(name.length() > 0 && !name.equals(noItemName), System.nanoTime() - start);
+            } catch (RegexTimeoutException e) {
+                statistic.recordTimeout(System.nanoTime() - start);
+            }
+        }
+        return statistic;
+    }
+
+    /**
+     * Lets the caller cancel profiling (checked before each filename)
+     */
+    public static interface CancelCheck {
+        /**
+         * @throws RuntimeException to cancel (ex: a ProcessCanceledException)
+         */
+        void checkCanceled();
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a {@link AlternateFreeRegexRuleSet.Selector} class for a rule set: straight-line
+ * <code>endsWith</code> tests of the literal suffixes (dispatched by file extension, like the interpreter), so the
+ * JIT can inline the whole selection. Class file version 49 (Java 5), so we need no stack map frames. Each class is
+ * defined in its own class loader, and so is unloaded together with its rule set.
+ */
+final class AlternateRuleSelectorGenerator {
+    private static final String SELECTOR = "altn8/filematcher/AlternateFreeRegexRuleSet$Selector";
+    private static final String SELECT_DESCRIPTOR = "(Ljava/lang/String;[Laltn8/filematcher/AlternateFreeRegexRuleSet$Rule;Ljava/util/List;)V";
+    private static final AtomicInteger classCount = new AtomicInteger();
+
+    private final Map<String, Integer> constants = new HashMap<String, Integer>();
+    private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+    private final DataOutputStream constantPoolOut = new DataOutputStream(constantPool);
+    private int constantCount = 1;
+
+    /**
+     * only used by {@link #generate(List)}
+     */
+    private AlternateRuleSelectorGenerator() {
+    }
+
+    /**
+     * @param literalSuffixes literal suffix of each rule (index in rules passed to
+     *                        {@link AlternateFreeRegexRuleSet.Selector#select(String, AlternateFreeRegexRuleSet.Rule[], List)})
+     * @return selector or null if it can't be generated (ex: to many rules, class loaders are restricted)
+     */
+    @Nullable
+    static AlternateFreeRegexRuleSet.Selector generate(@NotNull List<String> literalSuffixes) {
+        String className = "altn8/filematcher/AlternateGeneratedRuleSelector" + classCount.incrementAndGet();
+        try {
+            byte[] classFile = new AlternateRuleSelectorGenerator().createClassFile(className, literalSuffixes);
+            Class<?> selectorClass = new SelectorClassLoader().define(className.replace('/', '.'), classFile);
+            return (AlternateFreeRegexRuleSet.Selector) selectorClass.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            return null;
+        } catch (LinkageError e) {
+            return null;
+        }
+    }
+
+    @NotNull
+    private byte[] createClassFile(@NotNull String className, @NotNull List<String> literalSuffixes) throws IOException {
+        // indexes of rules per extension (in order of rules) and of rules without extension
+        Map<String, List<Integer>> rulesByExtension = new LinkedHashMap<String, List<Integer>>();
+        List<Integer> otherRules = new ArrayList<Integer>();
+        for (int i = 0; i < literalSuffixes.size(); i++) {
+            String literalSuffix = literalSuffixes.get(i);
+            int index = literalSuffix.lastIndexOf('.');
+            if (index >= 0) {
+                String extension = literalSuffix.substring(index + 1);
+                List<Integer> list = rulesByExtension.get(extension);
+                if (list == null) {
+                    list = new ArrayList<Integer>();
+                    rulesByExtension.put(extension, list);
+                }
+                list.add(i);
+            } else {
+                otherRules.add(i);
+            }
+        }
+
+        // select(String filename, Rule[] rules, List result): locals 1..3
+        Code select = new Code();
+        List<Integer> jumpsToOtherRules = new ArrayList<Integer>();
+        for (Map.Entry<String, List<Integer>> entry : rulesByExtension.entrySet()) {
+            // a filename has one extension -> if it ends with ".ext", no other extension can match
+            int skipExtension = select.endsWith("." + entry.getKey());
+            for (int rule : entry.getValue()) {
+                addRule(select, rule, literalSuffixes.get(rule));
+            }
+            jumpsToOtherRules.add(select.branch(Code.GOTO));
+            select.bind(skipExtension);
+        }
+        for (int jump : jumpsToOtherRules) {
+            select.bind(jump);
+        }
+        for (int rule : otherRules) {
+            addRule(select, rule, literalSuffixes.get(rule));
+        }
+        select.u1(Code.RETURN);
+
+        // <init>: super()
+        Code init = new Code();
+        init.u1(Code.ALOAD_0);
+        init.u1(Code.INVOKESPECIAL).u2(methodRef(Code.METHODREF, "java/lang/Object", "<init>", "()V"));
+        init.u1(Code.RETURN);
+
+        // resolve all constants before writing the pool
+        int thisClass = classRef(className);
+        int superClass = classRef("java/lang/Object");
+        int selectorInterface = classRef(SELECTOR);
+        int initName = utf8("<init>");
+        int initDescriptor = utf8("()V");
+        int selectName = utf8("select");
+        int selectDescriptor = utf8(SELECT_DESCRIPTOR);
+        int codeName = utf8("Code");
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(49);
+        out.writeShort(constantCount);
+        constantPoolOut.flush();
+        constantPool.writeTo(out);
+        out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(selectorInterface);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, initName, initDescriptor, codeName, init, 1, 1);
+        writeMethod(out, selectName, selectDescriptor, codeName, select, 3, 4);
+        out.writeShort(0); // attributes
+        out.flush();
+        return result.toByteArray();
+    }
+
+    /**
+     * Add rules[rule] to result if filename ends with literalSuffix
+     */
+    private void addRule(@NotNull Code code, int rule, @NotNull String literalSuffix) throws IOException {
+        int skipRule = literalSuffix.length() > 0 ? code.endsWith(literalSuffix) : -1;
+        code.u1(Code.ALOAD_3);
+        code.u1(Code.ALOAD_2);
+        code.pushInt(rule);
+        code.u1(Code.AALOAD);
+        code.u1(Code.INVOKEINTERFACE).u2(methodRef(Code.INTERFACE_METHODREF, "java/util/List", "add", "(Ljava/lang/Object;)Z")).u1(2).u1(0);
+        code.u1(Code.POP);
+        if (skipRule >= 0) {
+            code.bind(skipRule);
+        }
+    }
+
+    private static void writeMethod(@NotNull DataOutputStream out, int name, int descriptor, int codeName, @NotNull Code code,
+                                    int maxStack, int maxLocals) throws IOException {
+        out.writeShort(0x0001); // public
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeName);
+        out.writeInt(12 + code.size);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.size);
+        out.write(code.bytes, 0, code.size);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // attributes
+    }
+
+    private int utf8(@NotNull String value) throws IOException {
+        Integer index = constants.get("U" + value);
+        if (index == null) {
+            constantPoolOut.writeByte(1);
+            constantPoolOut.writeUTF(value);
+            index = add("U" + value);
+        }
+        return index;
+    }
+
+    private int string(@NotNull String value) throws IOException {
+        Integer index = constants.get("S" + value);
+        if (index == null) {
+            int utf8 = utf8(value);
+            constantPoolOut.writeByte(8);
+            constantPoolOut.writeShort(utf8);
+            index = add("S" + value);
+        }
+        return index;
+    }
+
+    private int classRef(@NotNull String internalName) throws IOException {
+        Integer index = constants.get("C" + internalName);
+        if (index == null) {
+            int utf8 = utf8(internalName);
+            constantPoolOut.writeByte(7);
+            constantPoolOut.writeShort(utf8);
+            index = add("C" + internalName);
+        }
+        return index;
+    }
+
+    private int methodRef(int tag, @NotNull String owner, @NotNull String name, @NotNull String descriptor) throws IOException {
+        String key = "M" + tag + owner + '.' + name + descriptor;
+        Integer index = constants.get(key);
+        if (index == null) {
+            int classRef = classRef(owner);
+            int nameUtf8 = utf8(name);
+            int descriptorUtf8 = utf8(descriptor);
+            constantPoolOut.writeByte(12);
+            constantPoolOut.writeShort(nameUtf8);
+            constantPoolOut.writeShort(descriptorUtf8);
+            int nameAndType = add("N" + key);
+            constantPoolOut.writeByte(tag);
+            constantPoolOut.writeShort(classRef);
+            constantPoolOut.writeShort(nameAndType);
+            index = add(key);
+        }
+        return index;
+    }
+
+    private int add(@NotNull String key) {
+        if (constantCount >= 0xFFFF) {
+            throw new IllegalStateException("constant pool overflow");
+        }
+        int index = constantCount++;
+        constants.put(key, index);
+        return index;
+    }
+
+    /**
+     * Bytecode of a method
+     */
+    private final class Code {
+        private static final int ALOAD_0 = 0x2a;
+        private static final int ALOAD_1 = 0x2b;
+        private static final int ALOAD_2 = 0x2c;
+        private static final int ALOAD_3 = 0x2d;
+        private static final int AALOAD = 0x32;
+        private static final int POP = 0x57;
+        private static final int IFEQ = 0x99;
+        private static final int GOTO = 0xa7;
+        private static final int RETURN = 0xb1;
+        private static final int INVOKEVIRTUAL = 0xb6;
+        private static final int INVOKESPECIAL = 0xb7;
+        private static final int INVOKEINTERFACE = 0xb9;
+        private static final int LDC_W = 0x13;
+        private static final int BIPUSH = 0x10;
+        private static final int SIPUSH = 0x11;
+        private static final int METHODREF = 10;
+        private static final int INTERFACE_METHODREF = 11;
+
+        private byte[] bytes = new byte[256];
+        private int size;
+
+        @NotNull
+        private Code u1(int value) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, size * 2);
+            }
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        @NotNull
+        private Code u2(int value) {
+            return u1(value >> 8).u1(value);
+        }
+
+        private void pushInt(int value) {
+            if (value <= 5) {
+                u1(0x03 + value); // iconst_<n>
+            } else if (value <= Byte.MAX_VALUE) {
+                u1(BIPUSH).u1(value);
+            } else if (value <= Short.MAX_VALUE) {
+                u1(SIPUSH).u2(value);
+            } else {
+                throw new IllegalStateException("to many rules");
+            }
+        }
+
+        /**
+         * if (!filename.endsWith(suffix)) goto (returned branch)
+         */
+        private int endsWith(@NotNull String suffix) throws IOException {
+            u1(ALOAD_1);
+            u1(LDC_W).u2(string(suffix));
+            u1(INVOKEVIRTUAL).u2(methodRef(METHODREF, "java/lang/String", "endsWith", "(Ljava/lang/String;)Z"));
+            return branch(IFEQ);
+        }
+
+        /**
+         * @return position of branch instruction (target is set by {@link #bind(int)})
+         */
+        private int branch(int opcode) {
+            int position = size;
+            u1(opcode).u2(0);
+            return position;
+        }
+
+        /**
+         * Set target of branch to current position
+         */
+        private void bind(int branch) {
+            int offset = size - branch;
+            if (offset > Short.MAX_VALUE) {
+                throw new IllegalStateException("method to large");
+            }
+            bytes[branch + 1] = (byte) (offset >> 8);
+            bytes[branch + 2] = (byte) offset;
+        }
+    }
+
+    /**
+     * Defines one generated class
+     */
+    private static final class SelectorClassLoader extends ClassLoader {
+        private SelectorClassLoader() {
+            super(AlternateFreeRegexRuleSet.Selector.class.getClassLoader());
+        }
+
+        @NotNull
+        private Class<?> define(@NotNull String name, @NotNull byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
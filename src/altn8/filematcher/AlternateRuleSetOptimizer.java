@@ -0,0 +1,205 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateFreeRegexItem;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes items which can't change a lookup result:
+ * <ul>
+ * <li>free regex items which are duplicates or covered by another item (all filenames they generate are generated by
+ * the other item too). Only items convertible to templates are compared (see {@link AlternateNameTemplate}).</li>
+ * <li>free regex items which generate no findable filename (empty or containing a '/').</li>
+ * <li>generic items which are empty.</li>
+ * </ul>
+ * Duplicate generic items are only reported: they strip a repeated affix (ex: 'FooTestTest' -> 'Foo'), so removing
+ * them would change the result. Items with errors are kept (they are skipped anyway). Same match expressions are
+ * merged by {@link AlternateFreeRegexRuleSet}.
+ */
+public final class AlternateRuleSetOptimizer {
+    /**
+     * only static methods
+     */
+    private AlternateRuleSetOptimizer() {
+    }
+
+    /**
+     * @return findings of all items of configuration (empty if there is nothing to optimize)
+     */
+    @NotNull
+    public static List<String> analyze(@NotNull AlternateConfiguration configuration) {
+        List<String> findings = new ArrayList<String>();
+        minimizeGenericItems(configuration.genericPrefixRegexItems, findings, "Generic prefix");
+        minimizeGenericItems(configuration.genericPostfixRegexItems, findings, "Generic postfix");
+        minimizeFreeRegexItems(configuration.freeRegexItems, findings, "Free regex");
+        return findings;
+    }
+
+    /**
+     * @return items without the removed ones (same order)
+     */
+    @NotNull
+    public static List<AlternateFreeRegexItem> minimizeFreeRegexItems(@NotNull List<AlternateFreeRegexItem> items) {
+        return minimizeFreeRegexItems(items, null, "");
+    }
+
+    /**
+     * @param findings  to add a text for each removed item, null if not needed
+     * @param label     of items in findings
+     * @return items without the removed ones (same order)
+     */
+    @NotNull
+    private static List<AlternateFreeRegexItem> minimizeFreeRegexItems(@NotNull List<AlternateFreeRegexItem> items, @Nullable List<String> findings, @NotNull String label) {
+        int size = items.size();
+        AlternateNameTemplate[] templates = new AlternateNameTemplate[size];
+        AlternateNameTemplate.Generator[] generators = new AlternateNameTemplate.Generator[size];
+        for (int i = 0; i < size; i++) {
+            AlternateFreeRegexItem item = items.get(i);
+            if (!item.hasError()) {
+                templates[i] = AlternateNameTemplate.compile(item.matchExpression);
+                if (templates[i] != null) {
+                    generators[i] = AlternateNameTemplate.isTemplate(item.matchExpression) ? AlternateNameTemplate.Generator.parse(item.replaceExpression, templates[i]) :
+                            AlternateNameTemplate.Generator.fromReplacement(item.replaceExpression, templates[i].hasVariable(AlternateNameTemplate.NAME) ? 1 : 0);
+                }
+            }
+        }
+
+        boolean[] removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            AlternateFreeRegexItem item = items.get(i);
+            if (item.hasError()) {
+                continue;
+            }
+            String finding = null;
+            if (generators[i] == null ? item.replaceExpression.indexOf('/') >= 0 : isDead(templates[i], generators[i])) {
+                finding = "generates no filename which can be found";
+            } else {
+                for (int j = 0; j < size && finding == null; j++) {
+                    if (j != i && !removed[j] && !items.get(j).hasError()) {
+                        if (item.equals(items.get(j))) {
+                            finding = j < i ? "duplicate of row " + (j + 1) : null;
+                        } else if (generators[i] != null && generators[j] != null && covers(j, i, templates, generators)
+                                && (j < i || !covers(i, j, templates, generators))) {
+                            // covered, but if both cover each other (same result), the first one is kept
+                            finding = "covered by row " + (j + 1) + " (" + items.get(j).matchExpression + " -> " + items.get(j).replaceExpression + ")";
+                        }
+                    }
+                }
+            }
+            if (finding != null) {
+                removed[i] = true;
+                if (findings != null) {
+                    findings.add(label + " row " + (i + 1) + " (" + item.matchExpression + " -> " + item.replaceExpression + "): " + finding);
+                }
+            }
+        }
+        return keep(items, removed);
+    }
+
+    /**
+     * @return true, if all filenames item i generates are generated by item j too (for filenames both match)
+     */
+    private static boolean covers(int j, int i, @NotNull AlternateNameTemplate[] templates, @NotNull AlternateNameTemplate.Generator[] generators) {
+        List<Object>[] values = templates[j].matchAll(templates[i]);
+        List<Object>[] ownValues = templates[i].matchAll(templates[i]);
+        //noinspection ConstantConditions (template always matches all its filenames)
+        return values != null && generators[j].generateAll(values).equals(generators[i].generateAll(ownValues));
+    }
+
+    /**
+     * @return true, if template can't match a filename or generates only names no file can have
+     */
+    private static boolean isDead(@NotNull AlternateNameTemplate template, @NotNull AlternateNameTemplate.Generator generator) {
+        List<Object>[] values = template.matchAll(template);
+        //noinspection ConstantConditions
+        if (containsSlash(values[AlternateNameTemplate.NAME]) || containsSlash(values[AlternateNameTemplate.EXT])) {
+            return true;
+        }
+        List<Object> generated = generator.generateAll(values);
+        return generated.isEmpty() || containsSlash(generated);
+    }
+
+    private static boolean containsSlash(@NotNull List<Object> values) {
+        for (Object value : values) {
+            if (value instanceof String && ((String) value).indexOf('/') >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return items without the removed ones (same order)
+     */
+    @NotNull
+    public static List<AlternateGenericPrefixPostfixRegexItem> minimizeGenericItems(@NotNull List<AlternateGenericPrefixPostfixRegexItem> items) {
+        return minimizeGenericItems(items, null, "");
+    }
+
+    /**
+     * @param findings  to add a text for each removed or duplicate item, null if not needed
+     * @param label     of items in findings
+     * @return items without the removed ones (same order)
+     */
+    @NotNull
+    private static List<AlternateGenericPrefixPostfixRegexItem> minimizeGenericItems(@NotNull List<AlternateGenericPrefixPostfixRegexItem> items, @Nullable List<String> findings, @NotNull String label) {
+        int size = items.size();
+        boolean[] removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            AlternateGenericPrefixPostfixRegexItem item = items.get(i);
+            if (item.hasError()) {
+                continue;
+            }
+            String finding = null;
+            if (item.expression.length() == 0) {
+                finding = "empty expression";
+                removed[i] = true;
+            } else {
+                for (int j = 0; j < i && finding == null; j++) {
+                    AlternateGenericPrefixPostfixRegexItem other = items.get(j);
+                    if (!removed[j] && !other.hasError() && other.expression.equals(item.expression) && other.grouping == item.grouping) {
+                        // kept: only strips a repeated affix
+                        finding = "duplicate of row " + (j + 1) + " (kept, only strips the affix a second time)";
+                    }
+                }
+            }
+            if (finding != null) {
+                if (findings != null) {
+                    findings.add(label + " row " + (i + 1) + " (" + item.expression + "): " + finding);
+                }
+            }
+        }
+        return keep(items, removed);
+    }
+
+    @NotNull
+    private static <T> List<T> keep(@NotNull List<T> items, @NotNull boolean[] removed) {
+        List<T> result = new ArrayList<T>(items.size());
+        for (int i = 0; i < removed.length; i++) {
+            if (!removed[i]) {
+                result.add(items.get(i));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+/**
+ * Evaluations, hits, timeouts and consumed time of a single rule.
+ */
+public final class AlternateRuleStatistic {
+    public long evaluations;
+    public long hits;
+    /**
+     * evaluations which were aborted by {@link AlternateRegexGuard} (neither hit nor miss)
+     */
+    public long timeouts;
+    public long nanos;
+
+    /**
+     * Record a single evaluation
+     */
+    public void record(boolean hit, long nanos) {
+        evaluations++;
+        if (hit) {
+            hits++;
+        }
+        this.nanos += nanos;
+    }
+
+    /**
+     * Record a single evaluation which timed out
+     */
+    public void recordTimeout(long nanos) {
+        evaluations++;
+        timeouts++;
+        this.nanos += nanos;
+    }
+
+    /**
+     * @return hits / evaluations (0 if never evaluated)
+     */
+    public double getHitRate() {
+        return evaluations == 0 ? 0 : (double) hits / evaluations;
+    }
+
+    /**
+     * @return average nanos per evaluation (0 if never evaluated)
+     */
+    public double getAverageNanos() {
+        return evaluations == 0 ? 0 : (double) nanos / evaluations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "AlternateRuleStatistic{" +
+                "evaluations=" + evaluations +
+                ", hits=" + hits +
+                ", timeouts=" + timeouts +
+                ", nanos=" + nanos +
+                '}';
+    }
+}
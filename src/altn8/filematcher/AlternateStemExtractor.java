@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts all names a filename may have regarding to generic prefix/postfix items (ex: <code>TestFooImpl.java</code>
+ * -> <code>testfooimpl</code>, <code>testfoo</code>, <code>fooimpl</code>, <code>foo</code>, ...). A file can only be
+ * matched by a {@link AlternateGenericRegexFileMatcher} if the matcher's name is one of its stems, so an index of
+ * stems gives us all candidates of a generic lookup.
+ */
+public final class AlternateStemExtractor {
+    private static final Pattern BACKREFERENCE = Pattern.compile("(?<!\\\\)(?:\\\\\\\\)*\\\\[1-9]");
+
+    private final Pattern prefixPattern;
+    private final Pattern postfixPattern;
+    private final String guardExpression;
+    private final List<String> prefixExpressions;
+    private final List<String> postfixExpressions;
+    private final String fileExtensionPattern;
+
+    public AlternateStemExtractor(@NotNull AlternateConfiguration configuration, @NotNull AlternateFileExtensionProvider extensionProvider) {
+        // same items as AlternateGenericRegexFileMatcher
+        List<AlternateGenericPrefixPostfixRegexItem> prefixItems = AlternateRuleSetOptimizer.minimizeGenericItems(configuration.genericPrefixRegexItems);
+        List<AlternateGenericPrefixPostfixRegexItem> postfixItems = AlternateRuleSetOptimizer.minimizeGenericItems(configuration.genericPostfixRegexItems);
+        AlternateGenericRegexFileMatcher.GenRegex prefixGenRegex = AlternateGenericRegexFileMatcher.createRegexPattern(prefixItems);
+        AlternateGenericRegexFileMatcher.GenRegex postfixGenRegex = AlternateGenericRegexFileMatcher.createRegexPattern(postfixItems);
+        prefixExpressions = getExpressions(prefixItems);
+        postfixExpressions = getExpressions(postfixItems);
+        fileExtensionPattern = AlternateGenericRegexFileMatcher.createFileExtensionPattern(extensionProvider);
+        String postfix = postfixGenRegex.pattern + "(?:\\.(?:" + fileExtensionPattern + "))?";
+        prefixPattern = Pattern.compile(prefixGenRegex.pattern);
+        postfixPattern = Pattern.compile(postfix);
+        guardExpression = createGuardExpression(prefixGenRegex, postfix);
+    }
+
+    /**
+     * @return identifies the configuration stems are extracted with (stems of another fingerprint are not comparable)
+     */
+    @NotNull
+    public String getFingerprint() {
+        return guardExpression;
+    }
+
+    /**
+     * @return same expression as in AlternateGenericRegexFileMatcher, so a timeout disables both
+     */
+    @NotNull
+    private static String createGuardExpression(@NotNull AlternateGenericRegexFileMatcher.GenRegex prefixGenRegex, @NotNull String postfix) {
+        return "^" + prefixGenRegex.pattern + "(\\w+?)" + postfix + "$";
+    }
+
+    /**
+     * @return expressions of items without error (only these are used)
+     */
+    @NotNull
+    private static List<String> getExpressions(@NotNull List<AlternateGenericPrefixPostfixRegexItem> items) {
+        List<String> result = new ArrayList<String>();
+        for (AlternateGenericPrefixPostfixRegexItem item : items) {
+            if (!item.hasError()) {
+                result.add(item.expression);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compare with the extractor of the previous configuration: stems of a filename can only differ if an added or
+     * removed item matches somewhere in it (an item which never matches is always skipped as optional group).
+     *
+     * @return expressions of added and removed items (compiled), null if stems of all filenames may differ
+     */
+    @Nullable
+    public List<Pattern> diff(@NotNull AlternateStemExtractor previous) {
+        if (!fileExtensionPattern.equals(previous.fileExtensionPattern)) {
+            return null;
+        }
+        List<String> expressions = new ArrayList<String>();
+        addChangedExpressions(expressions, previous.prefixExpressions, prefixExpressions);
+        addChangedExpressions(expressions, previous.postfixExpressions, postfixExpressions);
+        List<Pattern> result = new ArrayList<Pattern>();
+        for (String expression : expressions) {
+            // a backreference refers to group numbers, which depend on all items before
+            if (BACKREFERENCE.matcher(expression).find()) {
+                return null;
+            }
+            result.add(Pattern.compile(expression));
+        }
+        return result;
+    }
+
+    /**
+     * Add expressions which are not part of the longest common subsequence of oldExpressions and newExpressions
+     * (-> added, removed or moved items)
+     */
+    static void addChangedExpressions(@NotNull List<String> result, @NotNull List<String> oldExpressions, @NotNull List<String> newExpressions) {
+        int oldSize = oldExpressions.size();
+        int newSize = newExpressions.size();
+        // lcs[i][j]: length of longest common subsequence of oldExpressions[i..] and newExpressions[j..]
+        int[][] lcs = new int[oldSize + 1][newSize + 1];
+        for (int i = oldSize - 1; i >= 0; i--) {
+            for (int j = newSize - 1; j >= 0; j--) {
+                lcs[i][j] = oldExpressions.get(i).equals(newExpressions.get(j)) ? lcs[i + 1][j + 1] + 1 : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+        int i = 0;
+        int j = 0;
+        while (i < oldSize || j < newSize) {
+            if (i < oldSize && j < newSize && oldExpressions.get(i).equals(newExpressions.get(j))) {
+                i++;
+                j++;
+            } else if (j < newSize && (i == oldSize || lcs[i][j + 1] >= lcs[i + 1][j])) {
+                result.add(newExpressions.get(j++)); // added
+            } else {
+                result.add(oldExpressions.get(i++)); // removed
+            }
+        }
+    }
+
+    /**
+     * @return all stems of filename (lowercase, empty if there is none), null if they are unknown (generic regex
+     * timed out or is disabled)
+     */
+    @Nullable
+    public Set<String> getStems(@NotNull String filename) {
+        if (AlternateRegexGuard.isDisabled(guardExpression)) {
+            return null;
+        }
+        Set<String> result = new HashSet<String>();
+        try {
+            int length = filename.length();
+            // positions where a name may start (prefix ends) and where it may end (postfix starts)
+            // transparent bounds, so lookarounds (ex: 'I(?=[A-Z])') see the name
+            List<Integer> starts = new ArrayList<Integer>();
+            Matcher prefixMatcher = AlternateRegexGuard.matcher(prefixPattern, filename).useTransparentBounds(true);
+            for (int i = 0; i < length; i++) {
+                if (prefixMatcher.region(0, i).matches()) {
+                    starts.add(i);
+                }
+            }
+            List<Integer> ends = new ArrayList<Integer>();
+            Matcher postfixMatcher = AlternateRegexGuard.matcher(postfixPattern, filename).useTransparentBounds(true);
+            for (int i = 1; i <= length; i++) {
+                if (postfixMatcher.region(i, length).matches()) {
+                    ends.add(i);
+                }
+            }
+            // name is (\w+?) between
+            for (int start : starts) {
+                int wordEnd = start;
+                while (wordEnd < length && isWordChar(filename.charAt(wordEnd))) {
+                    wordEnd++;
+                }
+                for (int end : ends) {
+                    if (end > start && end <= wordEnd) {
+                        result.add(filename.substring(start, end).toLowerCase(Locale.ENGLISH));
+                    }
+                }
+            }
+        } catch (RegexTimeoutException e) {
+            AlternateRegexGuard.reportTimeout(guardExpression);
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * @return true, if c is matched by <code>\w</code>
+     */
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * CharSequence which aborts a running regex as soon as its budget of steps is used up. java.util.regex reads the
+ * input only via {@link #charAt(int)}, so each read is a step and a runaway backtracking match will run into
+ * {@link RegexTimeoutException}. Unlike a deadline, the budget doesn't depend on machine load (ex: GC, indexing).
+ */
+final class StepBudgetCharSequence implements CharSequence {
+    private final CharSequence delegate;
+    private final int[] remainingSteps; // shared with subSequences
+
+    StepBudgetCharSequence(@NotNull CharSequence delegate, int maxSteps) {
+        this(delegate, new int[]{maxSteps});
+    }
+
+    private StepBudgetCharSequence(@NotNull CharSequence delegate, int[] remainingSteps) {
+        this.delegate = delegate;
+        this.remainingSteps = remainingSteps;
+    }
+
+    public int length() {
+        return delegate.length();
+    }
+
+    public char charAt(int index) {
+        if (--remainingSteps[0] < 0) {
+            throw new RegexTimeoutException();
+        }
+        return delegate.charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return new StepBudgetCharSequence(delegate.subSequence(start, end), remainingSteps);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @NotNull
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
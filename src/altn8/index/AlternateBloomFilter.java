@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bloom filter of names: tells if a name is certainly not present without any lookup (about 1% false positives up to
+ * its capacity). Like every Bloom filter it can't remove names, so removed names are only counted and the owner
+ * should rebuild the filter if {@link #needsRebuild()} (also if it got more names than its capacity).
+ */
+public final class AlternateBloomFilter {
+    private static final int BITS_PER_NAME = 10;
+    private static final int HASH_COUNT = 7;
+
+    @NotNull
+    private final long[] bits;
+    private final long bitCount;
+    private final int capacity;
+    private int count;
+    private int removed;
+
+    /**
+     * @param capacity number of names up to which we have about 1% false positives
+     */
+    public AlternateBloomFilter(int capacity) {
+        this.capacity = Math.max(capacity, 64);
+        bits = new long[(int) (((long) this.capacity * BITS_PER_NAME + 63) / 64)];
+        bitCount = bits.length * 64L;
+    }
+
+    public void add(@NotNull String name) {
+        long hash = hash(name);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = ((hash1 + i * hash2) & 0xFFFFFFFFL) % bitCount;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        count++;
+    }
+
+    /**
+     * @return false if name was never added, true if it was (or by chance)
+     */
+    public boolean mightContain(@NotNull String name) {
+        long hash = hash(name);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_COUNT; i++) {
+            long bit = ((hash1 + i * hash2) & 0xFFFFFFFFL) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Only counts removed names (see class comment)
+     */
+    public void remove(@NotNull String name) {
+        removed++;
+    }
+
+    /**
+     * @return true, if filter has more names than its capacity, or most of its names are removed ones
+     */
+    public boolean needsRebuild() {
+        return count > capacity || (removed > 1000 && removed * 2 > count);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return estimated heap size in bytes
+     */
+    public long estimateHeapSize() {
+        return 32 + 16 + 8L * bits.length;
+    }
+
+    /**
+     * @return 64 bit hash of name (FNV-1a with a final mix)
+     */
+    private static long hash(@NotNull String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            hash ^= name.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
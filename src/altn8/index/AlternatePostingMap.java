@@ -0,0 +1,289 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Map of String keys to sets of int ids (VFS file ids), specialized for a huge number of small sets: each key and its
+ * ids are stored together in one byte array (key length, UTF-8 key, ids sorted and delta-compressed as varints), in an
+ * open addressing table. So an entry costs about the size of its key instead of a String, a List and a map entry.
+ */
+public final class AlternatePostingMap {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int[] NO_IDS = new int[0];
+
+    private byte[][] entries = new byte[16][];
+    private int[] hashes = new int[16];
+    private int size;
+    /**
+     * sum of heap size of all entries
+     */
+    private long entriesHeapSize;
+
+    /**
+     * @return true, if id was added (false if already present)
+     */
+    public boolean add(@NotNull String key, int id) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int hash = hash(keyBytes);
+        int slot = findSlot(keyBytes, hash);
+        byte[] entry = entries[slot];
+        if (entry == null) {
+            setEntry(slot, hash, encode(keyBytes, new int[]{id}, 1));
+            size++;
+            if (size * 4 > entries.length * 3) {
+                resize(entries.length * 2);
+            }
+            return true;
+        }
+        int[] ids = decodeIds(entry);
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        int[] newIds = new int[ids.length + 1];
+        System.arraycopy(ids, 0, newIds, 0, index);
+        newIds[index] = id;
+        System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+        setEntry(slot, hash, encode(keyBytes, newIds, newIds.length));
+        return true;
+    }
+
+    /**
+     * @return true, if id was removed (false if not present)
+     */
+    public boolean remove(@NotNull String key, int id) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        int hash = hash(keyBytes);
+        int slot = findSlot(keyBytes, hash);
+        byte[] entry = entries[slot];
+        if (entry == null) {
+            return false;
+        }
+        int[] ids = decodeIds(entry);
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return false;
+        }
+        if (ids.length == 1) {
+            removeSlot(slot);
+        } else {
+            System.arraycopy(ids, index + 1, ids, index, ids.length - index - 1);
+            setEntry(slot, hash, encode(keyBytes, ids, ids.length - 1));
+        }
+        return true;
+    }
+
+    /**
+     * @return sorted ids of key (empty if none)
+     */
+    @NotNull
+    public int[] get(@NotNull String key) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        byte[] entry = entries[findSlot(keyBytes, hash(keyBytes))];
+        return entry == null ? NO_IDS : decodeIds(entry);
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        entries = new byte[16][];
+        hashes = new int[16];
+        size = 0;
+        entriesHeapSize = 0;
+    }
+
+    /**
+     * @return estimated heap size in bytes (64 bit JVM with compressed oops)
+     */
+    public long estimateHeapSize() {
+        return entriesHeapSize + arrayHeapSize(4L * entries.length) + arrayHeapSize(4L * hashes.length);
+    }
+
+    /**
+     * Visit all keys with their ids (map must not be changed while visiting)
+     */
+    public void visit(@NotNull Visitor visitor) {
+        for (byte[] entry : entries) {
+            if (entry != null) {
+                visitor.visit(decodeKey(entry), decodeIds(entry));
+            }
+        }
+    }
+
+    public static interface Visitor {
+        void visit(@NotNull String key, @NotNull int[] ids);
+    }
+
+    private static int hash(@NotNull byte[] keyBytes) {
+        int hash = Arrays.hashCode(keyBytes);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return slot of key or empty slot where key belongs to
+     */
+    private int findSlot(@NotNull byte[] keyBytes, int hash) {
+        int mask = entries.length - 1;
+        int slot = hash & mask;
+        while (entries[slot] != null && (hashes[slot] != hash || !keyEquals(entries[slot], keyBytes))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void setEntry(int slot, int hash, @NotNull byte[] entry) {
+        if (entries[slot] != null) {
+            entriesHeapSize -= arrayHeapSize(entries[slot].length);
+        }
+        entries[slot] = entry;
+        hashes[slot] = hash;
+        entriesHeapSize += arrayHeapSize(entry.length);
+    }
+
+    /**
+     * Remove entry of slot and move following entries back (linear probing without tombstones)
+     */
+    private void removeSlot(int slot) {
+        int mask = entries.length - 1;
+        entriesHeapSize -= arrayHeapSize(entries[slot].length);
+        entries[slot] = null;
+        size--;
+        int next = (slot + 1) & mask;
+        while (entries[next] != null) {
+            int home = hashes[next] & mask;
+            // move entry if its home is not in (slot, next]
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                entries[slot] = entries[next];
+                hashes[slot] = hashes[next];
+                entries[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void resize(int capacity) {
+        byte[][] oldEntries = entries;
+        int[] oldHashes = hashes;
+        entries = new byte[capacity][];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (entries[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                entries[slot] = oldEntries[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    private static long arrayHeapSize(long length) {
+        return (16 + length + 7) & ~7L;
+    }
+
+    // entry encoding
+
+    @NotNull
+    private static byte[] encode(@NotNull byte[] keyBytes, @NotNull int[] ids, int count) {
+        byte[] buffer = new byte[5 + keyBytes.length + 5 * count];
+        int position = writeVarInt(buffer, 0, keyBytes.length);
+        System.arraycopy(keyBytes, 0, buffer, position, keyBytes.length);
+        position += keyBytes.length;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            position = writeVarInt(buffer, position, ids[i] - previous);
+            previous = ids[i];
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private static boolean keyEquals(@NotNull byte[] entry, @NotNull byte[] keyBytes) {
+        int[] position = {0};
+        int length = readVarInt(entry, position);
+        if (length != keyBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (entry[position[0] + i] != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private static String decodeKey(@NotNull byte[] entry) {
+        int[] position = {0};
+        int length = readVarInt(entry, position);
+        return new String(entry, position[0], length, UTF_8);
+    }
+
+    @NotNull
+    private static int[] decodeIds(@NotNull byte[] entry) {
+        int[] position = {0};
+        int keyLength = readVarInt(entry, position);
+        position[0] += keyLength;
+        // count ids (each varint ends with a byte without continuation bit)
+        int count = 0;
+        for (int i = position[0]; i < entry.length; i++) {
+            if (entry[i] >= 0) {
+                count++;
+            }
+        }
+        int[] ids = new int[count];
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            previous += readVarInt(entry, position);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    private static int writeVarInt(@NotNull byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarInt(@NotNull byte[] buffer, @NotNull int[] position) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[position[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Radix tree (compressed trie) of String keys to sets of int ids (VFS file ids, must be positive), supporting exact
+ * and prefix lookups in time of the key length. A reversed tree stores keys backwards, so suffix lookups are the fast
+ * ones (the other kind still works, but visits all keys).<br>
+ * Nodes are kept in parallel int arrays and all edge labels (UTF-8) in one byte array, so keys with a common prefix
+ * share it and a node costs 20 bytes plus its label. A single id is stored in the node, more ids as a delta-compressed
+ * varint list.
+ */
+public final class AlternateRadixTree {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int[] NO_IDS = new int[0];
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    private final boolean reversed;
+
+    // nodes
+    private int[] labelOffsets;
+    private int[] labelLengths;
+    private int[] firstChildren;
+    private int[] nextSiblings;
+    /**
+     * 0: no key ends here, > 0: single id, < 0: -(index + 1) into idLists
+     */
+    private int[] nodeIds;
+    private int nodeCount;
+    /**
+     * first free node (linked by nextSiblings)
+     */
+    private int freeNode;
+
+    // labels
+    private byte[] labels;
+    private int labelsLength;
+    /**
+     * bytes of labels no longer used by any node
+     */
+    private int labelsGarbage;
+
+    // id lists
+    private byte[][] idLists;
+    private int idListCount;
+    private int[] freeIdLists;
+    private int freeIdListCount;
+    private long idListsHeapSize;
+
+    private int size;
+
+    public AlternateRadixTree(boolean reversed) {
+        this.reversed = reversed;
+        clear();
+    }
+
+    /**
+     * @return true, if keys are stored backwards (fast suffix lookups)
+     */
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * @return true, if id was added (false if already present)
+     */
+    public boolean add(@NotNull String key, int id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id must be positive: " + id);
+        }
+        byte[] keyBytes = toBytes(key);
+        int node = ROOT;
+        int position = 0;
+        while (position < keyBytes.length) {
+            int previous = NONE;
+            int child = firstChildren[node];
+            while (child != NONE && labels[labelOffsets[child]] != keyBytes[position]) {
+                previous = child;
+                child = nextSiblings[child];
+            }
+            if (child == NONE) {
+                // new leaf
+                int leaf = newNode(addLabel(keyBytes, position, keyBytes.length - position));
+                labelLengths[leaf] = keyBytes.length - position;
+                nextSiblings[leaf] = firstChildren[node];
+                firstChildren[node] = leaf;
+                node = leaf;
+                break;
+            }
+            int common = commonLength(child, keyBytes, position);
+            if (common < labelLengths[child]) {
+                // split child: node -> middle -> child
+                int middle = newNode(labelOffsets[child]);
+                labelLengths[middle] = common;
+                labelOffsets[child] += common;
+                labelLengths[child] -= common;
+                replaceChild(node, previous, child, middle);
+                firstChildren[middle] = child;
+                nextSiblings[child] = NONE;
+                child = middle;
+            }
+            node = child;
+            position += common;
+        }
+        return addId(node, id);
+    }
+
+    /**
+     * @return true, if id was removed (false if not present)
+     */
+    public boolean remove(@NotNull String key, int id) {
+        byte[] keyBytes = toBytes(key);
+        // path of nodes (and their previous siblings) from root
+        int[] path = new int[keyBytes.length + 1];
+        int[] previousSiblings = new int[keyBytes.length + 1];
+        int depth = 0;
+        path[0] = ROOT;
+        previousSiblings[0] = NONE;
+        int node = ROOT;
+        int position = 0;
+        while (position < keyBytes.length) {
+            int previous = NONE;
+            int child = firstChildren[node];
+            while (child != NONE && labels[labelOffsets[child]] != keyBytes[position]) {
+                previous = child;
+                child = nextSiblings[child];
+            }
+            if (child == NONE || labelLengths[child] > keyBytes.length - position || commonLength(child, keyBytes, position) < labelLengths[child]) {
+                return false;
+            }
+            node = child;
+            position += labelLengths[child];
+            depth++;
+            path[depth] = node;
+            previousSiblings[depth] = previous;
+        }
+        if (!removeId(node, id)) {
+            return false;
+        }
+        if (nodeIds[node] == 0 && node != ROOT) {
+            int parent = path[depth - 1];
+            if (firstChildren[node] == NONE) {
+                // remove leaf, its parent may become a node with a single child and no key
+                replaceChild(parent, previousSiblings[depth], node, nextSiblings[node]);
+                freeNode(node);
+                if (parent != ROOT && nodeIds[parent] == 0 && nextSiblings[firstChildren[parent]] == NONE) {
+                    mergeWithChild(path[depth - 2], findPrevious(path[depth - 2], parent), parent);
+                }
+            } else if (nextSiblings[firstChildren[node]] == NONE) {
+                mergeWithChild(parent, previousSiblings[depth], node);
+            }
+        }
+        if (labelsGarbage > 4096 && labelsGarbage > labelsLength / 2) {
+            compactLabels();
+        }
+        return true;
+    }
+
+    /**
+     * @return sorted ids of key (empty if none)
+     */
+    @NotNull
+    public int[] get(@NotNull String key) {
+        byte[] keyBytes = toBytes(key);
+        int node = ROOT;
+        int position = 0;
+        while (position < keyBytes.length) {
+            int child = firstChildren[node];
+            while (child != NONE && labels[labelOffsets[child]] != keyBytes[position]) {
+                child = nextSiblings[child];
+            }
+            if (child == NONE || labelLengths[child] > keyBytes.length - position || commonLength(child, keyBytes, position) < labelLengths[child]) {
+                return NO_IDS;
+            }
+            node = child;
+            position += labelLengths[child];
+        }
+        return getIds(node);
+    }
+
+    /**
+     * Visit all keys starting with prefix (ignoreCase: ASCII letters only)
+     */
+    public void visitStartingWith(@NotNull String prefix, boolean ignoreCase, @NotNull AlternatePostingMap.Visitor visitor) {
+        if (reversed) {
+            visitMatching(prefix, true, ignoreCase, visitor);
+        } else {
+            visitWithPrefixBytes(toBytes(prefix), ignoreCase, visitor);
+        }
+    }
+
+    /**
+     * Visit all keys ending with suffix (ignoreCase: ASCII letters only)
+     */
+    public void visitEndingWith(@NotNull String suffix, boolean ignoreCase, @NotNull AlternatePostingMap.Visitor visitor) {
+        if (reversed) {
+            visitWithPrefixBytes(toBytes(suffix), ignoreCase, visitor);
+        } else {
+            visitMatching(suffix, false, ignoreCase, visitor);
+        }
+    }
+
+    /**
+     * Visit all keys with their ids (tree must not be changed while visiting)
+     */
+    public void visit(@NotNull AlternatePostingMap.Visitor visitor) {
+        visitSubtree(ROOT, new byte[64], 0, visitor);
+    }
+
+    /**
+     * @return number of keys
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        labelOffsets = new int[16];
+        labelLengths = new int[16];
+        firstChildren = new int[16];
+        nextSiblings = new int[16];
+        nodeIds = new int[16];
+        nodeCount = 0;
+        freeNode = NONE;
+        labels = new byte[256];
+        labelsLength = 0;
+        labelsGarbage = 0;
+        idLists = new byte[16][];
+        idListCount = 0;
+        freeIdLists = new int[16];
+        freeIdListCount = 0;
+        idListsHeapSize = 0;
+        size = 0;
+        newNode(0); // root
+    }
+
+    /**
+     * @return estimated heap size in bytes (64 bit JVM with compressed oops)
+     */
+    public long estimateHeapSize() {
+        return 5 * arrayHeapSize(4L * labelOffsets.length) + arrayHeapSize(labels.length) + arrayHeapSize(4L * idLists.length)
+                + arrayHeapSize(4L * freeIdLists.length) + idListsHeapSize;
+    }
+
+    @NotNull
+    private byte[] toBytes(@NotNull String key) {
+        return (reversed ? new StringBuilder(key).reverse().toString() : key).getBytes(UTF_8);
+    }
+
+    @NotNull
+    private String toKey(@NotNull byte[] bytes, int length) {
+        String key = new String(bytes, 0, length, UTF_8);
+        return reversed ? new StringBuilder(key).reverse().toString() : key;
+    }
+
+    /**
+     * @return number of bytes label of node has in common with keyBytes at position
+     */
+    private int commonLength(int node, @NotNull byte[] keyBytes, int position) {
+        int offset = labelOffsets[node];
+        int length = Math.min(labelLengths[node], keyBytes.length - position);
+        int i = 0;
+        while (i < length && labels[offset + i] == keyBytes[position + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Replace child of parent (previous is sibling before child, NONE if first) by replacement (may be NONE to unlink)
+     */
+    private void replaceChild(int parent, int previous, int child, int replacement) {
+        if (replacement != NONE && replacement != nextSiblings[child]) {
+            nextSiblings[replacement] = nextSiblings[child];
+        }
+        if (previous == NONE) {
+            firstChildren[parent] = replacement;
+        } else {
+            nextSiblings[previous] = replacement;
+        }
+    }
+
+    private int findPrevious(int parent, int child) {
+        int previous = NONE;
+        for (int node = firstChildren[parent]; node != child; node = nextSiblings[node]) {
+            previous = node;
+        }
+        return previous;
+    }
+
+    /**
+     * Replace node (without key, single child) by its child, whose label gets prefixed by the label of node
+     */
+    private void mergeWithChild(int parent, int previous, int node) {
+        int child = firstChildren[node];
+        if (labelOffsets[node] + labelLengths[node] == labelOffsets[child]) {
+            labelOffsets[child] = labelOffsets[node];
+        } else {
+            int length = labelLengths[node] + labelLengths[child];
+            ensureLabelsCapacity(length);
+            System.arraycopy(labels, labelOffsets[node], labels, labelsLength, labelLengths[node]);
+            System.arraycopy(labels, labelOffsets[child], labels, labelsLength + labelLengths[node], labelLengths[child]);
+            labelsGarbage += labelLengths[child];
+            labelOffsets[child] = labelsLength;
+            labelsLength += length;
+            labelsGarbage += labelLengths[node];
+        }
+        labelLengths[child] += labelLengths[node];
+        labelLengths[node] = 0;
+        replaceChild(parent, previous, node, child);
+        freeNode(node);
+    }
+
+    private int newNode(int labelOffset) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = nextSiblings[node];
+        } else {
+            if (nodeCount == labelOffsets.length) {
+                int capacity = nodeCount * 2;
+                labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+                labelLengths = Arrays.copyOf(labelLengths, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+                nodeIds = Arrays.copyOf(nodeIds, capacity);
+            }
+            node = nodeCount++;
+        }
+        labelOffsets[node] = labelOffset;
+        labelLengths[node] = 0;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        nodeIds[node] = 0;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        labelsGarbage += labelLengths[node];
+        nextSiblings[node] = freeNode;
+        freeNode = node;
+    }
+
+    /**
+     * @return offset of the new label (bytes from..from+length)
+     */
+    private int addLabel(@NotNull byte[] bytes, int from, int length) {
+        ensureLabelsCapacity(length);
+        System.arraycopy(bytes, from, labels, labelsLength, length);
+        int offset = labelsLength;
+        labelsLength += length;
+        return offset;
+    }
+
+    private void ensureLabelsCapacity(int length) {
+        if (labelsLength + length > labels.length) {
+            labels = Arrays.copyOf(labels, Math.max(labels.length * 2, labelsLength + length));
+        }
+    }
+
+    /**
+     * Copy labels of all nodes into a new array (without garbage)
+     */
+    private void compactLabels() {
+        byte[] newLabels = new byte[Math.max(256, (labelsLength - labelsGarbage) * 5 / 4)];
+        int[] stack = new int[64];
+        int stackSize = 0;
+        int newLength = 0;
+        for (int child = firstChildren[ROOT]; child != NONE; child = nextSiblings[child]) {
+            stack = push(stack, stackSize++, child);
+        }
+        while (stackSize > 0) {
+            int node = stack[--stackSize];
+            if (newLength + labelLengths[node] > newLabels.length) {
+                newLabels = Arrays.copyOf(newLabels, Math.max(newLabels.length * 2, newLength + labelLengths[node]));
+            }
+            System.arraycopy(labels, labelOffsets[node], newLabels, newLength, labelLengths[node]);
+            labelOffsets[node] = newLength;
+            newLength += labelLengths[node];
+            for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+                stack = push(stack, stackSize++, child);
+            }
+        }
+        labels = newLabels;
+        labelsLength = newLength;
+        labelsGarbage = 0;
+    }
+
+    @NotNull
+    private static int[] push(@NotNull int[] stack, int index, int value) {
+        if (index == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[index] = value;
+        return stack;
+    }
+
+    // lookups
+
+    /**
+     * Visit keys whose stored bytes start with pattern
+     */
+    private void visitWithPrefixBytes(@NotNull byte[] pattern, boolean ignoreCase, @NotNull AlternatePostingMap.Visitor visitor) {
+        visitWithPrefixBytes(ROOT, pattern, 0, new byte[Math.max(64, pattern.length * 2)], 0, ignoreCase, visitor);
+    }
+
+    /**
+     * @param position  bytes of pattern already matched (= length of path)
+     * @param path      stored bytes from root to node
+     */
+    private void visitWithPrefixBytes(int node, @NotNull byte[] pattern, int position, @NotNull byte[] path, int pathLength,
+                                      boolean ignoreCase, @NotNull AlternatePostingMap.Visitor visitor) {
+        if (position == pattern.length) {
+            visitSubtree(node, path, pathLength, visitor);
+            return;
+        }
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            int offset = labelOffsets[child];
+            int length = Math.min(labelLengths[child], pattern.length - position);
+            int i = 0;
+            while (i < length && equals(labels[offset + i], pattern[position + i], ignoreCase)) {
+                i++;
+            }
+            if (i == length) {
+                byte[] childPath = append(path, pathLength, child);
+                visitWithPrefixBytes(child, pattern, position + length, childPath, pathLength + labelLengths[child], ignoreCase, visitor);
+            }
+        }
+    }
+
+    /**
+     * Visit all keys (slow direction): test each one
+     */
+    private void visitMatching(@NotNull final String affix, final boolean prefix, final boolean ignoreCase, @NotNull final AlternatePostingMap.Visitor visitor) {
+        visit(new AlternatePostingMap.Visitor() {
+            public void visit(@NotNull String key, @NotNull int[] ids) {
+                int offset = prefix ? 0 : key.length() - affix.length();
+                if (offset >= 0 && key.regionMatches(ignoreCase, offset, affix, 0, affix.length())) {
+                    visitor.visit(key, ids);
+                }
+            }
+        });
+    }
+
+    private void visitSubtree(int node, @NotNull byte[] path, int pathLength, @NotNull AlternatePostingMap.Visitor visitor) {
+        if (nodeIds[node] != 0) {
+            visitor.visit(toKey(path, pathLength), getIds(node));
+        }
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            byte[] childPath = append(path, pathLength, child);
+            visitSubtree(child, childPath, pathLength + labelLengths[child], visitor);
+        }
+    }
+
+    /**
+     * @return path with label of node appended at pathLength (same array if large enough)
+     */
+    @NotNull
+    private byte[] append(@NotNull byte[] path, int pathLength, int node) {
+        int length = labelLengths[node];
+        if (pathLength + length > path.length) {
+            path = Arrays.copyOf(path, Math.max(path.length * 2, pathLength + length));
+        }
+        System.arraycopy(labels, labelOffsets[node], path, pathLength, length);
+        return path;
+    }
+
+    private static boolean equals(byte a, byte b, boolean ignoreCase) {
+        return a == b || (ignoreCase && toLowerCase(a) == toLowerCase(b));
+    }
+
+    private static byte toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    // ids
+
+    @NotNull
+    private int[] getIds(int node) {
+        int value = nodeIds[node];
+        if (value == 0) {
+            return NO_IDS;
+        }
+        if (value > 0) {
+            return new int[]{value};
+        }
+        return decodeIds(idLists[-value - 1]);
+    }
+
+    private boolean addId(int node, int id) {
+        int value = nodeIds[node];
+        if (value == 0) {
+            nodeIds[node] = id;
+            size++;
+            return true;
+        }
+        int[] ids = getIds(node);
+        int index = Arrays.binarySearch(ids, id);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        int[] newIds = new int[ids.length + 1];
+        System.arraycopy(ids, 0, newIds, 0, index);
+        newIds[index] = id;
+        System.arraycopy(ids, index, newIds, index + 1, ids.length - index);
+        setIds(node, newIds, newIds.length);
+        return true;
+    }
+
+    private boolean removeId(int node, int id) {
+        int[] ids = getIds(node);
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(ids, index + 1, ids, index, ids.length - index - 1);
+        setIds(node, ids, ids.length - 1);
+        if (nodeIds[node] == 0) {
+            size--;
+        }
+        return true;
+    }
+
+    /**
+     * Store first count ids in node
+     */
+    private void setIds(int node, @NotNull int[] ids, int count) {
+        int value = nodeIds[node];
+        int index;
+        if (value < 0) {
+            index = -value - 1;
+            idListsHeapSize -= arrayHeapSize(idLists[index].length);
+            if (count <= 1) {
+                idLists[index] = null;
+                freeIdLists = push(freeIdLists, freeIdListCount++, index);
+            }
+        } else if (count > 1) {
+            if (freeIdListCount > 0) {
+                index = freeIdLists[--freeIdListCount];
+            } else {
+                if (idListCount == idLists.length) {
+                    idLists = Arrays.copyOf(idLists, idListCount * 2);
+                }
+                index = idListCount++;
+            }
+        } else {
+            index = NONE;
+        }
+        if (count == 0) {
+            nodeIds[node] = 0;
+        } else if (count == 1) {
+            nodeIds[node] = ids[0];
+        } else {
+            idLists[index] = encodeIds(ids, count);
+            idListsHeapSize += arrayHeapSize(idLists[index].length);
+            nodeIds[node] = -index - 1;
+        }
+    }
+
+    private static long arrayHeapSize(long length) {
+        return (16 + length + 7) & ~7L;
+    }
+
+    @NotNull
+    private static byte[] encodeIds(@NotNull int[] ids, int count) {
+        byte[] buffer = new byte[5 * count];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = ids[i] - previous;
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+            previous = ids[i];
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    @NotNull
+    private static int[] decodeIds(@NotNull byte[] buffer) {
+        int count = 0;
+        for (byte b : buffer) {
+            if (b >= 0) {
+                count++;
+            }
+        }
+        int[] ids = new int[count];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += value;
+            ids[i] = previous;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Trigram index of names: maps each three chars (ignoring case) of a name to the ids of all names containing them. A
+ * lookup of required literals intersects the ids of all their trigrams, so only these candidates need a real regex
+ * check.<br>
+ * Ids are appended as delta-compressed varints. Removing a name does not remove its ids (that would cost a copy of
+ * the ids per trigram), so results may contain ids of removed or renamed files: callers must check candidates anyway,
+ * and should rebuild the index if {@link #needsRebuild()}.
+ */
+public final class AlternateTrigramIndex {
+    private final Map<Long, Postings> postingsByTrigram = new HashMap<Long, Postings>();
+    /**
+     * number of added names
+     */
+    private int size;
+    /**
+     * number of removed names (still in index)
+     */
+    private int removed;
+    private long postingsHeapSize;
+
+    public void add(@NotNull String name, int id) {
+        String lowerCaseName = name.toLowerCase(Locale.ENGLISH);
+        for (int i = 0; i + 3 <= lowerCaseName.length(); i++) {
+            Long trigram = trigram(lowerCaseName, i);
+            Postings postings = postingsByTrigram.get(trigram);
+            if (postings == null) {
+                postings = new Postings();
+                postingsByTrigram.put(trigram, postings);
+            }
+            postingsHeapSize -= postings.estimateHeapSize();
+            postings.add(id);
+            postingsHeapSize += postings.estimateHeapSize();
+        }
+        size++;
+    }
+
+    /**
+     * Only counts removed names (see class comment)
+     */
+    public void remove(@NotNull String name, int id) {
+        removed++;
+    }
+
+    /**
+     * @return true, if most names in index are removed ones
+     */
+    public boolean needsRebuild() {
+        return removed > 1000 && removed * 2 > size;
+    }
+
+    /**
+     * @return ids of all names which contain all literals (ignoring case, maybe some more), null if literals are too
+     * short to tell (no trigram)
+     */
+    @Nullable
+    public int[] find(@NotNull Collection<String> literals) {
+        // postings of all trigrams, shortest first
+        Set<Long> trigrams = new HashSet<Long>();
+        for (String literal : literals) {
+            String lowerCaseLiteral = literal.toLowerCase(Locale.ENGLISH);
+            for (int i = 0; i + 3 <= lowerCaseLiteral.length(); i++) {
+                trigrams.add(trigram(lowerCaseLiteral, i));
+            }
+        }
+        if (trigrams.isEmpty()) {
+            return null;
+        }
+        List<Postings> postingsList = new ArrayList<Postings>(trigrams.size());
+        for (Long trigram : trigrams) {
+            Postings postings = postingsByTrigram.get(trigram);
+            if (postings == null) {
+                return new int[0];
+            }
+            postingsHeapSize -= postings.estimateHeapSize();
+            postings.normalize();
+            postingsHeapSize += postings.estimateHeapSize();
+            postingsList.add(postings);
+        }
+        Collections.sort(postingsList, new Comparator<Postings>() {
+            public int compare(Postings o1, Postings o2) {
+                return o1.dataLength - o2.dataLength;
+            }
+        });
+        // intersect
+        int[] result = postingsList.get(0).decode();
+        int resultLength = result.length;
+        for (int i = 1; i < postingsList.size() && resultLength > 0; i++) {
+            resultLength = postingsList.get(i).retainAll(result, resultLength);
+        }
+        return Arrays.copyOf(result, resultLength);
+    }
+
+    /**
+     * @return number of added names (including removed ones)
+     */
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        postingsByTrigram.clear();
+        size = 0;
+        removed = 0;
+        postingsHeapSize = 0;
+    }
+
+    /**
+     * @return estimated heap size in bytes (64 bit JVM with compressed oops)
+     */
+    public long estimateHeapSize() {
+        // map entry, Long key and table slot per trigram
+        return postingsHeapSize + postingsByTrigram.size() * (32L + 16L + 8L);
+    }
+
+    @NotNull
+    private static Long trigram(@NotNull String s, int index) {
+        return ((long) s.charAt(index) << 32) | ((long) s.charAt(index + 1) << 16) | s.charAt(index + 2);
+    }
+
+    private static long arrayHeapSize(long length) {
+        return (16 + length + 7) & ~7L;
+    }
+
+    /**
+     * Ids of a trigram: ascending ids as varint deltas, ids smaller than the last one in an unsorted tail (until
+     * {@link #normalize()})
+     */
+    private static final class Postings {
+        @NotNull
+        private byte[] data = new byte[4];
+        private int dataLength;
+        /**
+         * number of ids in data
+         */
+        private int count;
+        private int lastId;
+        @Nullable
+        private int[] tail;
+        private int tailLength;
+
+        private void add(int id) {
+            if (id > lastId) {
+                if (dataLength + 5 > data.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 3 / 2, dataLength + 5));
+                }
+                int value = id - lastId;
+                while ((value & ~0x7F) != 0) {
+                    data[dataLength++] = (byte) ((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                data[dataLength++] = (byte) value;
+                lastId = id;
+                count++;
+            } else if (id < lastId) {
+                // merge a big tail, so it does not grow uncompressed
+                if (tailLength >= 64 && tailLength * 8 > count) {
+                    normalize();
+                }
+                if (tail == null) {
+                    tail = new int[4];
+                } else if (tailLength == tail.length) {
+                    tail = Arrays.copyOf(tail, tailLength * 2);
+                }
+                tail[tailLength++] = id;
+            }
+        }
+
+        /**
+         * Merge tail into data
+         */
+        private void normalize() {
+            if (tail == null) {
+                return;
+            }
+            int[] ids = decode();
+            int[] all = Arrays.copyOf(ids, ids.length + tailLength);
+            System.arraycopy(tail, 0, all, ids.length, tailLength);
+            Arrays.sort(all);
+            tail = null;
+            tailLength = 0;
+            data = new byte[4];
+            dataLength = 0;
+            count = 0;
+            lastId = 0;
+            for (int id : all) {
+                add(id); // duplicates are skipped
+            }
+        }
+
+        /**
+         * @return ids (must be normalized)
+         */
+        @NotNull
+        private int[] decode() {
+            int[] result = new int[count];
+            int position = 0;
+            int id = 0;
+            for (int i = 0; i < count; i++) {
+                int value = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = data[position++];
+                    value |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                id += value;
+                result[i] = id;
+            }
+            return result;
+        }
+
+        /**
+         * Keep only ids (sorted, first length) which are in this postings (must be normalized)
+         *
+         * @return new length of ids
+         */
+        private int retainAll(@NotNull int[] ids, int length) {
+            int result = 0;
+            int position = 0;
+            int id = 0;
+            for (int i = 0; i < length; i++) {
+                while (id < ids[i] && position < dataLength) {
+                    int value = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = data[position++];
+                        value |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    id += value;
+                }
+                if (id == ids[i]) {
+                    ids[result++] = ids[i];
+                } else if (id < ids[i]) {
+                    break; // no more ids
+                }
+            }
+            return result;
+        }
+
+        private long estimateHeapSize() {
+            return 32 + arrayHeapSize(data.length) + (tail == null ? 0 : arrayHeapSize(4L * tail.length));
+        }
+    }
+}
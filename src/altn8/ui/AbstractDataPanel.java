@@ -17,6 +17,7 @@ package altn8.ui;
 
 import altn8.AbstractRegexItem;
 import altn8.AlternateConfiguration;
+import altn8.filematcher.AlternateRuleStatistic;
 import com.intellij.icons.AllIcons;
 import com.intellij.openapi.actionSystem.*;
 import com.intellij.openapi.util.text.StringUtil;
@@ -32,6 +33,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -42,6 +44,8 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
     private JScrollPane tableScrollPane;
     private JPanel toolbar;
     private final List<I> items = new ArrayList<I>();
+    @Nullable
+    private Map<? extends AbstractRegexItem, AlternateRuleStatistic> statistics;
 
     /**
      *
@@ -75,7 +79,7 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         items.clear();
         items.addAll(getConfigurationItem(configuration));
 
-        updateTable();
+        itemsChanged();
     }
 
     /**
@@ -245,6 +249,17 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         table.repaint();
     }
 
+    /**
+     * Items were added, edited or removed: statistics don't tell about them anymore
+     */
+    private void itemsChanged() {
+        if (statistics != null) {
+            setStatistics(null);
+        } else {
+            updateTable();
+        }
+    }
+
     /**
      * @param index
      */
@@ -271,7 +286,7 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
             public void run(@NotNull I item) {
                 items.add(item);
                 setSelectedRow(items.size() - 1);
-                updateTable();
+                itemsChanged();
             }
         });
     }
@@ -286,7 +301,7 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
                 public void run(@NotNull I item) {
                     items.add(item);
                     setSelectedRow(items.size() - 1);
-                    updateTable();
+                    itemsChanged();
                 }
             });
         }
@@ -303,7 +318,7 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
                     items.remove(selectedRow);
                     items.add(selectedRow, item);
                     setSelectedRow(selectedRow);
-                    updateTable();
+                    itemsChanged();
                 }
             });
         }
@@ -317,7 +332,7 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         if (rowInRange(selectedRow)) {
             items.remove(selectedRow);
             setSelectedRow(Math.min(selectedRow, items.size() - 1));
-            updateTable();
+            itemsChanged();
         }
     }
 
@@ -334,6 +349,15 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         }
     }
 
+    /**
+     * Show statistics (evaluations, hits, timeouts, time) of the items as additional columns. null hides these columns.
+     */
+    final void setStatistics(@Nullable Map<? extends AbstractRegexItem, AlternateRuleStatistic> statistics) {
+        this.statistics = statistics;
+        ((DataTableModel) table.getModel()).fireTableStructureChanged();
+        updateTable();
+    }
+
     /**
      * @return get the actual List
      */
@@ -369,8 +393,14 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         void run(@NotNull RI item);
     }
 
+    private static final String[] STATISTICCOLUMNS = new String[]{"Evaluations", "Hits", "Timeouts", "Time (ms)"};
+    private static final int STATISTICCOLUMN_EVALUATIONS = 0;
+    private static final int STATISTICCOLUMN_HITS = 1;
+    private static final int STATISTICCOLUMN_TIMEOUTS = 2;
+    private static final int STATISTICCOLUMN_TIME = 3;
+
     /**
-     * DataTableModel for sub-classes
+     * DataTableModel for sub-classes. Sub-classes only provide the item columns, statistic columns are added here.
      */
     protected abstract class DataTableModel extends AbstractTableModel {
         public final int getRowCount() {
@@ -380,5 +410,43 @@ abstract class AbstractDataPanel<I extends AbstractRegexItem> implements DataInt
         public final boolean isCellEditable(int i, int i1) {
             return false;
         }
+
+        public final int getColumnCount() {
+            return getItemColumnCount() + (statistics == null ? 0 : STATISTICCOLUMNS.length);
+        }
+
+        public final Object getValueAt(int rowIndex, int columnIndex) {
+            int itemColumnCount = getItemColumnCount();
+            if (columnIndex < itemColumnCount) {
+                return getItemValueAt(rowIndex, columnIndex);
+            }
+            AlternateRuleStatistic statistic = statistics == null ? null : statistics.get(getItems().get(rowIndex));
+            if (statistic == null) {
+                return "";
+            }
+            switch (columnIndex - itemColumnCount) {
+                case STATISTICCOLUMN_EVALUATIONS:
+                    return statistic.evaluations;
+                case STATISTICCOLUMN_HITS:
+                    return statistic.hits;
+                case STATISTICCOLUMN_TIMEOUTS:
+                    return statistic.timeouts;
+                case STATISTICCOLUMN_TIME:
+                    return String.format("%.3f", statistic.nanos / 1000000d);
+            }
+            throw new IllegalArgumentException("Unknown column index: " + columnIndex);
+        }
+
+        @Override
+        public final String getColumnName(int column) {
+            int itemColumnCount = getItemColumnCount();
+            return column < itemColumnCount ? getItemColumnName(column) : STATISTICCOLUMNS[column - itemColumnCount];
+        }
+
+        protected abstract int getItemColumnCount();
+
+        protected abstract Object getItemValueAt(int rowIndex, int columnIndex);
+
+        protected abstract String getItemColumnName(int column);
     }
 }
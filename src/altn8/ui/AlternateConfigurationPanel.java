@@ -15,12 +15,37 @@
  */
 package altn8.ui;
 
+import altn8.AbstractRegexItem;
 import altn8.AlternateConfiguration;
+import altn8.AlternateFileTypeExtensionProvider;
+import altn8.AlternateFreeRegexItem;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import altn8.filematcher.AlternateRuleProfiler;
+import altn8.filematcher.AlternateRuleSetOptimizer;
+import altn8.filematcher.AlternateRuleStatistic;
+import com.intellij.ide.DataManager;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import com.intellij.openapi.roots.ContentIterator;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.Splitter;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -30,31 +55,183 @@ public class AlternateConfigurationPanel implements DataInterface {
     private JPanel regexSplitter;
     private JPanel rootComponent;
     private JCheckBox onlyFromModuleCheckBox;
+    private JCheckBox linearRegexEngineCheckBox;
+    private JCheckBox generateRuleSetCodeCheckBox;
+    private JButton profileButton;
+    private JButton analyzeButton;
+    private AlternateGenericRegexPanel genericRegexPanel;
+    private AlternateFreeRegexPanel freeRegexPanel;
+    private AlternatePathMirrorPanel pathMirrorPanel;
 
     public AlternateConfigurationPanel() {
         dataInterfaces.add(new DataInterface() {
             public void pullDataFrom(AlternateConfiguration configuration) {
                 onlyFromModuleCheckBox.setSelected(configuration.onlyFromModule);
+                linearRegexEngineCheckBox.setSelected(configuration.linearRegexEngine);
+                generateRuleSetCodeCheckBox.setSelected(configuration.generateRuleSetCode);
             }
 
             public void pushDataTo(AlternateConfiguration configuration) {
                 configuration.onlyFromModule = onlyFromModuleCheckBox.isSelected();
+                configuration.linearRegexEngine = linearRegexEngineCheckBox.isSelected();
+                configuration.generateRuleSetCode = generateRuleSetCodeCheckBox.isSelected();
             }
 
             public boolean isModified(AlternateConfiguration configuration) {
-               return onlyFromModuleCheckBox.isSelected() != configuration.onlyFromModule;
+               return onlyFromModuleCheckBox.isSelected() != configuration.onlyFromModule ||
+                       linearRegexEngineCheckBox.isSelected() != configuration.linearRegexEngine ||
+                       generateRuleSetCodeCheckBox.isSelected() != configuration.generateRuleSetCode;
             }
         });
 
         ((Splitter) regexSplitter).setHonorComponentsMinimumSize(true);
         // genericRegexPanel
-        AlternateGenericRegexPanel genericRegexPanel = new AlternateGenericRegexPanel();
+        genericRegexPanel = new AlternateGenericRegexPanel();
         dataInterfaces.add(genericRegexPanel);
         ((Splitter) regexSplitter).setFirstComponent(genericRegexPanel.getRootComponent());
         // freeRegexPanel
-        AlternateFreeRegexPanel freeRegexPanel = new AlternateFreeRegexPanel();
+        freeRegexPanel = new AlternateFreeRegexPanel();
         dataInterfaces.add(freeRegexPanel);
-        ((Splitter) regexSplitter).setSecondComponent(freeRegexPanel.getRootComponent());
+        // pathMirrorPanel (below freeRegexPanel)
+        pathMirrorPanel = new AlternatePathMirrorPanel();
+        dataInterfaces.add(pathMirrorPanel);
+        Splitter lowerSplitter = new Splitter(true, 0.5f);
+        lowerSplitter.setHonorComponentsMinimumSize(true);
+        lowerSplitter.setFirstComponent(freeRegexPanel.getRootComponent());
+        lowerSplitter.setSecondComponent(pathMirrorPanel.getRootComponent());
+        ((Splitter) regexSplitter).setSecondComponent(lowerSplitter);
+        // profileButton
+        profileButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                doProfile();
+            }
+        });
+        // analyzeButton
+        analyzeButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                doAnalyze();
+            }
+        });
+    }
+
+    /**
+     * Show all (currently edited) rules which are redundant (most of them are ignored on lookup).
+     */
+    private void doAnalyze() {
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        pushDataTo(configuration);
+        List<String> findings = AlternateRuleSetOptimizer.analyze(configuration);
+        if (findings.isEmpty()) {
+            Messages.showInfoMessage(rootComponent, "No redundant rules found.", "Analyze Rules");
+            return;
+        }
+        StringBuilder sb = new StringBuilder("These rules are redundant (ignored on lookup, unless marked as kept):\n");
+        for (String finding : findings) {
+            sb.append("\n").append(finding);
+        }
+        Messages.showInfoMessage(rootComponent, sb.toString(), "Analyze Rules");
+    }
+
+    /**
+     * Profile all (currently edited) rules against the filenames of the current project in background and show
+     * the result in the tables.
+     */
+    private void doProfile() {
+        final Project project = getProject();
+        if (project == null) {
+            Messages.showInfoMessage(rootComponent, "Please open a project to profile the rules against.", "Profile Rules");
+            return;
+        }
+        // profile what we see, not what is stored
+        final AlternateConfiguration configuration = new AlternateConfiguration();
+        pushDataTo(configuration);
+
+        profileButton.setEnabled(false);
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Profiling AltN8 rules", true) {
+            private final Map<AbstractRegexItem, AlternateRuleStatistic> statistics = new HashMap<AbstractRegexItem, AlternateRuleStatistic>();
+
+            public void run(@NotNull final ProgressIndicator indicator) {
+                indicator.setText("Collecting filenames...");
+                List<String> filenames = collectFilenames(project, indicator);
+                indicator.setText("Profiling rules...");
+                AlternateFileTypeExtensionProvider extensionProvider = new AlternateFileTypeExtensionProvider();
+                AlternateRuleProfiler.CancelCheck cancelCheck = new AlternateRuleProfiler.CancelCheck() {
+                    public void checkCanceled() {
+                        indicator.checkCanceled();
+                    }
+                };
+
+                List<AbstractRegexItem> items = new ArrayList<AbstractRegexItem>();
+                items.addAll(configuration.genericPrefixRegexItems);
+                items.addAll(configuration.genericPostfixRegexItems);
+                items.addAll(configuration.freeRegexItems);
+                for (int i = 0, itemsSize = items.size(); i < itemsSize; i++) {
+                    indicator.checkCanceled();
+                    indicator.setFraction((double) i / itemsSize);
+                    AbstractRegexItem item = items.get(i);
+                    if (!item.hasError()) {
+                        if (item instanceof AlternateFreeRegexItem) {
+                            statistics.put(item, AlternateRuleProfiler.profile((AlternateFreeRegexItem) item, configuration, filenames, cancelCheck));
+                        } else {
+                            statistics.put(item, AlternateRuleProfiler.profile((AlternateGenericPrefixPostfixRegexItem) item, configuration, extensionProvider, filenames, cancelCheck));
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                genericRegexPanel.setStatistics(statistics);
+                freeRegexPanel.setStatistics(statistics);
+                profileButton.setEnabled(true);
+            }
+
+            @Override
+            public void onCancel() {
+                profileButton.setEnabled(true);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                profileButton.setEnabled(true);
+                super.onThrowable(error); // log it
+            }
+        });
+    }
+
+    /**
+     * @return project of our settings dialog or first open project (null if there is no project open)
+     */
+    @Nullable
+    private Project getProject() {
+        Project project = PlatformDataKeys.PROJECT.getData(DataManager.getInstance().getDataContext(rootComponent));
+        if (project == null) {
+            Project[] openProjects = ProjectManager.getInstance().getOpenProjects();
+            project = openProjects.length > 0 ? openProjects[0] : null;
+        }
+        return project;
+    }
+
+    /**
+     * @return all filenames in content of project
+     */
+    @NotNull
+    private static List<String> collectFilenames(@NotNull final Project project, @NotNull final ProgressIndicator indicator) {
+        final List<String> filenames = new ArrayList<String>();
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+            public void run() {
+                ProjectRootManager.getInstance(project).getFileIndex().iterateContent(new ContentIterator() {
+                    public boolean processFile(VirtualFile fileOrDir) {
+                        indicator.checkCanceled();
+                        if (!fileOrDir.isDirectory()) {
+                            filenames.add(fileOrDir.getName());
+                        }
+                        return true;
+                    }
+                });
+            }
+        });
+        return filenames;
     }
 
     private void createUIComponents() {
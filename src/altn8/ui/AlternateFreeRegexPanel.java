@@ -15,8 +15,10 @@
  */
 package altn8.ui;
 
+import altn8.AbstractRegexItem;
 import altn8.AlternateConfiguration;
 import altn8.AlternateFreeRegexItem;
+import altn8.filematcher.AlternateRuleStatistic;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -24,6 +26,7 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -87,6 +90,13 @@ class AlternateFreeRegexPanel implements DataInterface {
         itemDataPanel.updateEnabled(enabled);
     }
 
+    /**
+     * @see AbstractDataPanel#setStatistics(Map)
+     */
+    void setStatistics(@Nullable Map<? extends AbstractRegexItem, AlternateRuleStatistic> statistics) {
+        itemDataPanel.setStatistics(statistics);
+    }
+
     /**
      *
      */
@@ -118,11 +128,11 @@ class AlternateFreeRegexPanel implements DataInterface {
         @Override
         protected DataTableModel createTableModel() {
             return new DataTableModel() {
-                public int getColumnCount() {
+                protected int getItemColumnCount() {
                     return TABLECOLUMNS.length;
                 }
 
-                public Object getValueAt(int rowIndex, int columnIndex) {
+                protected Object getItemValueAt(int rowIndex, int columnIndex) {
                     AlternateFreeRegexItem item = getItems().get(rowIndex);
                     switch (columnIndex) {
                         case TABLECOLUMN_MATCHEXPRESSION:
@@ -133,8 +143,7 @@ class AlternateFreeRegexPanel implements DataInterface {
                     throw new IllegalArgumentException("Unknown column index: " + columnIndex);
                 }
 
-                @Override
-                public String getColumnName(int column) {
+                protected String getItemColumnName(int column) {
                     return TABLECOLUMNS[column];
                 }
             };
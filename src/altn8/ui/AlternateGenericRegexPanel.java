@@ -15,8 +15,10 @@
  */
 package altn8.ui;
 
+import altn8.AbstractRegexItem;
 import altn8.AlternateConfiguration;
 import altn8.AlternateGenericPrefixPostfixRegexItem;
+import altn8.filematcher.AlternateRuleStatistic;
 import com.intellij.openapi.ui.Splitter;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
@@ -27,6 +29,7 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -115,6 +118,14 @@ class AlternateGenericRegexPanel implements DataInterface {
         postfixItemDataPanel.updateEnabled(enabled);
     }
 
+    /**
+     * @see AbstractDataPanel#setStatistics(Map)
+     */
+    void setStatistics(@Nullable Map<? extends AbstractRegexItem, AlternateRuleStatistic> statistics) {
+        prefixItemDataPanel.setStatistics(statistics);
+        postfixItemDataPanel.setStatistics(statistics);
+    }
+
     /**
      *
      */
@@ -143,11 +154,11 @@ class AlternateGenericRegexPanel implements DataInterface {
         @Override
         protected DataTableModel createTableModel() {
             return new DataTableModel() {
-                public int getColumnCount() {
+                protected int getItemColumnCount() {
                     return TABLECOLUMNS.length;
                 }
 
-                public Object getValueAt(int rowIndex, int columnIndex) {
+                protected Object getItemValueAt(int rowIndex, int columnIndex) {
                     AlternateGenericPrefixPostfixRegexItem item = getItems().get(rowIndex);
                     switch (columnIndex) {
                         case TABLECOLUMN_EXPRESSION:
@@ -158,8 +169,7 @@ class AlternateGenericRegexPanel implements DataInterface {
                     throw new IllegalArgumentException("Unknown column index: " + columnIndex);
                 }
 
-                @Override
-                public String getColumnName(int column) {
+                protected String getItemColumnName(int column) {
                     return TABLECOLUMNS[column];
                 }
             };
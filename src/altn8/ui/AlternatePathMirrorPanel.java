@@ -0,0 +1,148 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.ui;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternatePathMirrorItem;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.util.List;
+
+/**
+ *
+ */
+class AlternatePathMirrorPanel implements DataInterface {
+    private JPanel rootComponent;
+    private JCheckBox activeCheckBox;
+    @SuppressWarnings({"UnusedDeclaration"})
+    private JPanel dataPanel;
+    private AlternatePathMirrorItemDataPanel itemDataPanel;
+
+    public AlternatePathMirrorPanel() {
+        initUIComponents();
+    }
+
+    public JPanel getRootComponent() {
+        return rootComponent;
+    }
+
+    public void pullDataFrom(AlternateConfiguration configuration) {
+        activeCheckBox.setSelected(configuration.pathMirrorActive);
+        itemDataPanel.pullDataFrom(configuration);
+    }
+
+    public void pushDataTo(AlternateConfiguration configuration) {
+        configuration.pathMirrorActive = activeCheckBox.isSelected();
+        itemDataPanel.pushDataTo(configuration);
+    }
+
+    public boolean isModified(AlternateConfiguration configuration) {
+        return activeCheckBox.isSelected() != configuration.pathMirrorActive ||
+                itemDataPanel.isModified(configuration);
+    }
+
+    /**
+     * called from idea's form designer -> Custom Create Components
+     */
+    private void createUIComponents() {
+        itemDataPanel = new AlternatePathMirrorItemDataPanel();
+        //
+        dataPanel = itemDataPanel.getRootComponent();
+    }
+
+    /**
+     * Init our Components
+     */
+    private void initUIComponents() {
+        activeCheckBox.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                updateEnabled(activeCheckBox.isSelected());
+            }
+        });
+        //
+        updateEnabled(activeCheckBox.isSelected());
+    }
+
+    /**
+     * stupid Swing does not enable/disable child of a container... so we have to do manualy...
+     */
+    private void updateEnabled(boolean enabled) {
+        itemDataPanel.updateEnabled(enabled);
+    }
+
+    /**
+     *
+     */
+    private static class AlternatePathMirrorItemDataPanel extends AbstractDataPanel<AlternatePathMirrorItem> {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void showEditDialog(@NotNull String title, @Nullable AlternatePathMirrorItem currentItem, @NotNull Runnable<AlternatePathMirrorItem> runnable) {
+            AlternatePathMirrorItemDialog.showDialog(title, currentItem == null ? AlternatePathMirrorItem.of("", "", "", "") : currentItem, runnable);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        @NotNull
+        protected List<AlternatePathMirrorItem> getConfigurationItem(@NotNull AlternateConfiguration configuration) {
+            return configuration.pathMirrorItems;
+        }
+
+        private static final String[] TABLECOLUMNS = new String[]{"Source Path", "Target Path", "Match Expression", "Replace Expression"};
+        private static final int TABLECOLUMN_SOURCEPATH = 0;
+        private static final int TABLECOLUMN_TARGETPATH = 1;
+        private static final int TABLECOLUMN_MATCHEXPRESSION = 2;
+        private static final int TABLECOLUMN_REPLACEEXPRESSION = 3;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected DataTableModel createTableModel() {
+            return new DataTableModel() {
+                protected int getItemColumnCount() {
+                    return TABLECOLUMNS.length;
+                }
+
+                protected Object getItemValueAt(int rowIndex, int columnIndex) {
+                    AlternatePathMirrorItem item = getItems().get(rowIndex);
+                    switch (columnIndex) {
+                        case TABLECOLUMN_SOURCEPATH:
+                            return item.sourcePath;
+                        case TABLECOLUMN_TARGETPATH:
+                            return item.targetPath;
+                        case TABLECOLUMN_MATCHEXPRESSION:
+                            return item.matchExpression;
+                        case TABLECOLUMN_REPLACEEXPRESSION:
+                            return item.replaceExpression;
+                    }
+                    throw new IllegalArgumentException("Unknown column index: " + columnIndex);
+                }
+
+                protected String getItemColumnName(int column) {
+                    return TABLECOLUMNS[column];
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class AlternatePathMirrorFileMatcherTest {
+    private static final List<AlternatePathMirrorItem> ITEMS = Arrays.asList(
+            AlternatePathMirrorItem.of("src/main/java", "src/test/java", "^(.*?)\\.java$", "$1Test.java"),
+            AlternatePathMirrorItem.of("src/test/java/", "/src/main/java", "^(.*?)Test\\.java$", "$1.java"),
+            AlternatePathMirrorItem.of("src/main/resources", "src/test/resources", "", ""),
+            AlternatePathMirrorItem.of("src/main/java", "", "", "") // invalid
+    );
+
+    @Test
+    public void testGetTargets() throws Exception {
+        assertEquals(Arrays.asList("src/test/java/foo/bar/BazTest.java"), getRelativePaths("src/main/java/foo/bar/Baz.java"));
+        assertEquals(Arrays.asList("src/main/java/foo/bar/Baz.java"), getRelativePaths("src/test/java/foo/bar/BazTest.java"));
+        assertEquals(Arrays.asList("src/test/java/BazTest.java"), getRelativePaths("src/main/java/Baz.java"));
+        assertEquals(Arrays.asList("src/test/resources/foo/log4j.xml"), getRelativePaths("src/main/resources/foo/log4j.xml"));
+    }
+
+    @Test
+    public void testGetTargetsNoMatch() throws Exception {
+        assertEquals(new ArrayList<String>(), getRelativePaths("src/main/java/foo/Baz.kt"));
+        assertEquals(new ArrayList<String>(), getRelativePaths("src/main/javax/foo/Baz.java"));
+        assertEquals(new ArrayList<String>(), getRelativePaths("other/src/main/java/Baz.java"));
+        assertEquals(new ArrayList<String>(), getRelativePaths("src/test/java/foo/Baz.java"));
+    }
+
+    @Test
+    public void testGetTargetsBaseFilename() throws Exception {
+        assertEquals("Baz", AlternatePathMirrorFileMatcher.getTargets("src/main/java/Baz.java", ITEMS).get(0).baseFilename);
+        assertEquals("", AlternatePathMirrorFileMatcher.getTargets("src/main/resources/log4j.xml", ITEMS).get(0).baseFilename);
+    }
+
+    private static List<String> getRelativePaths(String relativePath) {
+        List<String> result = new ArrayList<String>();
+        for (AlternatePathMirrorFileMatcher.Target target : AlternatePathMirrorFileMatcher.getTargets(relativePath, ITEMS)) {
+            result.add(target.relativePath);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static altn8.AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX;
+import static altn8.AlternateGenericPrefixPostfixRegexItem.GenericType.PREFIX;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateAffixPatternTest {
+    private static final List<String> EXTENSIONS = Arrays.asList("java", "properties", "htm.", "xml");
+    private static final String[] FILENAMES = new String[]{
+            "FooBar.java", "FooBar_en.properties", "FooBar_en_UK.properties", "FooBarTest.java", "FooBarImplTest.java",
+            "AbstractFooBar.java", "AbstractFooBarTest_en_UK.properties", "TestFooBar.java", "testFooBar.html",
+            "Test_FooBar.xml", "IFooBar.java", "Icon.java", "IconTest.java", "Abstract.java", "AbstractTest.java",
+            "Test.java", "TestTest.java", "Impl.java", "foo.bar.java", "foo.txt", "FooBar", "FooBar.", "_en.properties",
+            "foo_bar_baz_qu.properties", "AbstractIFoo.java", "IAbstractFoo.java", "fooTestImpl.xml", "a", "\u00c4pfel.java", "fooB\u00c4R.java"
+    };
+
+    @Test
+    public void testSameAsRegexForDefaults() throws Exception {
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        assertSameAsRegex(configuration.genericPrefixRegexItems, configuration.genericPostfixRegexItems);
+    }
+
+    @Test
+    public void testSameAsRegex() throws Exception {
+        assertSameAsRegex(Arrays.asList(
+                AlternateGenericPrefixPostfixRegexItem.of(PREFIX, "(?:Abstract|Base)(?![a-z])", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(PREFIX, "[^_]{1,2}_", false, "")
+        ), Arrays.asList(
+                AlternateGenericPrefixPostfixRegexItem.of(POSTFIX, "(?:Test|Impl){1,2}", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(POSTFIX, "_\\w{2}??", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(POSTFIX, "\\.bar", false, "")
+        ));
+        assertSameAsRegex(Collections.<AlternateGenericPrefixPostfixRegexItem>emptyList(), Collections.<AlternateGenericPrefixPostfixRegexItem>emptyList());
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        assertTrue(AlternateAffixPattern.isSupported("[Tt]est_?"));
+        assertTrue(AlternateAffixPattern.isSupported("I(?=[A-Z])"));
+        assertTrue(AlternateAffixPattern.isSupported("(?:_\\w{2}(?:_\\w{2})?)"));
+        assertFalse(AlternateAffixPattern.isSupported("\\w+"));
+        assertFalse(AlternateAffixPattern.isSupported("Test*"));
+        assertFalse(AlternateAffixPattern.isSupported("(Test)"));
+        assertFalse(AlternateAffixPattern.isSupported("(?i)test"));
+        assertFalse(AlternateAffixPattern.isSupported("\\bTest"));
+        assertFalse(AlternateAffixPattern.isSupported("[a-z&&[^b]]"));
+        assertFalse(AlternateAffixPattern.isSupported("[a-z]{0,100}"));
+        assertNull(AlternateAffixPattern.getInstance(Arrays.asList(AlternateGenericPrefixPostfixRegexItem.of(PREFIX, "\\w+_", true, "")),
+                Collections.<AlternateGenericPrefixPostfixRegexItem>emptyList(), EXTENSIONS));
+    }
+
+    /**
+     * name and baseFilename must be the same as with the regex of AlternateGenericRegexFileMatcher
+     */
+    private static void assertSameAsRegex(List<AlternateGenericPrefixPostfixRegexItem> prefixItems, List<AlternateGenericPrefixPostfixRegexItem> postfixItems) {
+        AlternateAffixPattern affixPattern = AlternateAffixPattern.getInstance(prefixItems, postfixItems, EXTENSIONS);
+        assertNotNull(affixPattern);
+        AlternateGenericRegexFileMatcher.GenRegex prefixGenRegex = AlternateGenericRegexFileMatcher.createRegexPattern(prefixItems);
+        AlternateGenericRegexFileMatcher.GenRegex postfixGenRegex = AlternateGenericRegexFileMatcher.createRegexPattern(postfixItems);
+        String prefixPattern = "^" + prefixGenRegex.pattern;
+        String postfixPattern = postfixGenRegex.pattern + "(?:\\.(?:java|properties|htm.|xml))?$";
+        int groupCount = prefixGenRegex.groupCount + postfixGenRegex.groupCount + 1;
+        StringBuilder replacement = new StringBuilder();
+        for (int i = 1; i <= groupCount; i++) {
+            replacement.append('$').append(i);
+        }
+        Pattern namePattern = Pattern.compile(prefixPattern + "(\\w+?)" + postfixPattern);
+        for (String currentFilename : FILENAMES) {
+            Matcher nameMatcher = namePattern.matcher(currentFilename);
+            String name = nameMatcher.matches() ? nameMatcher.group(prefixGenRegex.groupCount + 1) : null;
+            assertEquals(currentFilename, name, affixPattern.findName(currentFilename));
+            if (name == null) {
+                continue;
+            }
+            for (boolean caseInsensitive : new boolean[]{false, true}) {
+                Pattern matchPattern = Pattern.compile(prefixPattern + (caseInsensitive ? "(?i)" : "") + "(" + Pattern.quote(name) + ")" + (caseInsensitive ? "(?-i)" : "") + postfixPattern);
+                for (String filename : FILENAMES) {
+                    Matcher matcher = matchPattern.matcher(filename);
+                    String expected = matcher.matches() ? matcher.replaceAll(replacement.toString()) : null;
+                    assertEquals(name + " / " + filename, expected, affixPattern.match(filename, name, caseInsensitive));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class AlternateFileMatcherOrderingTest {
+    @Test
+    public void testOrder() throws Exception {
+        AlternateFileMatcher expensive = new TestFileMatcher("expensive", null, "Foo");
+        AlternateFileMatcher cheapDisjoint = new TestFileMatcher("cheap", Arrays.asList("Bar.java"), "Bar");
+        AlternateFileMatcher cheapOverlapping = new TestFileMatcher("cheap", Arrays.asList("Foo.java"), "Foo");
+
+        Map<String, AlternateRuleStatistic> statistics = new HashMap<String, AlternateRuleStatistic>();
+        // no statistics -> priority order
+        assertEquals(Arrays.asList(expensive, cheapDisjoint), AlternateFileMatcherOrdering.order(Arrays.asList(expensive, cheapDisjoint), statistics));
+
+        statistics.put("expensive", statistic(1000, 10, 1000000));
+        statistics.put("cheap", statistic(1000, 100, 1000));
+        // disjoint -> cheap first
+        assertEquals(Arrays.asList(cheapDisjoint, expensive), AlternateFileMatcherOrdering.order(Arrays.asList(expensive, cheapDisjoint), statistics));
+        // overlapping -> order would change result
+        assertEquals(Arrays.asList(expensive, cheapOverlapping), AlternateFileMatcherOrdering.order(Arrays.asList(expensive, cheapOverlapping), statistics));
+    }
+
+    private static AlternateRuleStatistic statistic(long evaluations, long hits, long nanos) {
+        AlternateRuleStatistic statistic = new AlternateRuleStatistic();
+        statistic.evaluations = evaluations;
+        statistic.hits = hits;
+        statistic.nanos = nanos;
+        return statistic;
+    }
+
+    /**
+     * matches all filenames containing part
+     */
+    private static class TestFileMatcher implements AlternateFileMatcher {
+        private final String statisticKey;
+        private final Collection<String> matchingFilenames;
+        private final String part;
+
+        private TestFileMatcher(String statisticKey, Collection<String> matchingFilenames, String part) {
+            this.statisticKey = statisticKey;
+            this.matchingFilenames = matchingFilenames;
+            this.part = part;
+        }
+
+        public boolean matches(@NotNull String filename) {
+            return filename.contains(part);
+        }
+
+        @NotNull
+        public String getBaseFilename(@NotNull String filename) {
+            return "";
+        }
+
+        @NotNull
+        public String getStatisticKey() {
+            return statisticKey;
+        }
+
+        @Nullable
+        public Collection<String> getMatchingFilenames() {
+            return matchingFilenames;
+        }
+
+        @NotNull
+        public Collection<String> getRequiredLiterals() {
+            return Collections.singletonList(part);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateFreeRegexItem;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateFreeRegexRuleSetTest {
+    @Test
+    public void testGetLiteralSuffix() throws Exception {
+        assertEquals(".java", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\.java$"));
+        assertEquals("Test.java", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)Test\\.java"));
+        assertEquals("_en.properties", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*)_en\\.properties$"));
+        assertEquals("c", AlternateFreeRegexRuleSet.getLiteralSuffix("^ab?c$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\.javax?$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\.(java|kt)$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\.java|Foo$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("(?i)^(.*?)\\.java$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\d$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\\\."));
+        assertEquals("\\.", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\\\\\."));
+
+        // escapes which take the chars after them
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^Foo\\x41$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^Foo\\u0041$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^Foo\\0101$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(F)(o)(o)(o)(o)(o)(o)(o)(o)(o)(o)(o)\\12$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^Foo\\cA$"));
+        assertEquals("", AlternateFreeRegexRuleSet.getLiteralSuffix("^(.*?)\\QTest\\E$"));
+    }
+
+    @Test
+    public void testGetLiteralSuffixMatches() throws Exception {
+        // every name matched by the regex must end with its literal suffix
+        String[][] regexAndNames = {
+                {"^Foo\\x41$", "FooA"},
+                {"^Foo\\u0041$", "FooA"},
+                {"^Foo\\0101$", "FooA"},
+                {"^(A)Foo\\1$", "AFooA"},
+                {"^(.*?)Test\\.java$", "FooTest.java"},
+        };
+        for (String[] regexAndName : regexAndNames) {
+            assertTrue(regexAndName[0], Pattern.matches(regexAndName[0], regexAndName[1]));
+            assertTrue(regexAndName[0], regexAndName[1].endsWith(AlternateFreeRegexRuleSet.getLiteralSuffix(regexAndName[0])));
+        }
+    }
+
+    @Test
+    public void testGetRules() throws Exception {
+        AlternateFreeRegexRuleSet ruleSet = AlternateFreeRegexRuleSet.getInstance(Arrays.asList(
+                AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"),
+                AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1.properties"),
+                AlternateFreeRegexItem.of("^(.*?)Test\\.java$", "$1.java"),
+                AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$1.spec.ts")
+        ));
+
+        assertArrayEquals(new Object[]{"^(.*?)\\.java$"}, getMatchExpressions(ruleSet.getRules("Foo.java")));
+        assertArrayEquals(new Object[]{"^(.*?)\\.java$", "^(.*?)Test\\.java$"}, getMatchExpressions(ruleSet.getRules("FooTest.java")));
+        assertArrayEquals(new Object[]{"^(.*?)\\.ts$"}, getMatchExpressions(ruleSet.getRules("foo.ts")));
+        assertArrayEquals(new Object[0], getMatchExpressions(ruleSet.getRules("foo.js")));
+        assertEquals(Arrays.asList("$1Test.java", "$1.properties"), ruleSet.getRules("Foo.java").get(0).getReplaceExpressions());
+    }
+
+    @Test
+    public void testGetRulesWithoutSuffix() throws Exception {
+        AlternateFreeRegexRuleSet ruleSet = AlternateFreeRegexRuleSet.getInstance(Arrays.asList(
+                AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$1.spec.ts"),
+                AlternateFreeRegexItem.of("^(.*?)\\.(?:js|ts)$", "$1.html")
+        ));
+        // rules without literal suffix are always tested
+        assertArrayEquals(new Object[]{"^(.*?)\\.ts$", "^(.*?)\\.(?:js|ts)$"}, getMatchExpressions(ruleSet.getRules("foo.ts")));
+        assertArrayEquals(new Object[]{"^(.*?)\\.(?:js|ts)$"}, getMatchExpressions(ruleSet.getRules("Foo.java")));
+    }
+
+    @Test
+    public void testApply() throws Exception {
+        AlternateFreeRegexRuleSet ruleSet = AlternateFreeRegexRuleSet.getInstance(Arrays.asList(
+                AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"),
+                AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1.properties"),
+                AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$1.spec.ts"),
+                AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$0.bak"),
+                AlternateFreeRegexItem.of("${name}.spec.${ext}", "${name}.${ext}")
+        ));
+        List<AlternateFreeRegexRuleSet.Rule> rules = ruleSet.getRules("Foo.java");
+        assertTrue(rules.get(0).isTemplate());
+        assertEquals(Arrays.asList("FooTest.java", "Foo.properties"), rules.get(0).apply("Foo.java"));
+        // $0 can't be converted -> regex
+        rules = ruleSet.getRules("foo.spec.ts");
+        assertFalse(rules.get(0).isTemplate());
+        assertEquals(Arrays.asList("foo.spec.spec.ts", "foo.spec.ts.bak"), rules.get(0).apply("foo.spec.ts"));
+        assertTrue(rules.get(1).isTemplate());
+        assertEquals(Arrays.asList("foo.ts"), rules.get(1).apply("foo.spec.ts"));
+        assertNull(rules.get(1).apply("foo.ts"));
+    }
+
+    @Test
+    public void testApplyLinearRegexEngine() throws Exception {
+        AlternateFreeRegexRuleSet ruleSet = AlternateFreeRegexRuleSet.getInstance(Arrays.asList(
+                AlternateFreeRegexItem.of("^(.*?)\\.(java|kt)$", "$1Test.$2"),
+                AlternateFreeRegexItem.of("^I(?=[A-Z])(.*?)\\.(java|kt)$", "$1Impl.$2")
+        ));
+        List<AlternateFreeRegexRuleSet.Rule> rules = ruleSet.getRules("IFoo.kt");
+        assertFalse(rules.get(0).isGuarded(true));
+        assertTrue(rules.get(0).isGuarded(false));
+        assertEquals(Arrays.asList("IFooTest.kt"), rules.get(0).apply("IFoo.kt", true));
+        // lookahead -> java.util.regex
+        assertTrue(rules.get(1).isGuarded(true));
+        assertEquals(Arrays.asList("FooImpl.kt"), rules.get(1).apply("IFoo.kt", true));
+    }
+
+    @Test
+    public void testGeneratedSelector() throws Exception {
+        List<AlternateFreeRegexItem> items = new ArrayList<AlternateFreeRegexItem>(Arrays.asList(
+                AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"),
+                AlternateFreeRegexItem.of("^(.*?)Test\\.java$", "$1.java"),
+                AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$1.spec.ts"),
+                AlternateFreeRegexItem.of("^(.*?)\\.(?:js|ts)$", "$1.html"),
+                AlternateFreeRegexItem.of("^(.*?)_test$", "$1"),
+                AlternateFreeRegexItem.of("^(.*?)\\.$", "$1"),
+                AlternateFreeRegexItem.of("${name}.spec.${ext}", "${name}.${ext}")
+        ));
+        for (int i = 0; i < 200; i++) {
+            items.add(AlternateFreeRegexItem.of("^(.*?)Suffix" + i + "\\.ext" + (i % 7) + "$", "$1.txt"));
+        }
+        AlternateFreeRegexRuleSet generated = AlternateFreeRegexRuleSet.getInstance(items, true);
+        assertTrue(generated.isGenerated());
+        AlternateFreeRegexRuleSet interpreted = AlternateFreeRegexRuleSet.getInstance(items, false);
+        assertFalse(interpreted.isGenerated());
+        for (String filename : new String[]{"Foo.java", "FooTest.java", "foo.ts", "foo.spec.ts", "foo.js", "foo_test",
+                "foo.", "foo", "", ".java", "java", "fooSuffix42.ext0", "fooSuffix199.ext3", "fooSuffix42.ext1"}) {
+            assertArrayEquals(filename, getMatchExpressions(interpreted.getRules(filename)), getMatchExpressions(generated.getRules(filename)));
+        }
+    }
+
+    private static Object[] getMatchExpressions(List<AlternateFreeRegexRuleSet.Rule> rules) {
+        List<String> result = new ArrayList<String>();
+        for (AlternateFreeRegexRuleSet.Rule rule : rules) {
+            result.add(rule.getMatchExpression());
+        }
+        return result.toArray();
+    }
+}
@@ -16,54 +16,30 @@
 package altn8.filematcher;
 
 import altn8.AlternateConfiguration;
-import com.intellij.lang.Language;
-import com.intellij.mock.MockApplicationEx;
-import com.intellij.mock.MockFileTypeManager;
-import com.intellij.mock.MockLanguageFileType;
-import com.intellij.openapi.Disposable;
-import com.intellij.openapi.application.ApplicationManager;
-import com.intellij.openapi.fileTypes.*;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
 import org.jetbrains.annotations.NotNull;
-import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.*;
 
 /**
  *
  */
 public class AlternateGenericRegexFileMatcherTest extends AlternateFileMatcherTest {
 
-    private static final List FILE_NAME_MATCHERS = Arrays.asList(
-            new ExtensionFileNameMatcher("java"),
-            new ExtensionFileNameMatcher("properties"),
-            new WildcardFileNameMatcher("*.htm?"),
-            new ExtensionFileNameMatcher("xml")
-    );
-
-    @Before
-    public void setUp() throws Exception {
-        Disposable dummyDisposable = new Disposable() {public void dispose() {}};
-        MockApplicationEx mockApplicationEx = new MockApplicationEx(dummyDisposable);
-        ApplicationManager.setApplication(mockApplicationEx, dummyDisposable);
-        mockApplicationEx.addComponent(FileTypeManager.class, new MockFileTypeManager(null) {
-            @NotNull
-            @Override
-            public FileType[] getRegisteredFileTypes() {
-                return new FileType[]{new MockLanguageFileType(Language.ANY, "foo")};
-            }
-
-            @NotNull
-            @Override
-            public List<FileNameMatcher> getAssociations(@NotNull FileType type) {
-                //noinspection unchecked
-                return FILE_NAME_MATCHERS;
-            }
-        });
-    }
+    /**
+     * like the IDE's file types *.java, *.properties, *.htm?, *.xml
+     */
+    static final AlternateFileExtensionProvider EXTENSION_PROVIDER = new AlternateFileExtensionProvider() {
+        @NotNull
+        public List<String> getFileExtensions() {
+            return Arrays.asList("java", "properties", "htm.", "xml");
+        }
+    };
 
     /**
      * Our filelist with all files in project to test
@@ -150,7 +126,7 @@ public class AlternateGenericRegexFileMatcherTest extends AlternateFileMatcherTe
                 "AbstractMyClassTest|AbstractMyClassTest.properties",
                 "AbstractMyClassTest|AbstractMyClassTest_en.properties",
                 "AbstractMyClassTest|AbstractMyClassTest_en_UK.properties",
-        }, getMatchList(new AlternateGenericRegexFileMatcher("MyClass.java", configuration)));
+        }, getMatchList(new AlternateGenericRegexFileMatcher("MyClass.java", configuration, EXTENSION_PROVIDER)));
     }
 
     @Test
@@ -189,6 +165,20 @@ public class AlternateGenericRegexFileMatcherTest extends AlternateFileMatcherTe
                 "test_myclass|test_myclass.html",
                 "test_myclass|test_myclass_de.html"
 
-        }, getMatchList(new AlternateGenericRegexFileMatcher("myClass.xml", configuration)));
+        }, getMatchList(new AlternateGenericRegexFileMatcher("myClass.xml", configuration, EXTENSION_PROVIDER)));
+    }
+
+    @Test
+    public void testDuplicatePostfix() throws Exception {
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        configuration.genericPrefixRegexItems = new ArrayList<AlternateGenericPrefixPostfixRegexItem>();
+        configuration.genericPostfixRegexItems = Arrays.asList(
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "Test", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "Test", true, "")
+        );
+        // duplicate strips the affix twice
+        AlternateGenericRegexFileMatcher fileMatcher = new AlternateGenericRegexFileMatcher("FooTestTest.java", configuration, EXTENSION_PROVIDER);
+        assertEquals("Foo", fileMatcher.getName());
+        assertTrue(fileMatcher.matches("Foo.java"));
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateLinearRegexTest {
+    private static final String[] REGEXES = new String[]{
+            "^(.*?)\\.java$", "^(.*)Test\\.java$", "^Test(.*?)\\.java$", "(.*?)\\.(java|kt)", "(a|ab)(c|bcd)(d*)",
+            "^(?:([Tt]est_?)?(Abstract)?)?(\\w+?)(?:(Impl)?([Tt]est)?(?:_\\w{2}(?:_\\w{2})?)?)?(?:\\.(?:java|properties|htm.))?$",
+            "^(?:([Tt]est_?)?)?(?i)(\\QFooBar\\E)(?-i)(?:(Impl)?)?(?:\\.(?:java|xml))?$",
+            "(?i:foo)bar", "[^a-c]+x", "[\\w.]{2,3}?", "a{2}|b{1,}", "(x)?y", "\\x41\\u0042", "$", "^", "a*", "(a+)+b",
+            "(.*)", "", "\\.[a-z]+$", "[A-Z][a-z]*(?:[A-Z][a-z]*)*", "(\\d+)\\D(\\s?)\\S"
+    };
+    private static final String[] INPUTS = new String[]{
+            "", "a", "Foo.java", "FooTest.java", "TestFoo.java", "foo.kt", "abcd", "abcbcd", "AbstractFooBarImplTest_en_UK.properties",
+            "test_FooBar.html", "FOOBAR.xml", "Test_foobar", "FOObar", "xyzx", "AB", "aaab", "aaaa", "y", "xy", "12 a", "12a\t",
+            "Foo\n", "fooBarBaz", "FooBarImpl.xml"
+    };
+    private static final String[] REPLACEMENTS = new String[]{"$0", "x$1y", "\\$"};
+
+    @Test
+    public void testSameAsJavaRegex() throws Exception {
+        for (String regex : REGEXES) {
+            AlternateLinearRegex linearRegex = AlternateLinearRegex.compile(regex);
+            assertNotNull(regex, linearRegex);
+            Pattern pattern = Pattern.compile(regex);
+            for (String input : INPUTS) {
+                Matcher matcher = pattern.matcher(input);
+                String[] groups = linearRegex.match(input);
+                if (matcher.matches()) {
+                    assertNotNull(regex + " / " + input, groups);
+                    assertEquals(matcher.groupCount(), linearRegex.groupCount());
+                    for (int i = 0; i <= matcher.groupCount(); i++) {
+                        assertEquals(regex + " / " + input + " / " + i, matcher.group(i), groups[i]);
+                    }
+                } else {
+                    assertNull(regex + " / " + input, groups);
+                }
+                for (String replacement : REPLACEMENTS) {
+                    if (matcher.groupCount() > 0 || !replacement.contains("$1")) {
+                        assertEquals(regex + " / " + input, pattern.matcher(input).replaceAll(replacement), linearRegex.replaceAll(input, replacement));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupported() throws Exception {
+        assertNull(AlternateLinearRegex.compile("I(?=[A-Z])"));
+        assertNull(AlternateLinearRegex.compile("(?<!a)b"));
+        assertNull(AlternateLinearRegex.compile("(a)\\1"));
+        assertNull(AlternateLinearRegex.compile("\\bfoo"));
+        assertNull(AlternateLinearRegex.compile("a*+"));
+        assertNull(AlternateLinearRegex.compile("(?s).*"));
+        assertNull(AlternateLinearRegex.compile("(a*)*"));
+        assertNull(AlternateLinearRegex.compile("[a-z&&[^b]]"));
+    }
+
+    @Test
+    public void testLinear() throws Exception {
+        // catastrophic for backtracking
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            sb.append('a');
+        }
+        AlternateLinearRegex linearRegex = AlternateLinearRegex.compile("(a|aa)+b");
+        assertNotNull(linearRegex);
+        assertNull(linearRegex.match(sb.toString()));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.junit.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateNameTemplateTest {
+    @Test
+    public void testMatch() throws Exception {
+        AlternateNameTemplate template = AlternateNameTemplate.parse("${name}Test.${ext}");
+        assertArrayEquals(new String[]{"Foo", "java"}, template.match("FooTest.java"));
+        assertArrayEquals(new String[]{"foo.bar", "ts"}, template.match("foo.barTest.ts"));
+        assertNull(template.match("Test.java"));
+        assertNull(template.match("FooTest."));
+        assertNull(template.match("FooTest"));
+        assertNull(template.match("Foo.java"));
+
+        assertArrayEquals(new String[]{"foo", ""}, AlternateNameTemplate.parse("I${name}.java").match("Ifoo.java"));
+        assertArrayEquals(new String[]{"", "xml"}, AlternateNameTemplate.parse("pom.${ext}").match("pom.xml"));
+        assertNull(AlternateNameTemplate.parse("pom.${ext}").match("xpom.xml"));
+        assertArrayEquals(new String[]{"Foo", ""}, AlternateNameTemplate.parse("${name}$Bar.class").match("Foo$Bar.class"));
+    }
+
+    @Test
+    public void testIsTemplate() throws Exception {
+        assertTrue(AlternateNameTemplate.isTemplate("${name}Test.${ext}"));
+        assertTrue(AlternateNameTemplate.isTemplate("pom.${ext}"));
+        assertTrue(AlternateNameTemplate.isTemplate("${name}.${name}"));
+        assertFalse(AlternateNameTemplate.isTemplate("^(.*?)Test\\.java$"));
+        assertFalse(AlternateNameTemplate.isTemplate("^Foo[${]\\.java$"));
+        assertFalse(AlternateNameTemplate.isTemplate("^Foo[${name}]\\.java$"));
+        assertFalse(AlternateNameTemplate.isTemplate("${foo}.java"));
+    }
+
+    @Test
+    public void testValidate() throws Exception {
+        assertNull(AlternateNameTemplate.validate("${name}.${ext}", "${name}Test.${ext}"));
+        assertNull(AlternateNameTemplate.validate("${name}.java", "Test${name}.java"));
+        assertNotNull(AlternateNameTemplate.validate("${name}.java", "${name}.${ext}"));
+        assertNotNull(AlternateNameTemplate.validate("${name}.${ext}", ""));
+        assertNotNull(AlternateNameTemplate.validate("${name}.${ext}x", "${name}"));
+        assertNotNull(AlternateNameTemplate.validate("${name}${ext}", "${name}"));
+        assertNotNull(AlternateNameTemplate.validate("${name}.${name}", "${name}"));
+        assertNotNull(AlternateNameTemplate.validate("${foo}.java", "${foo}"));
+        assertNotNull(AlternateNameTemplate.validate("${name.java", "${name}"));
+    }
+
+    @Test
+    public void testFromRegex() throws Exception {
+        assertArrayEquals(new String[]{"Foo", ""}, AlternateNameTemplate.fromRegex("^(.*?)Test\\.java$").match("FooTest.java"));
+        assertArrayEquals(new String[]{"", ""}, AlternateNameTemplate.fromRegex("^Test(.*?)\\.java$").match("Test.java"));
+        assertNull(AlternateNameTemplate.fromRegex("^Test(.+?)\\.java$").match("Test.java"));
+        assertNull(AlternateNameTemplate.fromRegex("^a(.*)a$").match("a"));
+        assertArrayEquals(new String[]{"", ""}, AlternateNameTemplate.fromRegex("^README\\.md$").match("README.md"));
+
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?)\\.javax?$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?)\\.(java|kt)$"));
+        assertNull(AlternateNameTemplate.fromRegex("(?i)^(.*?)\\.java$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?)\\d$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?)\\.java$|^Foo$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?)(.*?)\\.java$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*?).java$"));
+        assertNull(AlternateNameTemplate.fromRegex("README\\.md"));
+        assertNull(AlternateNameTemplate.fromRegex("(.*)\\.java"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*)"));
+        assertNull(AlternateNameTemplate.fromRegex("(.*)Test\\.java$"));
+        assertNull(AlternateNameTemplate.fromRegex("^(.*)\\.java\\$"));
+    }
+
+    @Test
+    public void testFromRegexLikeReplaceAll() throws Exception {
+        String[][] rules = new String[][]{
+                {"^(.*?)Test\\.java$", "$1.java"},
+                {"^(.*)\\.java$", "$1Test.java"},
+                {"^Test(.+?)\\.java$", "$1\\$.java"},
+                {"^(.+)Impl\\.java$", "I$1.java"},
+                {"^a(.*)a$", "b$1b"},
+                {"^README\\.md$", "README"},
+        };
+        String[] filenames = new String[]{"FooTest.java", "Test.java", "TestFoo.java", "Foo.java", "FooImpl.java",
+                "Impl.java", "a", "aa", "aba", "README.md", "xREADME.md", "Foo.javax"};
+        for (String[] rule : rules) {
+            AlternateNameTemplate template = AlternateNameTemplate.fromRegex(rule[0]);
+            Pattern pattern = Pattern.compile(rule[0]);
+            AlternateNameTemplate.Generator generator = AlternateNameTemplate.Generator.fromReplacement(rule[1], pattern.matcher("").groupCount());
+            assertNotNull(rule[0], template);
+            assertNotNull(rule[1], generator);
+            for (String filename : filenames) {
+                String[] values = template.match(filename);
+                Matcher matcher = pattern.matcher(filename);
+                String message = rule[0] + " on " + filename;
+                assertEquals(message, matcher.matches(), values != null);
+                if (values != null) {
+                    assertEquals(message, matcher.replaceAll(rule[1]), generator.generate(values));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGenerator() throws Exception {
+        String[] values = new String[]{"Foo", "java"};
+        AlternateNameTemplate template = AlternateNameTemplate.parse("${name}.${ext}");
+        assertEquals("FooTest.java", AlternateNameTemplate.Generator.parse("${name}Test.${ext}", template).generate(values));
+        assertEquals("README", AlternateNameTemplate.Generator.parse("README", template).generate(values));
+
+        assertEquals("TestFoo.java", AlternateNameTemplate.Generator.fromReplacement("Test$1.java", 1).generate(values));
+        assertEquals("Foo2$.java", AlternateNameTemplate.Generator.fromReplacement("$12\\$.java", 1).generate(values));
+        assertEquals("README", AlternateNameTemplate.Generator.fromReplacement("README", 0).generate(values));
+        assertNull(AlternateNameTemplate.Generator.fromReplacement("$0.bak", 1));
+        assertNull(AlternateNameTemplate.Generator.fromReplacement("$2.java", 2));
+    }
+}
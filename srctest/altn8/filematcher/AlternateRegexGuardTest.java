@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateFreeRegexItem;
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateRegexGuardTest {
+    /**
+     * catastrophic backtracking on a not matching input (backreference prevents any optimization of the regex engine)
+     */
+    private static final String EVIL_EXPRESSION = "^(\\w+)+\\1\\.java$";
+    private static final String EVIL_FILENAME = "AVeryLongFilenameWhichDoesNotMatchTheExpressionWeAreLookingFor!.java";
+
+    @Test
+    public void testMatcherTimesOut() throws Exception {
+        try {
+            AlternateRegexGuard.matcher(Pattern.compile(EVIL_EXPRESSION), EVIL_FILENAME).matches();
+            fail("RegexTimeoutException expected");
+        } catch (RegexTimeoutException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMatcherMatches() throws Exception {
+        assertTrue(AlternateRegexGuard.matcher(Pattern.compile(EVIL_EXPRESSION), "FooFoo.java").matches());
+        assertEquals("FooTest.java", AlternateRegexGuard.matcher(Pattern.compile("^(.*?)\\.java$"), "Foo.java").replaceAll("$1Test.java"));
+    }
+
+    @Test
+    public void testEachEvaluationHasItsOwnBudget() throws Exception {
+        // many evaluations of one expression never add up to a timeout
+        Pattern pattern = Pattern.compile("^(.*?)\\.java$");
+        for (int i = 0; i < AlternateRegexGuard.MAX_STEPS / 10; i++) {
+            assertTrue(AlternateRegexGuard.matcher(pattern, "Foo.java").matches());
+        }
+    }
+
+    @Test
+    public void testExpressionDisabled() throws Exception {
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        configuration.freeRegexItems.clear();
+        configuration.freeRegexItems.add(AlternateFreeRegexItem.of(EVIL_EXPRESSION, "$1Test.java"));
+
+        AlternateRegexGuard.enableAll();
+        // a single timeout doesn't disable an expression
+        for (int i = 1; i < AlternateRegexGuard.MAX_TIMEOUTS; i++) {
+            assertFalse(new AlternateFreeRegexFileMatcher(EVIL_FILENAME, configuration).canProcess());
+            assertFalse(AlternateRegexGuard.isDisabled(EVIL_EXPRESSION));
+            assertTrue(new AlternateFreeRegexFileMatcher("FooFoo.java", configuration).canProcess());
+        }
+        assertTrue(AlternateRegexGuard.pollNewlyDisabled().isEmpty());
+        // but repeated ones do
+        assertFalse(new AlternateFreeRegexFileMatcher(EVIL_FILENAME, configuration).canProcess());
+        assertTrue(AlternateRegexGuard.isDisabled(EVIL_EXPRESSION));
+        // reported only once
+        assertArrayEquals(new Object[]{EVIL_EXPRESSION}, AlternateRegexGuard.pollNewlyDisabled().toArray());
+        assertTrue(AlternateRegexGuard.pollNewlyDisabled().isEmpty());
+        // disabled: even a matching filename is not processed anymore
+        assertFalse(new AlternateFreeRegexFileMatcher("FooFoo.java", configuration).canProcess());
+        // until configuration is changed
+        AlternateRegexGuard.enableAll();
+        assertFalse(AlternateRegexGuard.isDisabled(EVIL_EXPRESSION));
+        assertTrue(new AlternateFreeRegexFileMatcher("FooFoo.java", configuration).canProcess());
+    }
+}
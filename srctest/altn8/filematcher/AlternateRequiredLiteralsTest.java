@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ *
+ */
+public class AlternateRequiredLiteralsTest {
+    @Test
+    public void testGet() throws Exception {
+        assertEquals(Arrays.asList("Foo.java"), AlternateRequiredLiterals.get("^Foo\\.java$"));
+        assertEquals(Arrays.asList("Foo", "Impl.java"), AlternateRequiredLiterals.get("^(?:Test)?(Foo)Impl\\.java$"));
+        assertEquals(Arrays.asList("Fo", ".java"), AlternateRequiredLiterals.get("^Foo?\\.java$"));
+        assertEquals(Arrays.asList("Foo", "x"), AlternateRequiredLiterals.get("Foo+x"));
+        assertEquals(Arrays.asList("Foo", "Bar"), AlternateRequiredLiterals.get("Foo.*Bar"));
+        assertEquals(Arrays.asList("Foo", "Bar"), AlternateRequiredLiterals.get("Foo[a-z\\]]{1,2}Bar"));
+        assertEquals(Arrays.asList("a", "Foo"), AlternateRequiredLiterals.get("a\\x41\\u0041\\p{Lu}\\1Foo"));
+        assertEquals(Arrays.asList("Foo", "Bar"), AlternateRequiredLiterals.get("^(?i)(\\QFoo\\E)(?-i)(?:Bar|Baz)?(Bar)(?=x)$"));
+        assertEquals(Arrays.asList("a.b", "Foo"), AlternateRequiredLiterals.get("\\Qa.b\\E(?<name>Foo)"));
+        assertEquals(Arrays.asList("Impl"), AlternateRequiredLiterals.get("^(?:(Test)?(I(?=[A-Z]))?)?(\\w+?)(?:(Impl))(?:\\.(?:java|xml))?$"));
+    }
+
+    @Test
+    public void testGetNothing() throws Exception {
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get("Foo|Bar"));
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get("(?:Foo)?"));
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get("(?x)Foo # comment"));
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get("Foo)"));
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get("(Foo"));
+        assertEquals(Collections.<String>emptyList(), AlternateRequiredLiterals.get(".*"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateFreeRegexItem;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateRuleProfilerTest {
+    private static final List<String> FILENAMES = Arrays.asList("Foo.java", "FooTest.java", "TestFoo.java", "Test.java", "FooTest.txt");
+    private static final AlternateRuleProfiler.CancelCheck NOT_CANCELLED = new AlternateRuleProfiler.CancelCheck() {
+        public void checkCanceled() {
+        }
+    };
+
+    @Test
+    public void testProfileGenericItem() throws Exception {
+        AlternateGenericPrefixPostfixRegexItem item = AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "Test", false, "");
+        AlternateRuleStatistic statistic = AlternateRuleProfiler.profile(item, new AlternateConfiguration(), AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER, FILENAMES, NOT_CANCELLED);
+        assertEquals(5, statistic.evaluations);
+        // only FooTest.java: a postfix before an unknown extension or without a name left doesn't count
+        assertEquals(1, statistic.hits);
+        assertEquals(0, statistic.timeouts);
+    }
+
+    @Test
+    public void testProfileTimeouts() throws Exception {
+        AlternateFreeRegexItem item = AlternateFreeRegexItem.of("^(\\w+)+\\1\\.java$", "$1Test.java");
+        AlternateRuleStatistic statistic = AlternateRuleProfiler.profile(item, new AlternateConfiguration(),
+                Arrays.asList("FooFoo.java", "AVeryLongFilenameWhichDoesNotMatchTheExpressionWeAreLookingFor!.java"), NOT_CANCELLED);
+        assertEquals(2, statistic.evaluations);
+        assertEquals(1, statistic.hits);
+        assertEquals(1, statistic.timeouts);
+    }
+
+    @Test
+    public void testProfileWithEngineOfLookup() throws Exception {
+        // catastrophic backtracking for java.util.regex, linear time for AlternateLinearRegex
+        AlternateFreeRegexItem item = AlternateFreeRegexItem.of("^(a|aa){1,50}b$", "c");
+        List<String> filenames = Arrays.asList("aab", "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa!");
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        configuration.linearRegexEngine = false;
+        assertEquals(1, AlternateRuleProfiler.profile(item, configuration, filenames, NOT_CANCELLED).timeouts);
+        configuration.linearRegexEngine = true;
+        AlternateRuleStatistic statistic = AlternateRuleProfiler.profile(item, configuration, filenames, NOT_CANCELLED);
+        assertEquals(1, statistic.hits);
+        assertEquals(0, statistic.timeouts);
+    }
+
+    @Test
+    public void testProfileCancelled() throws Exception {
+        final int[] checks = {0};
+        AlternateRuleProfiler.CancelCheck cancelCheck = new AlternateRuleProfiler.CancelCheck() {
+            public void checkCanceled() {
+                if (++checks[0] > 2) {
+                    throw new IllegalStateException("cancelled");
+                }
+            }
+        };
+        try {
+            AlternateRuleProfiler.profile(AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"), new AlternateConfiguration(), FILENAMES, cancelCheck);
+            fail("cancelled within rule expected");
+        } catch (IllegalStateException e) {
+            assertEquals(3, checks[0]);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import altn8.AlternateFreeRegexItem;
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateRuleSetOptimizerTest {
+    private static final List<AlternateFreeRegexItem> ITEMS = Arrays.asList(
+            AlternateFreeRegexItem.of("^Test(.*?)\\.java$", "$1.java"),
+            AlternateFreeRegexItem.of("^(.*?)\\.java$", "Test$1.java"),
+            AlternateFreeRegexItem.of("^(.*?)Test\\.java$", "$1.java"),
+            AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"),
+            AlternateFreeRegexItem.of("^(.*?)\\.java$", "$1Test.java"),             // duplicate of 4
+            AlternateFreeRegexItem.of("${name}.java", "${name}Test.java"),          // same as 4
+            AlternateFreeRegexItem.of("^Foo(.*?)\\.java$", "Foo$1Test.java"),       // subset of 4
+            AlternateFreeRegexItem.of("^(.+?)Test\\.java$", "$1.java"),             // subset of 3
+            AlternateFreeRegexItem.of("^(.*?)\\.ts$", "$1.spec.ts"),
+            AlternateFreeRegexItem.of("${name}.spec.${ext}", "${name}.${ext}"),
+            AlternateFreeRegexItem.of("${name}.${ext}", "${name}.spec.${ext}"),
+            AlternateFreeRegexItem.of("^(.*?)\\.java$", "../test/$1Test.java"),     // dead
+            AlternateFreeRegexItem.of("^(.*?)\\.(?:java|kt)$", "../$1.html"),       // dead
+            AlternateFreeRegexItem.of("^(.*?)\\.kt$", "$1Test.kt")
+    );
+
+    @Test
+    public void testDefaults() throws Exception {
+        assertEquals(Collections.<String>emptyList(), AlternateRuleSetOptimizer.analyze(new AlternateConfiguration()));
+    }
+
+    @Test
+    public void testMinimizeFreeRegexItems() throws Exception {
+        List<AlternateFreeRegexItem> minimized = AlternateRuleSetOptimizer.minimizeFreeRegexItems(ITEMS);
+        assertEquals(Arrays.asList(ITEMS.get(0), ITEMS.get(1), ITEMS.get(2), ITEMS.get(3), ITEMS.get(8), ITEMS.get(9), ITEMS.get(10), ITEMS.get(13)), minimized);
+
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        configuration.freeRegexItems = ITEMS;
+        List<String> findings = AlternateRuleSetOptimizer.analyze(configuration);
+        assertEquals(6, findings.size());
+        assertEquals("Free regex row 5 (^(.*?)\\.java$ -> $1Test.java): duplicate of row 4", findings.get(0));
+        assertEquals("Free regex row 6 (${name}.java -> ${name}Test.java): covered by row 4 (^(.*?)\\.java$ -> $1Test.java)", findings.get(1));
+        assertEquals("Free regex row 12 (^(.*?)\\.java$ -> ../test/$1Test.java): generates no filename which can be found", findings.get(4));
+    }
+
+    @Test
+    public void testMinimizedGenerateSameNames() throws Exception {
+        List<AlternateFreeRegexItem> minimized = AlternateRuleSetOptimizer.minimizeFreeRegexItems(ITEMS);
+        for (String filename : new String[]{"Foo.java", "FooBar.java", "TestFoo.java", "FooTest.java", "Test.java", "FooBarTest.java",
+                ".java", "foo.ts", "foo.spec.ts", "foo", "Foo.kt", "a.b.c"}) {
+            assertEquals(filename, getFindableNames(ITEMS, filename), getFindableNames(minimized, filename));
+        }
+    }
+
+    @Test
+    public void testMinimizeGenericItems() throws Exception {
+        List<AlternateGenericPrefixPostfixRegexItem> items = Arrays.asList(
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "Impl", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "[Tt]est", true, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "[Tt]est", true, "again"),
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "[Tt]est", false, ""),
+                AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "", true, "")
+        );
+        // duplicates are kept (they strip a repeated affix), only empty items are removed
+        assertEquals(Arrays.asList(items.get(0), items.get(1), items.get(2), items.get(3)), AlternateRuleSetOptimizer.minimizeGenericItems(items));
+
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        configuration.genericPostfixRegexItems = items;
+        assertEquals(Arrays.asList("Generic postfix row 3 ([Tt]est): duplicate of row 2 (kept, only strips the affix a second time)", "Generic postfix row 5 (): empty expression"),
+                AlternateRuleSetOptimizer.analyze(configuration));
+    }
+
+    /**
+     * @return names generated by items which a file can have
+     */
+    private static Set<String> getFindableNames(List<AlternateFreeRegexItem> items, String filename) {
+        Set<String> result = new TreeSet<String>();
+        for (AlternateFreeRegexItem item : items) {
+            // evaluate each item without optimizer
+            List<String> names = null;
+            if (AlternateNameTemplate.isTemplate(item.matchExpression)) {
+                AlternateNameTemplate template = AlternateNameTemplate.parse(item.matchExpression);
+                String[] values = template.match(filename);
+                if (values != null) {
+                    names = Collections.singletonList(AlternateNameTemplate.Generator.parse(item.replaceExpression, template).generate(values));
+                }
+            } else if (filename.matches(item.matchExpression)) {
+                names = Collections.singletonList(filename.replaceAll(item.matchExpression, item.replaceExpression));
+            }
+            if (names != null) {
+                for (String name : names) {
+                    if (name.length() > 0 && name.indexOf('/') < 0) {
+                        result.add(name);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
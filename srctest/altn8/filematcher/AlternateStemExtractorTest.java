@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.filematcher;
+
+import altn8.AlternateConfiguration;
+import org.junit.Test;
+
+import altn8.AlternateGenericPrefixPostfixRegexItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateStemExtractorTest {
+
+    private static final String[] FILENAMES = new String[] {
+            "FooBar.java",
+            "FooBar_en_UK.properties",
+            "FooBarTest.java",
+            "TestFooBar.java",
+            "IFooBar.java",
+            "Icon.java",
+            "AbstractFooBarImpl.java",
+            "AbstractFooBarTest_en.properties",
+            "test_foobar.html",
+            "foobar_de.html",
+            "foo.bar.java",
+            "README"
+    };
+
+    @Test
+    public void testGetStems() throws Exception {
+        AlternateStemExtractor stemExtractor = new AlternateStemExtractor(new AlternateConfiguration(), AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER);
+        Set<String> stems = stemExtractor.getStems("TestFooImpl.java");
+        assertTrue(stems.contains("foo"));
+        assertTrue(stems.contains("testfoo"));
+        assertTrue(stems.contains("fooimpl"));
+        assertTrue(stems.contains("testfooimpl"));
+        assertEquals(4, stems.size());
+        assertTrue(stemExtractor.getStems("IFoo.java").contains("foo"));
+        assertTrue(!stemExtractor.getStems("Icon.java").contains("con"));
+        assertTrue(stemExtractor.getStems("foo.bar.java").isEmpty());
+    }
+
+    @Test
+    public void testGetStemsUnknown() throws Exception {
+        AlternateStemExtractor stemExtractor = new AlternateStemExtractor(new AlternateConfiguration(), AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER);
+        AlternateRegexGuard.enableAll();
+        for (int i = 0; i < AlternateRegexGuard.MAX_TIMEOUTS; i++) {
+            AlternateRegexGuard.reportTimeout(stemExtractor.getFingerprint());
+        }
+        // disabled generic regex: stems are unknown, not missing
+        assertNull(stemExtractor.getStems("TestFooImpl.java"));
+        AlternateRegexGuard.enableAll();
+        assertTrue(stemExtractor.getStems("TestFooImpl.java").contains("foo"));
+        AlternateRegexGuard.pollNewlyDisabled();
+    }
+
+    /**
+     * Every file matched by a generic matcher must have the matcher's name as stem
+     */
+    @Test
+    public void testStemsContainMatchedNames() throws Exception {
+        for (boolean caseInsensitiveBasename : new boolean[]{false, true}) {
+            AlternateConfiguration configuration = new AlternateConfiguration();
+            configuration.caseInsensitiveBasename = caseInsensitiveBasename;
+            AlternateStemExtractor stemExtractor = new AlternateStemExtractor(configuration, AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER);
+            for (String currentFilename : FILENAMES) {
+                AlternateGenericRegexFileMatcher fileMatcher = new AlternateGenericRegexFileMatcher(currentFilename, configuration, AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER);
+                if (fileMatcher.canProcess()) {
+                    for (String filename : FILENAMES) {
+                        if (fileMatcher.matches(filename)) {
+                            assertTrue(currentFilename + " -> " + filename, stemExtractor.getStems(filename).contains(fileMatcher.getName().toLowerCase()));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAddChangedExpressions() throws Exception {
+        List<String> result = new ArrayList<String>();
+        AlternateStemExtractor.addChangedExpressions(result, Arrays.asList("a", "b", "c"), Arrays.asList("a", "x", "c", "d"));
+        assertEquals(Arrays.asList("x", "b", "d"), result);
+        result.clear();
+        AlternateStemExtractor.addChangedExpressions(result, Arrays.asList("a", "b"), Arrays.asList("b", "a"));
+        assertEquals(2, result.size());
+        result.clear();
+        AlternateStemExtractor.addChangedExpressions(result, Arrays.asList("a", "b"), Arrays.asList("a", "b"));
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void testDiff() throws Exception {
+        AlternateConfiguration configuration = new AlternateConfiguration();
+        AlternateStemExtractor previous = new AlternateStemExtractor(configuration, AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER);
+        configuration.genericPostfixRegexItems.add(AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "Spec", true, "Specs"));
+        List<Pattern> diff = new AlternateStemExtractor(configuration, AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER).diff(previous);
+        assertNotNull(diff);
+        assertEquals(1, diff.size());
+        assertEquals("Spec", diff.get(0).pattern());
+        // backreferences depend on group numbers (of other items)
+        configuration.genericPostfixRegexItems.add(AlternateGenericPrefixPostfixRegexItem.of(AlternateGenericPrefixPostfixRegexItem.GenericType.POSTFIX, "_\\1", false, ""));
+        assertNull(new AlternateStemExtractor(configuration, AlternateGenericRegexFileMatcherTest.EXTENSION_PROVIDER).diff(previous));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateBloomFilterTest {
+    @Test
+    public void testMightContain() throws Exception {
+        AlternateBloomFilter filter = new AlternateBloomFilter(100000);
+        for (int i = 0; i < 100000; i++) {
+            filter.add("Foo" + i + ".java");
+        }
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(filter.mightContain("Foo" + i + ".java"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("Foo" + i + "Test.java")) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    @Test
+    public void testNeedsRebuild() throws Exception {
+        AlternateBloomFilter filter = new AlternateBloomFilter(3000);
+        for (int i = 0; i < 3000; i++) {
+            filter.add("Name" + i);
+        }
+        assertFalse(filter.needsRebuild());
+        for (int i = 0; i < 1500; i++) {
+            filter.remove("Name" + i);
+        }
+        assertFalse(filter.needsRebuild());
+        filter.remove("Name1500");
+        assertTrue(filter.needsRebuild());
+
+        filter = new AlternateBloomFilter(3000);
+        for (int i = 0; i <= 3000; i++) {
+            filter.add("Name" + i);
+        }
+        assertTrue(filter.needsRebuild());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternatePostingMapTest {
+    @Test
+    public void testAddRemove() throws Exception {
+        AlternatePostingMap map = new AlternatePostingMap();
+        assertTrue(map.add("Foo.java", 300));
+        assertTrue(map.add("Foo.java", 7));
+        assertTrue(map.add("Foo.java", 100000));
+        assertFalse(map.add("Foo.java", 7));
+        assertTrue(map.add("Bär.java", 1));
+        assertArrayEquals(new int[]{7, 300, 100000}, map.get("Foo.java"));
+        assertArrayEquals(new int[]{1}, map.get("Bär.java"));
+        assertArrayEquals(new int[0], map.get("Bar.java"));
+        assertEquals(2, map.size());
+
+        assertTrue(map.remove("Foo.java", 300));
+        assertFalse(map.remove("Foo.java", 300));
+        assertArrayEquals(new int[]{7, 100000}, map.get("Foo.java"));
+        assertTrue(map.remove("Bär.java", 1));
+        assertEquals(1, map.size());
+    }
+
+    /**
+     * Compare random operations with a plain map
+     */
+    @Test
+    public void testRandomOperations() throws Exception {
+        Random random = new Random(42);
+        AlternatePostingMap map = new AlternatePostingMap();
+        Map<String, Set<Integer>> expected = new HashMap<String, Set<Integer>>();
+        for (int i = 0; i < 100000; i++) {
+            String key = "Key" + random.nextInt(2000);
+            int id = random.nextInt(1000000);
+            Set<Integer> ids = expected.get(key);
+            if (random.nextInt(3) == 0) {
+                assertEquals(ids != null && ids.remove(id), map.remove(key, id));
+                if (ids != null && ids.isEmpty()) {
+                    expected.remove(key);
+                }
+            } else {
+                if (ids == null) {
+                    ids = new TreeSet<Integer>();
+                    expected.put(key, ids);
+                }
+                assertEquals(ids.add(id), map.add(key, id));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        final Map<String, Set<Integer>> visited = new HashMap<String, Set<Integer>>();
+        map.visit(new AlternatePostingMap.Visitor() {
+            public void visit(String key, int[] ids) {
+                Set<Integer> set = new TreeSet<Integer>();
+                for (int id : ids) {
+                    set.add(id);
+                }
+                visited.put(key, set);
+            }
+        });
+        assertEquals(expected, visited);
+    }
+
+    /**
+     * Names of a project with 1M files must fit into 64 MB
+     */
+    @Test
+    public void testHeapSize() throws Exception {
+        AlternatePostingMap map = new AlternatePostingMap();
+        for (int i = 1; i <= 1000000; i++) {
+            map.add("SomeClass" + i + ".java", i);
+        }
+        assertEquals(1000000, map.size());
+        assertTrue(map.estimateHeapSize() < 64 * 1024 * 1024);
+        map.clear();
+        assertEquals(0, map.size());
+    }
+}
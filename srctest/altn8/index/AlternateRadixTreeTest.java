@@ -0,0 +1,169 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateRadixTreeTest {
+    @Test
+    public void testAddRemove() throws Exception {
+        AlternateRadixTree tree = new AlternateRadixTree(false);
+        assertTrue(tree.add("Foo.java", 300));
+        assertTrue(tree.add("Foo.java", 7));
+        assertTrue(tree.add("FooTest.java", 100000));
+        assertFalse(tree.add("Foo.java", 7));
+        assertTrue(tree.add("Fo", 1));
+        assertTrue(tree.add("Bär.java", 2));
+        assertArrayEquals(new int[]{7, 300}, tree.get("Foo.java"));
+        assertArrayEquals(new int[]{100000}, tree.get("FooTest.java"));
+        assertArrayEquals(new int[]{1}, tree.get("Fo"));
+        assertArrayEquals(new int[]{2}, tree.get("Bär.java"));
+        assertArrayEquals(new int[0], tree.get("Foo"));
+        assertArrayEquals(new int[0], tree.get("Foo.javax"));
+        assertEquals(4, tree.size());
+
+        assertTrue(tree.remove("Foo.java", 300));
+        assertFalse(tree.remove("Foo.java", 300));
+        assertFalse(tree.remove("Foo", 7));
+        assertArrayEquals(new int[]{7}, tree.get("Foo.java"));
+        assertTrue(tree.remove("Fo", 1));
+        assertTrue(tree.remove("Foo.java", 7));
+        assertArrayEquals(new int[]{100000}, tree.get("FooTest.java"));
+        assertEquals(2, tree.size());
+    }
+
+    @Test
+    public void testPrefixAndSuffix() throws Exception {
+        for (boolean reversed : new boolean[]{false, true}) {
+            AlternateRadixTree tree = new AlternateRadixTree(reversed);
+            tree.add("Foo.java", 1);
+            tree.add("FooTest.java", 2);
+            tree.add("foo.properties", 3);
+            tree.add("Bar.java", 4);
+            tree.add("TestFoo.java", 5);
+            assertEquals(Arrays.asList("Foo.java", "FooTest.java"), startingWith(tree, "Foo", false));
+            assertEquals(Arrays.asList("Foo.java", "FooTest.java", "foo.properties"), startingWith(tree, "foo", true));
+            assertEquals(Arrays.asList("Bar.java", "Foo.java", "FooTest.java", "TestFoo.java", "foo.properties"), startingWith(tree, "", false));
+            assertEquals(Collections.<String>emptyList(), startingWith(tree, "Foo.javax", false));
+            assertEquals(Arrays.asList("Bar.java", "Foo.java", "FooTest.java", "TestFoo.java"), endingWith(tree, ".java", false));
+            assertEquals(Arrays.asList("FooTest.java"), endingWith(tree, "TEST.JAVA", true));
+            assertEquals(Collections.<String>emptyList(), endingWith(tree, "TEST.JAVA", false));
+        }
+    }
+
+    /**
+     * Compare random operations with a plain map
+     */
+    @Test
+    public void testRandomOperations() throws Exception {
+        Random random = new Random(42);
+        AlternateRadixTree tree = new AlternateRadixTree(false);
+        SortedMap<String, Set<Integer>> expected = new TreeMap<String, Set<Integer>>();
+        for (int i = 0; i < 200000; i++) {
+            String key = Integer.toString(random.nextInt(3000), 3 + random.nextInt(2));
+            int id = 1 + random.nextInt(100);
+            Set<Integer> ids = expected.get(key);
+            if (random.nextInt(2) == 0) {
+                assertEquals(ids != null && ids.remove(id), tree.remove(key, id));
+                if (ids != null && ids.isEmpty()) {
+                    expected.remove(key);
+                }
+            } else {
+                if (ids == null) {
+                    ids = new TreeSet<Integer>();
+                    expected.put(key, ids);
+                }
+                assertEquals(ids.add(id), tree.add(key, id));
+            }
+        }
+        assertEquals(expected.size(), tree.size());
+        assertEquals(expected, toMap(tree));
+        for (String key : expected.keySet()) {
+            assertEquals(new ArrayList<Integer>(expected.get(key)), toList(tree.get(key)));
+        }
+        // prefix
+        final SortedMap<String, Set<Integer>> visited = new TreeMap<String, Set<Integer>>();
+        tree.visitStartingWith("12", false, new AlternatePostingMap.Visitor() {
+            public void visit(String key, int[] ids) {
+                visited.put(key, new TreeSet<Integer>(toList(ids)));
+            }
+        });
+        assertEquals(expected.subMap("12", "13"), visited);
+    }
+
+    /**
+     * Names of a project with 1M files must fit into 64 MB
+     */
+    @Test
+    public void testHeapSize() throws Exception {
+        AlternateRadixTree tree = new AlternateRadixTree(false);
+        for (int i = 1; i <= 1000000; i++) {
+            tree.add("SomeClass" + i + ".java", i);
+        }
+        assertEquals(1000000, tree.size());
+        assertTrue(tree.estimateHeapSize() < 64 * 1024 * 1024);
+        tree.clear();
+        assertEquals(0, tree.size());
+    }
+
+    private static List<String> startingWith(AlternateRadixTree tree, String prefix, boolean ignoreCase) {
+        final List<String> result = new ArrayList<String>();
+        tree.visitStartingWith(prefix, ignoreCase, new AlternatePostingMap.Visitor() {
+            public void visit(String key, int[] ids) {
+                result.add(key);
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    private static List<String> endingWith(AlternateRadixTree tree, String suffix, boolean ignoreCase) {
+        final List<String> result = new ArrayList<String>();
+        tree.visitEndingWith(suffix, ignoreCase, new AlternatePostingMap.Visitor() {
+            public void visit(String key, int[] ids) {
+                result.add(key);
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    private static Map<String, Set<Integer>> toMap(AlternateRadixTree tree) {
+        final Map<String, Set<Integer>> result = new TreeMap<String, Set<Integer>>();
+        tree.visit(new AlternatePostingMap.Visitor() {
+            public void visit(String key, int[] ids) {
+                assertFalse(result.containsKey(key));
+                result.put(key, new TreeSet<Integer>(toList(ids)));
+            }
+        });
+        return result;
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+}
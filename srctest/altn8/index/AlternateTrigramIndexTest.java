@@ -0,0 +1,104 @@
+/*
+ * Copyright 2012 The AltN8-Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package altn8.index;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+public class AlternateTrigramIndexTest {
+    @Test
+    public void testFind() throws Exception {
+        AlternateTrigramIndex index = new AlternateTrigramIndex();
+        index.add("FooImpl.java", 3);
+        index.add("Foo.java", 1);
+        index.add("FooTest.java", 2);
+        index.add("BarImpl.java", 4);
+        index.add("foo.xml", 5);
+        assertArrayEquals(new int[]{1, 2, 3, 5}, index.find(Arrays.asList("foo")));
+        assertArrayEquals(new int[]{3}, index.find(Arrays.asList("FOO", "Impl")));
+        assertArrayEquals(new int[]{3, 4}, index.find(Arrays.asList("Impl.java")));
+        assertArrayEquals(new int[0], index.find(Arrays.asList("Baz")));
+        assertNull(index.find(Arrays.asList("Fo", "")));
+        assertNull(index.find(Collections.<String>emptyList()));
+    }
+
+    /**
+     * Compare with contains() on random names added in random order
+     */
+    @Test
+    public void testRandomNames() throws Exception {
+        Random random = new Random(42);
+        AlternateTrigramIndex index = new AlternateTrigramIndex();
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 20000; i++) {
+            names.add(Integer.toString(random.nextInt(1000000), 4) + ".java");
+        }
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 1; i <= names.size(); i++) {
+            ids.add(i);
+        }
+        Collections.shuffle(ids, random);
+        for (int id : ids) {
+            index.add(names.get(id - 1), id);
+        }
+        for (int i = 0; i < 100; i++) {
+            String literal = Integer.toString(random.nextInt(4 * 4 * 4 * 4), 4);
+            List<Integer> expected = new ArrayList<Integer>();
+            for (int id = 1; id <= names.size(); id++) {
+                if (names.get(id - 1).contains(literal)) {
+                    expected.add(id);
+                }
+            }
+            int[] found = index.find(Arrays.asList(literal));
+            if (literal.length() < 3) {
+                assertNull(found);
+            } else {
+                List<Integer> actual = new ArrayList<Integer>();
+                for (int id : found) {
+                    actual.add(id);
+                }
+                // trigrams may find some more (ex: "0123" finds "012x123")
+                assertTrue(actual.containsAll(expected));
+                if (literal.length() == 3) {
+                    assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNeedsRebuild() throws Exception {
+        AlternateTrigramIndex index = new AlternateTrigramIndex();
+        for (int i = 1; i <= 3000; i++) {
+            index.add("Name" + i, i);
+        }
+        for (int i = 1; i <= 1500; i++) {
+            index.remove("Name" + i, i);
+        }
+        assertFalse(index.needsRebuild());
+        index.remove("Name1501", 1501);
+        assertTrue(index.needsRebuild());
+        index.clear();
+        assertFalse(index.needsRebuild());
+        assertEquals(0, index.size());
+    }
+}